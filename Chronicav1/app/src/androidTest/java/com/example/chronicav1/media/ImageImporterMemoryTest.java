@@ -0,0 +1,123 @@
+package com.example.chronicav1.media;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.net.Uri;
+import android.os.Debug;
+import android.util.Log;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.google.android.gms.tasks.Tasks;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.*;
+
+/**
+ * Pico de memoria al importar una foto de 24 MP: decodificarla entera ocuparía 96 MB
+ * (ARGB_8888); el importador muestrea al leer y solo reserva el tamaño pedido.
+ * Los bitmaps viven en el heap nativo, que se muestrea mientras corre la importación.
+ */
+@RunWith(AndroidJUnit4.class)
+public class ImageImporterMemoryTest {
+
+    private static final String TAG = "ImageImporterMemory";
+    private static final int FIXTURE_WIDTH = 6000;
+    private static final int FIXTURE_HEIGHT = 4000;
+    private static final long FULL_DECODE_BYTES = (long) FIXTURE_WIDTH * FIXTURE_HEIGHT * 4;
+    private static final long MAX_PEAK_BYTES = 32L * 1024 * 1024;
+    private static final long SAMPLE_INTERVAL_MS = 1;
+
+    private Context context;
+    private File fixture;
+
+    @Before
+    public void setUp() throws IOException {
+        context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        fixture = new File(context.getCacheDir(), "import-fixture.jpg");
+
+        // RGB_565 para que crear el archivo no cueste tanto como lo que se quiere medir
+        Bitmap bitmap = Bitmap.createBitmap(FIXTURE_WIDTH, FIXTURE_HEIGHT, Bitmap.Config.RGB_565);
+        Canvas canvas = new Canvas(bitmap);
+        canvas.drawColor(Color.rgb(40, 90, 160));
+        Paint paint = new Paint(Paint.ANTI_ALIAS_FLAG);
+        for (int i = 0; i < 200; i++) {
+            paint.setColor(Color.HSVToColor(new float[]{i * 1.8f, 0.6f, 0.9f}));
+            canvas.drawCircle((i * 397) % FIXTURE_WIDTH, (i * 211) % FIXTURE_HEIGHT, 150 + i, paint);
+        }
+        try (FileOutputStream out = new FileOutputStream(fixture)) {
+            bitmap.compress(Bitmap.CompressFormat.JPEG, 90, out);
+        }
+        bitmap.recycle();
+    }
+
+    @After
+    public void tearDown() {
+        fixture.delete();
+    }
+
+    @Test
+    public void importPeakStaysFarBelowFullDecode() throws Exception {
+        settleHeap();
+        long baseline = Debug.getNativeHeapAllocatedSize();
+        AtomicLong peak = new AtomicLong(baseline);
+
+        Thread sampler = new Thread(() -> {
+            while (!Thread.currentThread().isInterrupted()) {
+                peak.accumulateAndGet(Debug.getNativeHeapAllocatedSize(), Math::max);
+                try {
+                    Thread.sleep(SAMPLE_INTERVAL_MS);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        }, TAG);
+        sampler.start();
+
+        Bitmap bitmap;
+        try {
+            bitmap = Tasks.await(ImageImporter.load(context, Uri.fromFile(fixture),
+                    ImageVariants.FULL_SIZE), 30, TimeUnit.SECONDS);
+        } finally {
+            sampler.interrupt();
+            sampler.join();
+        }
+        peak.accumulateAndGet(Debug.getNativeHeapAllocatedSize(), Math::max);
+
+        long peakDelta = peak.get() - baseline;
+        String report = String.format("%dx%d -> %dx%d: pico +%d KB (decodificación completa %d KB)",
+                FIXTURE_WIDTH, FIXTURE_HEIGHT, bitmap.getWidth(), bitmap.getHeight(),
+                peakDelta / 1024, FULL_DECODE_BYTES / 1024);
+        Log.i(TAG, report);
+        System.out.println("ImageImporter " + report);
+
+        assertEquals(ImageVariants.FULL_SIZE, Math.max(bitmap.getWidth(), bitmap.getHeight()));
+        assertTrue(report, peakDelta < MAX_PEAK_BYTES);
+        bitmap.recycle();
+    }
+
+    /**
+     * Libera lo que dejó la creación del archivo antes de tomar la línea base
+     */
+    private static void settleHeap() throws InterruptedException {
+        for (int i = 0; i < 3; i++) {
+            Runtime.getRuntime().gc();
+            System.runFinalization();
+            Thread.sleep(100);
+        }
+    }
+}
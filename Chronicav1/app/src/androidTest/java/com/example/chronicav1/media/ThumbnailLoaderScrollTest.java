@@ -0,0 +1,184 @@
+package com.example.chronicav1.media;
+
+import android.app.Instrumentation;
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.drawable.BitmapDrawable;
+import android.os.SystemClock;
+import android.util.Log;
+import android.view.ViewGroup;
+import android.widget.ImageView;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.example.chronicav1.R;
+import com.example.chronicav1.data.BlobStore;
+import com.example.chronicav1.models.EntrySummary;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Medición del scroll de la lista: 1,000 entradas sintéticas enlazadas sobre un conjunto
+ * reciclado de ImageView, como lo hace RecyclerView. Reporta el tiempo de decodificación
+ * por bind y la tasa de aciertos de ThumbnailLoader (ver getStats).
+ * Los blobs se escriben en el disco local de BlobStore, así que no se usa la red.
+ */
+@RunWith(AndroidJUnit4.class)
+public class ThumbnailLoaderScrollTest {
+
+    private static final String TAG = "ThumbnailScroll";
+    private static final int ENTRIES = 1_000;
+    private static final int IMAGES = 50;
+    private static final int VISIBLE_ROWS = 8;
+    // Vistas en pantalla más las que RecyclerView guarda en caché
+    private static final int POOL_SIZE = VISIBLE_ROWS + 4;
+    // Un fling moderado: dos filas nuevas por cuadro de 16 ms
+    private static final int ROWS_PER_FRAME = 2;
+    private static final long FRAME_MS = 16;
+    private static final int SCROLL_BACK_ROWS = 150;
+    private static final long SETTLE_TIMEOUT_MS = 5_000;
+
+    private Instrumentation instrumentation;
+    private Context context;
+    private final List<File> blobs = new ArrayList<>();
+    private final List<EntrySummary> entries = new ArrayList<>();
+
+    @Before
+    public void setUp() throws IOException {
+        instrumentation = InstrumentationRegistry.getInstrumentation();
+        context = instrumentation.getTargetContext();
+
+        String[] fullHashes = new String[IMAGES];
+        String[] cardHashes = new String[IMAGES];
+        for (int i = 0; i < IMAGES; i++) {
+            fullHashes[i] = writeBlob(syntheticImage(i, ImageVariants.FULL_SIZE, 600));
+            cardHashes[i] = writeBlob(syntheticImage(i, 427, ImageVariants.CARD_SIZE));
+        }
+
+        for (int i = 0; i < ENTRIES; i++) {
+            EntrySummary entry = new EntrySummary();
+            entry.setId("scroll-" + i);
+            entry.setUserId("scroll-test");
+            entry.setTitle("Entrada " + i);
+            entry.setUpdatedAt(1);
+            // Una de cada diez entradas no tiene imagen y muestra el marcador
+            if (i % 10 != 0) {
+                entry.setImageHash(fullHashes[i % IMAGES]);
+                entry.setCardHash(cardHashes[i % IMAGES]);
+            }
+            entries.add(entry);
+        }
+    }
+
+    @After
+    public void tearDown() {
+        for (File blob : blobs) {
+            blob.delete();
+        }
+    }
+
+    @Test
+    public void scrollThrough1000Entries() {
+        ThumbnailLoader loader = ThumbnailLoader.getInstance(context);
+        int sizePx = Math.round(100 * context.getResources().getDisplayMetrics().density);
+        ImageView[] pool = new ImageView[POOL_SIZE];
+        instrumentation.runOnMainSync(() -> {
+            for (int i = 0; i < pool.length; i++) {
+                pool[i] = new ImageView(context);
+                pool[i].setLayoutParams(new ViewGroup.LayoutParams(sizePx, sizePx));
+            }
+        });
+
+        long start = SystemClock.elapsedRealtime();
+        for (int position = 0; position < ENTRIES; position++) {
+            bind(loader, pool, position);
+        }
+        // Volver un poco hacia arriba: estas filas ya deberían estar en la caché
+        for (int position = ENTRIES - 1; position >= ENTRIES - SCROLL_BACK_ROWS; position--) {
+            bind(loader, pool, position);
+        }
+        long scrollMs = SystemClock.elapsedRealtime() - start;
+
+        // Las filas que quedaron en pantalla terminan mostrando su miniatura
+        int top = ENTRIES - SCROLL_BACK_ROWS;
+        long deadline = SystemClock.elapsedRealtime() + SETTLE_TIMEOUT_MS;
+        while (!visibleRowsLoaded(pool, top) && SystemClock.elapsedRealtime() < deadline) {
+            SystemClock.sleep(FRAME_MS);
+        }
+
+        String stats = loader.getStats();
+        Log.i(TAG, "Scroll de " + ENTRIES + " entradas en " + scrollMs + " ms: " + stats);
+        System.out.println("ThumbnailLoader scroll " + ENTRIES + " entradas: " + stats);
+        assertTrue(stats, visibleRowsLoaded(pool, top));
+    }
+
+    private void bind(ThumbnailLoader loader, ImageView[] pool, int position) {
+        EntrySummary entry = entries.get(position);
+        ImageView view = pool[position % pool.length];
+        instrumentation.runOnMainSync(() -> loader.load(entry, view, R.drawable.ic_logo));
+        if (position % ROWS_PER_FRAME == 0) {
+            SystemClock.sleep(FRAME_MS);
+        }
+    }
+
+    private boolean visibleRowsLoaded(ImageView[] pool, int top) {
+        boolean[] loaded = {true};
+        instrumentation.runOnMainSync(() -> {
+            for (int position = top; position < top + VISIBLE_ROWS; position++) {
+                ImageView view = pool[position % pool.length];
+                if (entries.get(position).hasImage() && !(view.getDrawable() instanceof BitmapDrawable)) {
+                    loaded[0] = false;
+                }
+            }
+        });
+        return loaded[0];
+    }
+
+    /**
+     * JPEG con un degradado y un número distinto por imagen, para que cada blob sea único
+     */
+    private static byte[] syntheticImage(int seed, int width, int height) {
+        Bitmap bitmap = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+        Canvas canvas = new Canvas(bitmap);
+        canvas.drawColor(Color.HSVToColor(new float[]{seed * 360f / IMAGES, 0.5f, 0.9f}));
+        Paint paint = new Paint(Paint.ANTI_ALIAS_FLAG);
+        for (int y = 0; y < height; y += 8) {
+            paint.setColor(Color.argb(255 * y / height, 0, 0, 0));
+            canvas.drawRect(0, y, width, y + 8, paint);
+        }
+        paint.setColor(Color.WHITE);
+        paint.setTextSize(height / 3f);
+        canvas.drawText(String.valueOf(seed), width / 4f, height / 2f, paint);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        bitmap.compress(Bitmap.CompressFormat.JPEG, 85, out);
+        bitmap.recycle();
+        return out.toByteArray();
+    }
+
+    private String writeBlob(byte[] bytes) throws IOException {
+        String hash = BlobStore.sha256(bytes);
+        File file = BlobStore.getInstance(context).getLocalFile(hash);
+        try (FileOutputStream out = new FileOutputStream(file)) {
+            out.write(bytes);
+        }
+        blobs.add(file);
+        return hash;
+    }
+}
@@ -5,17 +5,14 @@ import android.annotation.SuppressLint;
 import android.content.Intent;
 import android.content.pm.PackageManager;
 import android.graphics.Bitmap;
-import android.graphics.BitmapFactory;
 import android.location.Address;
 import android.location.Geocoder;
-import android.media.MediaRecorder;
 import android.net.Uri;
 import android.os.Build;
 import android.os.Bundle;
 import android.os.Handler;
 import android.provider.MediaStore;
 import android.text.TextUtils;
-import android.util.Base64;
 import android.view.View;
 import android.widget.ImageButton;
 import android.widget.ImageView;
@@ -33,7 +30,17 @@ import androidx.core.app.ActivityCompat;
 import androidx.core.content.ContextCompat;
 
 import com.example.chronicav1.R;
+import com.example.chronicav1.data.BlobStore;
+import com.example.chronicav1.data.EntryOutbox;
+import com.example.chronicav1.data.EntryRepository;
+import com.example.chronicav1.maps.GeoHash;
+import com.example.chronicav1.media.AudioPeaks;
+import com.example.chronicav1.media.AudioRecorder;
+import com.example.chronicav1.media.CameraCapture;
+import com.example.chronicav1.media.ImageImporter;
+import com.example.chronicav1.media.ImageVariants;
 import com.example.chronicav1.models.Entry;
+import com.example.chronicav1.utils.EntryImages;
 import com.google.android.gms.location.FusedLocationProviderClient;
 import com.google.android.gms.location.LocationServices;
 import com.google.android.gms.maps.CameraUpdateFactory;
@@ -42,15 +49,16 @@ import com.google.android.gms.maps.OnMapReadyCallback;
 import com.google.android.gms.maps.SupportMapFragment;
 import com.google.android.gms.maps.model.LatLng;
 import com.google.android.gms.maps.model.MarkerOptions;
+import com.google.android.gms.tasks.Task;
+import com.google.android.gms.tasks.Tasks;
 import com.google.android.material.button.MaterialButton;
 import com.google.android.material.textfield.TextInputEditText;
 import com.google.firebase.auth.FirebaseAuth;
-import com.google.firebase.firestore.FirebaseFirestore;
 
-import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
@@ -69,6 +77,8 @@ public class EditEntryActivity extends AppCompatActivity implements OnMapReadyCa
     private static final int REQUEST_AUDIO_PERMISSION = 103;
     private static final int REQUEST_PICK_IMAGE = 200;
     private static final int REQUEST_CAPTURE_IMAGE = 201;
+    // La cámara puede hacer que el sistema destruya esta actividad mientras está abierta
+    private static final String STATE_CAPTURE_FILE = "capture_file";
     private static final int MAX_AUDIO_DURATION = 120000;
 
     private Toolbar toolbar;
@@ -81,7 +91,6 @@ public class EditEntryActivity extends AppCompatActivity implements OnMapReadyCa
     private GoogleMap mMap;
 
     private FirebaseAuth mAuth;
-    private FirebaseFirestore db;
     private String currentUserId;
 
     private Entry originalEntry;
@@ -93,8 +102,10 @@ public class EditEntryActivity extends AppCompatActivity implements OnMapReadyCa
     private String locationAddress = "";
     private boolean isRecording = false;
     private boolean imageChanged = false;
+    // Archivo donde la cámara escribe la foto en curso
+    private File captureFile;
     private boolean audioChanged = false;
-    private MediaRecorder mediaRecorder;
+    private AudioRecorder audioRecorder;
     private Handler handler = new Handler();
 
     private FusedLocationProviderClient fusedLocationClient;
@@ -104,20 +115,35 @@ public class EditEntryActivity extends AppCompatActivity implements OnMapReadyCa
         super.onCreate(savedInstanceState);
         setContentView(R.layout.activity_new_entry);
 
+        if (savedInstanceState != null && savedInstanceState.containsKey(STATE_CAPTURE_FILE)) {
+            captureFile = new File(savedInstanceState.getString(STATE_CAPTURE_FILE));
+        }
+
         mAuth = FirebaseAuth.getInstance();
-        db = FirebaseFirestore.getInstance();
         currentUserId = mAuth.getCurrentUser().getUid();
 
         fusedLocationClient = LocationServices.getFusedLocationProviderClient(this);
 
-        originalEntry = (Entry) getIntent().getSerializableExtra("ENTRY");
-
-        if (originalEntry == null) {
-            Toast.makeText(this, "Error al cargar entrada", Toast.LENGTH_SHORT).show();
-            finish();
+        // El intent solo trae el id; la entrada sale de la caché compartida
+        String entryId = getIntent().getStringExtra("ENTRY_ID");
+        if (entryId == null) {
+            showLoadErrorAndFinish();
             return;
         }
 
+        EntryRepository.getInstance(this, currentUserId).loadEntry(entryId)
+                .addOnCompleteListener(this, task -> {
+                    if (task.isSuccessful() && task.getResult() != null) {
+                        showEntry(task.getResult());
+                    } else {
+                        showLoadErrorAndFinish();
+                    }
+                });
+    }
+
+    private void showEntry(Entry entry) {
+        originalEntry = entry;
+
         initViews();
         setupToolbar();
         loadEntryData();
@@ -125,6 +151,11 @@ public class EditEntryActivity extends AppCompatActivity implements OnMapReadyCa
         setupMap();
     }
 
+    private void showLoadErrorAndFinish() {
+        Toast.makeText(this, "Error al cargar entrada", Toast.LENGTH_SHORT).show();
+        finish();
+    }
+
     private void initViews() {
         toolbar = findViewById(R.id.toolbar);
         etTitle = findViewById(R.id.etTitle);
@@ -160,15 +191,18 @@ public class EditEntryActivity extends AppCompatActivity implements OnMapReadyCa
         locationAddress = originalEntry.getLocation();
         tvLocationText.setText(locationAddress);
 
-        if (originalEntry.getImageBase64() != null && !originalEntry.getImageBase64().isEmpty()) {
-            try {
-                byte[] decodedBytes = Base64.decode(originalEntry.getImageBase64(), Base64.DEFAULT);
-                selectedBitmap = BitmapFactory.decodeByteArray(decodedBytes, 0, decodedBytes.length);
-                ivImagePreview.setImageBitmap(selectedBitmap);
-                cvImagePreview.setVisibility(View.VISIBLE);
-            } catch (Exception e) {
-                e.printStackTrace();
-            }
+        if (originalEntry.hasImage()) {
+            EntryImages.loadBitmap(this, originalEntry)
+                    .addOnSuccessListener(this, bitmap -> {
+                        // Si el usuario ya eligió otra imagen no se sobrescribe
+                        if (bitmap == null || imageChanged) {
+                            return;
+                        }
+                        selectedBitmap = bitmap;
+                        ivImagePreview.setImageBitmap(selectedBitmap);
+                        cvImagePreview.setVisibility(View.VISIBLE);
+                    })
+                    .addOnFailureListener(this, Throwable::printStackTrace);
         }
 
         if (originalEntry.getAudioFileName() != null && !originalEntry.getAudioFileName().isEmpty()) {
@@ -267,6 +301,7 @@ public class EditEntryActivity extends AppCompatActivity implements OnMapReadyCa
             if (audioFile.exists()) {
                 audioFile.delete();
             }
+            AudioPeaks.fileFor(audioFile).delete();
             audioPath = null;
             audioChanged = true;
             tvMicText.setText("Audio");
@@ -308,7 +343,15 @@ public class EditEntryActivity extends AppCompatActivity implements OnMapReadyCa
     }
 
     private void captureImage() {
-        Intent takePictureIntent = new Intent(MediaStore.ACTION_IMAGE_CAPTURE);
+        try {
+            captureFile = CameraCapture.createTarget(this);
+        } catch (IOException e) {
+            e.printStackTrace();
+            Toast.makeText(this, "No se pudo preparar la cámara", Toast.LENGTH_SHORT).show();
+            return;
+        }
+        // La foto va directo al archivo a resolución completa, no como miniatura en el Intent
+        Intent takePictureIntent = CameraCapture.createIntent(this, captureFile);
         Intent chooser = Intent.createChooser(takePictureIntent, "Tomar foto");
         startActivityForResult(chooser, REQUEST_CAPTURE_IMAGE);
     }
@@ -359,17 +402,12 @@ public class EditEntryActivity extends AppCompatActivity implements OnMapReadyCa
             }
 
             String timeStamp = new SimpleDateFormat("yyyyMMdd_HHmmss", Locale.getDefault()).format(new Date());
-            String audioFileName = "AUDIO_" + timeStamp + ".3gp";
+            String audioFileName = "AUDIO_" + timeStamp + AudioRecorder.EXTENSION;
             File audioFile = new File(audioDir, audioFileName);
             audioPath = audioFile.getAbsolutePath();
 
-            mediaRecorder = new MediaRecorder();
-            mediaRecorder.setAudioSource(MediaRecorder.AudioSource.MIC);
-            mediaRecorder.setOutputFormat(MediaRecorder.OutputFormat.THREE_GPP);
-            mediaRecorder.setAudioEncoder(MediaRecorder.AudioEncoder.AMR_NB);
-            mediaRecorder.setOutputFile(audioPath);
-            mediaRecorder.prepare();
-            mediaRecorder.start();
+            // AAC escrito por bloques: si la app muere a mitad de la toma, lo grabado se conserva
+            audioRecorder = AudioRecorder.start(audioFile, AudioRecorder.Config.VOICE);
 
             isRecording = true;
             audioChanged = true;
@@ -392,25 +430,27 @@ public class EditEntryActivity extends AppCompatActivity implements OnMapReadyCa
     }
 
     private void stopRecording() {
-        if (mediaRecorder != null) {
-            try {
-                mediaRecorder.stop();
-                mediaRecorder.release();
-                mediaRecorder = null;
-
-                isRecording = false;
-                tvMicText.setText("Audio grabado ✓");
-                ivMicIcon.setColorFilter(getResources().getColor(android.R.color.holo_green_dark));
-
-                handler.removeCallbacksAndMessages(null);
-
-                Toast.makeText(this, "Audio guardado", Toast.LENGTH_SHORT).show();
-
-            } catch (RuntimeException e) {
-                e.printStackTrace();
-                audioPath = null;
-                Toast.makeText(this, "Error al detener grabación", Toast.LENGTH_SHORT).show();
-            }
+        if (audioRecorder != null) {
+            AudioRecorder recorder = audioRecorder;
+            audioRecorder = null;
+            isRecording = false;
+            handler.removeCallbacksAndMessages(null);
+
+            // No guardar hasta que el codec haya vaciado las últimas tramas
+            btnUpdateEntry.setEnabled(false);
+            recorder.stop()
+                    .addOnSuccessListener(this, result -> {
+                        tvMicText.setText("Audio grabado ✓");
+                        ivMicIcon.setColorFilter(getResources().getColor(android.R.color.holo_green_dark));
+                        Toast.makeText(this, "Audio guardado", Toast.LENGTH_SHORT).show();
+                    })
+                    .addOnFailureListener(this, e -> {
+                        e.printStackTrace();
+                        audioPath = null;
+                        tvMicText.setText("Audio");
+                        Toast.makeText(this, "Error al detener grabación", Toast.LENGTH_SHORT).show();
+                    })
+                    .addOnCompleteListener(this, task -> btnUpdateEntry.setEnabled(true));
         }
     }
 
@@ -471,73 +511,77 @@ public class EditEntryActivity extends AppCompatActivity implements OnMapReadyCa
         updates.put("location", locationAddress);
         updates.put("latitude", latitude);
         updates.put("longitude", longitude);
+        updates.put("geohash", GeoHash.forEntry(latitude, longitude));
+        updates.put("updatedAt", System.currentTimeMillis());
+        List<String> deletedFields = new ArrayList<>();
 
+        // Las variantes de la imagen se generan en segundo plano; el documento solo guarda hashes
+        Task<Map<String, Object>> imageTask = Tasks.forResult(null);
         if (imageChanged) {
-            if (selectedBitmap != null) {
-                try {
-                    Bitmap resized = resizeBitmap(selectedBitmap, 800, 800);
-                    ByteArrayOutputStream baos = new ByteArrayOutputStream();
-                    resized.compress(Bitmap.CompressFormat.JPEG, 60, baos);
-                    byte[] imageBytes = baos.toByteArray();
-                    String base64Image = Base64.encodeToString(imageBytes, Base64.DEFAULT);
-
-                    if (base64Image.length() > 1000000) {
-                        Toast.makeText(this, "Imagen muy grande", Toast.LENGTH_SHORT).show();
-                        btnUpdateEntry.setEnabled(true);
-                        btnUpdateEntry.setText("Actualizar Entrada");
-                        return;
-                    }
+            // Eliminar el Base64 heredado para que el documento quede ligero
+            deletedFields.add("imageBase64");
 
-                    updates.put("imageBase64", base64Image);
-                } catch (Exception e) {
-                    e.printStackTrace();
-                }
+            if (selectedBitmap != null) {
+                imageTask = ImageVariants.save(this, currentUserId, selectedBitmap);
             } else {
-                updates.put("imageBase64", "");
+                updates.putAll(ImageVariants.cleared());
             }
         }
 
+        // El audio se copia al almacén de blobs y se sube en segundo plano (ver BlobUploader)
+        Task<String> audioTask = Tasks.forResult(null);
+        Task<String> peaksTask = Tasks.forResult(null);
         if (audioChanged) {
             if (audioPath != null && !audioPath.isEmpty()) {
                 File oldFile = new File(audioPath);
-                File newFile = new File(getFilesDir(), "audio/" + originalEntry.getId() + ".3gp");
+                String newName = originalEntry.getId() + AudioRecorder.EXTENSION;
+                File newFile = new File(getFilesDir(), "audio/" + newName);
                 if (oldFile.renameTo(newFile)) {
-                    updates.put("audioFileName", originalEntry.getId() + ".3gp");
+                    updates.put("audioFileName", newName);
+                    audioTask = BlobStore.getInstance(this).putFile(currentUserId, newFile, AudioRecorder.CONTENT_TYPE);
+
+                    // La forma de onda viaja junto al audio
+                    File newPeaks = AudioPeaks.fileFor(newFile);
+                    if (AudioPeaks.fileFor(oldFile).renameTo(newPeaks)) {
+                        peaksTask = BlobStore.getInstance(this).putFile(currentUserId, newPeaks, AudioPeaks.CONTENT_TYPE);
+                    }
                 }
             } else {
                 updates.put("audioFileName", "");
+                updates.put("audioHash", "");
+                updates.put("peaksHash", "");
             }
         }
 
-        db.collection("entries").document(originalEntry.getId())
-                .update(updates)
-                .addOnSuccessListener(aVoid -> {
+        Task<Map<String, Object>> savedImage = imageTask;
+        Task<String> savedAudio = audioTask;
+        Task<String> savedPeaks = peaksTask;
+        Tasks.whenAllSuccess(imageTask, audioTask, peaksTask)
+                .onSuccessTask(ignored -> {
+                    if (savedImage.getResult() != null) {
+                        updates.putAll(savedImage.getResult());
+                    }
+                    if (savedAudio.getResult() != null) {
+                        updates.put("audioHash", savedAudio.getResult());
+                    }
+                    if (savedPeaks.getResult() != null) {
+                        updates.put("peaksHash", savedPeaks.getResult());
+                    }
+                    // Se guarda en la cola local; el envío a Firestore sigue en segundo plano
+                    return EntryOutbox.getInstance(this)
+                            .enqueueUpdate(currentUserId, originalEntry.getId(), updates, deletedFields);
+                })
+                .addOnSuccessListener(this, aVoid -> {
                     Toast.makeText(this, "Entrada actualizada ✓", Toast.LENGTH_SHORT).show();
                     finish();
                 })
-                .addOnFailureListener(e -> {
+                .addOnFailureListener(this, e -> {
                     Toast.makeText(this, "Error: " + e.getMessage(), Toast.LENGTH_LONG).show();
                     btnUpdateEntry.setEnabled(true);
                     btnUpdateEntry.setText("Actualizar Entrada");
                 });
     }
 
-    private Bitmap resizeBitmap(Bitmap bitmap, int maxWidth, int maxHeight) {
-        if (bitmap.getWidth() <= maxWidth && bitmap.getHeight() <= maxHeight) {
-            return bitmap;
-        }
-
-        float scale = Math.min(
-                (float) maxWidth / bitmap.getWidth(),
-                (float) maxHeight / bitmap.getHeight()
-        );
-
-        int newWidth = Math.round(bitmap.getWidth() * scale);
-        int newHeight = Math.round(bitmap.getHeight() * scale);
-
-        return Bitmap.createScaledBitmap(bitmap, newWidth, newHeight, true);
-    }
-
     private void showDiscardChangesDialog() {
         new AlertDialog.Builder(this)
                 .setTitle("Descartar cambios")
@@ -552,31 +596,73 @@ public class EditEntryActivity extends AppCompatActivity implements OnMapReadyCa
         super.onActivityResult(requestCode, resultCode, data);
 
         if (resultCode == RESULT_OK && data != null) {
-            try {
-                if (requestCode == REQUEST_PICK_IMAGE) {
-                    imageUri = data.getData();
-                    if (imageUri != null) {
-                        selectedBitmap = MediaStore.Images.Media.getBitmap(getContentResolver(), imageUri);
-                        ivImagePreview.setImageBitmap(selectedBitmap);
-                        cvImagePreview.setVisibility(View.VISIBLE);
-                        imageChanged = true;
-                        Toast.makeText(this, "Imagen actualizada ✓", Toast.LENGTH_SHORT).show();
-                    }
-                } else if (requestCode == REQUEST_CAPTURE_IMAGE) {
-                    Bundle extras = data.getExtras();
-                    if (extras != null) {
-                        selectedBitmap = (Bitmap) extras.get("data");
-                        ivImagePreview.setImageBitmap(selectedBitmap);
-                        cvImagePreview.setVisibility(View.VISIBLE);
-                        imageChanged = true;
-                        Toast.makeText(this, "Foto capturada ✓", Toast.LENGTH_SHORT).show();
-                    }
+            if (requestCode == REQUEST_PICK_IMAGE) {
+                imageUri = data.getData();
+                if (imageUri != null) {
+                    importImage(imageUri);
                 }
-            } catch (IOException e) {
-                e.printStackTrace();
-                Toast.makeText(this, "Error: " + e.getMessage(), Toast.LENGTH_SHORT).show();
             }
         }
+
+        // Con EXTRA_OUTPUT la cámara no devuelve datos en el Intent
+        if (requestCode == REQUEST_CAPTURE_IMAGE && captureFile != null) {
+            if (resultCode == RESULT_OK) {
+                importCapture(captureFile);
+            } else {
+                CameraCapture.discard(captureFile);
+            }
+            captureFile = null;
+        }
+    }
+
+    @Override
+    protected void onSaveInstanceState(@NonNull Bundle outState) {
+        super.onSaveInstanceState(outState);
+        if (captureFile != null) {
+            outState.putString(STATE_CAPTURE_FILE, captureFile.getAbsolutePath());
+        }
+    }
+
+    /**
+     * Decodifica la foto capturada en segundo plano, ya reducida al tamaño que se guarda
+     */
+    private void importCapture(File file) {
+        // No guardar mientras la foto se decodifica
+        btnUpdateEntry.setEnabled(false);
+        CameraCapture.load(this, file, ImageVariants.FULL_SIZE)
+                .addOnSuccessListener(this, bitmap -> {
+                    selectedBitmap = bitmap;
+                    ivImagePreview.setImageBitmap(selectedBitmap);
+                    cvImagePreview.setVisibility(View.VISIBLE);
+                    imageChanged = true;
+                    Toast.makeText(this, "Foto capturada ✓", Toast.LENGTH_SHORT).show();
+                })
+                .addOnFailureListener(this, e -> {
+                    e.printStackTrace();
+                    Toast.makeText(this, "Error al cargar la foto: " + e.getMessage(), Toast.LENGTH_LONG).show();
+                })
+                .addOnCompleteListener(this, task -> btnUpdateEntry.setEnabled(true));
+    }
+
+    /**
+     * Decodifica la imagen elegida en segundo plano, ya reducida al tamaño que se guarda
+     */
+    private void importImage(Uri uri) {
+        // No guardar mientras la imagen se decodifica
+        btnUpdateEntry.setEnabled(false);
+        ImageImporter.load(this, uri, ImageVariants.FULL_SIZE)
+                .addOnSuccessListener(this, bitmap -> {
+                    selectedBitmap = bitmap;
+                    ivImagePreview.setImageBitmap(selectedBitmap);
+                    cvImagePreview.setVisibility(View.VISIBLE);
+                    imageChanged = true;
+                    Toast.makeText(this, "Imagen actualizada ✓", Toast.LENGTH_SHORT).show();
+                })
+                .addOnFailureListener(this, e -> {
+                    e.printStackTrace();
+                    Toast.makeText(this, "Error: " + e.getMessage(), Toast.LENGTH_SHORT).show();
+                })
+                .addOnCompleteListener(this, task -> btnUpdateEntry.setEnabled(true));
     }
 
     @RequiresPermission(allOf = {Manifest.permission.ACCESS_FINE_LOCATION, Manifest.permission.ACCESS_COARSE_LOCATION})
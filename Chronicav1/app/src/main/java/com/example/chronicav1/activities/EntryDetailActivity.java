@@ -2,12 +2,9 @@ package com.example.chronicav1.activities;
 
 import android.content.DialogInterface;
 import android.content.Intent;
-import android.graphics.Bitmap;
-import android.graphics.BitmapFactory;
 import android.media.MediaPlayer;
 import android.os.Bundle;
-import android.os.Handler;
-import android.util.Base64;
+import android.view.Choreographer;
 import android.view.View;
 import android.widget.ImageButton;
 import android.widget.ImageView;
@@ -23,27 +20,38 @@ import androidx.cardview.widget.CardView;
 
 import com.bumptech.glide.Glide;
 import com.example.chronicav1.R;
+import com.example.chronicav1.data.BulkOperations;
+import com.example.chronicav1.data.EntryRepository;
+import com.example.chronicav1.media.AudioCache;
+import com.example.chronicav1.media.AudioPeaks;
+import com.example.chronicav1.media.PlayerPool;
 import com.example.chronicav1.models.Entry;
+import com.example.chronicav1.models.EntrySummary;
+import com.example.chronicav1.utils.EntryImages;
+import com.example.chronicav1.utils.LaunchTimer;
+import com.example.chronicav1.views.WaveformView;
 import com.google.android.gms.maps.CameraUpdateFactory;
 import com.google.android.gms.maps.GoogleMap;
 import com.google.android.gms.maps.OnMapReadyCallback;
 import com.google.android.gms.maps.SupportMapFragment;
 import com.google.android.gms.maps.model.LatLng;
 import com.google.android.gms.maps.model.MarkerOptions;
+import com.google.android.gms.tasks.Task;
 import com.google.android.material.appbar.CollapsingToolbarLayout;
 import com.google.android.material.button.MaterialButton;
 import com.google.firebase.auth.FirebaseAuth;
-import com.google.firebase.firestore.FirebaseFirestore;
-import com.google.firebase.storage.FirebaseStorage;
-import com.google.firebase.storage.StorageReference;
 
 import java.io.File;
-import java.io.IOException;
+import java.util.List;
 
 /**
  * Activity para mostrar el detalle completo de una entrada del diario
  */
-public class EntryDetailActivity extends AppCompatActivity implements OnMapReadyCallback {
+public class EntryDetailActivity extends AppCompatActivity implements OnMapReadyCallback,
+        EntryRepository.Observer {
+
+    // Cada cuánto se lee la posición real del reproductor durante la reproducción
+    private static final long PROGRESS_RESYNC_NANOS = 500_000_000L;
 
     // Vistas
     private Toolbar toolbar;
@@ -54,19 +62,28 @@ public class EntryDetailActivity extends AppCompatActivity implements OnMapReady
     private CardView cvAudioPlayer;
     private ImageButton btnPlayPause;
     private SeekBar seekBarAudio;
+    private WaveformView waveformAudio;
     private MaterialButton btnEditEntry, btnDeleteEntry;
     private GoogleMap mMap;
 
     // Datos
+    private String entryId;
     private Entry entry;
+    // Reproductor del pool compartido; null hasta el primer play
     private MediaPlayer mediaPlayer;
-    private Handler handler = new Handler();
+    private String audioKey;
+    private PlayerPool.Source audioSource;
+    // Pedido en curso al pool; si cambia antes de que termine, el resultado se devuelve
+    private Object pendingAcquire;
+    private int pendingSeekMs = -1;
+    // Progreso por frame: se extrapola desde la última posición leída del reproductor
+    private long anchorFrameNanos;
+    private int anchorPositionMs;
     private boolean isPlaying = false;
 
     // Firebase
     private FirebaseAuth mAuth;
-    private FirebaseFirestore db;
-    private FirebaseStorage storage;
+    private EntryRepository entryRepository;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -75,18 +92,28 @@ public class EntryDetailActivity extends AppCompatActivity implements OnMapReady
 
         // Inicializar Firebase
         mAuth = FirebaseAuth.getInstance();
-        db = FirebaseFirestore.getInstance();
-        storage = FirebaseStorage.getInstance();
-
-        // Obtener entrada desde intent
-        entry = (Entry) getIntent().getSerializableExtra("ENTRY");
+        entryRepository = EntryRepository.getInstance(this, mAuth.getCurrentUser().getUid());
 
-        if (entry == null) {
-            Toast.makeText(this, "Error al cargar entrada", Toast.LENGTH_SHORT).show();
-            finish();
+        // El intent solo trae el id; la lista solo tiene el resumen, el documento completo se pide aquí
+        entryId = getIntent().getStringExtra("ENTRY_ID");
+        if (entryId == null) {
+            showLoadErrorAndFinish();
             return;
         }
 
+        entryRepository.loadEntry(entryId)
+                .addOnCompleteListener(this, task -> {
+                    if (task.isSuccessful() && task.getResult() != null) {
+                        showEntry(task.getResult());
+                    } else {
+                        showLoadErrorAndFinish();
+                    }
+                });
+    }
+
+    private void showEntry(Entry entry) {
+        this.entry = entry;
+
         // Inicializar vistas
         initViews();
 
@@ -101,6 +128,13 @@ public class EntryDetailActivity extends AppCompatActivity implements OnMapReady
 
         // Configurar listeners
         setupListeners();
+
+        LaunchTimer.reportFirstFrame(this, entry.hasImage() ? "detalle con imagen" : "detalle sin imagen");
+    }
+
+    private void showLoadErrorAndFinish() {
+        Toast.makeText(this, "Error al cargar entrada", Toast.LENGTH_SHORT).show();
+        finish();
     }
 
     private void initViews() {
@@ -115,6 +149,7 @@ public class EntryDetailActivity extends AppCompatActivity implements OnMapReady
         tvAudioDuration = findViewById(R.id.tvAudioDuration);
         btnPlayPause = findViewById(R.id.btnPlayPause);
         seekBarAudio = findViewById(R.id.seekBarAudio);
+        waveformAudio = findViewById(R.id.waveformAudio);
         tvDetailLocation = findViewById(R.id.tvDetailLocation);
         tvCoordinates = findViewById(R.id.tvCoordinates);
         btnEditEntry = findViewById(R.id.btnEditEntry);
@@ -167,22 +202,21 @@ public class EntryDetailActivity extends AppCompatActivity implements OnMapReady
                 entry.getLatitude(), entry.getLongitude());
         tvCoordinates.setText(coordinates);
 
-        // Cargar imagen desde Base64 si existe
-        if (entry.getImageBase64() != null && !entry.getImageBase64().isEmpty()) {
-            try {
-                byte[] decodedBytes = Base64.decode(entry.getImageBase64(), Base64.DEFAULT);
-                Bitmap bitmap = BitmapFactory.decodeByteArray(decodedBytes, 0, decodedBytes.length);
-                ivEntryImage.setImageBitmap(bitmap);
-            } catch (Exception e) {
-                e.printStackTrace();
-                ivEntryImage.setImageResource(R.drawable.ic_logo);
-            }
-        } else {
-            ivEntryImage.setImageResource(R.drawable.ic_logo);
+        // Cargar imagen (blob por hash o Base64 heredado) si existe
+        ivEntryImage.setImageResource(R.drawable.ic_logo);
+        if (entry.hasImage()) {
+            Entry shownEntry = entry;
+            EntryImages.loadBitmap(this, entry)
+                    .addOnSuccessListener(this, bitmap -> {
+                        if (bitmap != null && shownEntry == entry) {
+                            ivEntryImage.setImageBitmap(bitmap);
+                        }
+                    })
+                    .addOnFailureListener(this, Throwable::printStackTrace);
         }
 
         // Configurar audio si existe
-        if (entry.getAudioFileName() != null && !entry.getAudioFileName().isEmpty()) {
+        if (hasText(entry.getAudioFileName()) || hasText(entry.getAudioHash())) {
             cvAudioPlayer.setVisibility(View.VISIBLE);
             setupAudioPlayer();
         } else {
@@ -190,46 +224,124 @@ public class EntryDetailActivity extends AppCompatActivity implements OnMapReady
         }
     }
 
+    /**
+     * Solo decide de dónde sale el audio; el reproductor se pide al pool con el primer play
+     */
     private void setupAudioPlayer() {
-        mediaPlayer = new MediaPlayer();
-
-        try {
-            File audioFile = new File(getFilesDir(), "audio/" + entry.getAudioFileName());
-
-            if (audioFile.exists()) {
-
-                mediaPlayer.setDataSource(audioFile.getAbsolutePath());
-                mediaPlayer.prepareAsync();
-
-                mediaPlayer.setOnPreparedListener(mp -> {
-                    int duration = mp.getDuration();
-                    seekBarAudio.setMax(duration);
-                    tvAudioDuration.setText(formatTime(duration));
-                });
+        // Devolver el reproductor anterior si la entrada se recarga
+        releasePlayer();
+        pendingSeekMs = -1;
+        showProgress(0);
+        loadWaveform();
+
+        File audioFile = new File(getFilesDir(), "audio/" + entry.getAudioFileName());
+        String ownerId = entry.getUserId();
+        String audioHash = entry.getAudioHash();
+
+        if (hasText(entry.getAudioFileName()) && audioFile.exists()) {
+            audioKey = audioFile.getAbsolutePath();
+            audioSource = player -> player.setDataSource(audioFile.getAbsolutePath());
+        } else if (hasText(audioHash)) {
+            audioKey = audioHash;
+            // Grabado en otro dispositivo: se reproduce mientras se descarga
+            audioSource = player -> AudioCache.getInstance(this).setDataSource(player, ownerId, audioHash);
+        } else {
+            audioKey = null;
+            audioSource = null;
+            Toast.makeText(this, "Audio no encontrado", Toast.LENGTH_SHORT).show();
+            cvAudioPlayer.setVisibility(View.GONE);
+        }
+    }
 
-                mediaPlayer.setOnCompletionListener(mp -> {
-                    isPlaying = false;
-                    btnPlayPause.setImageResource(R.drawable.ic_play);
-                    seekBarAudio.setProgress(0);
-                });
+    /**
+     * Devuelve el reproductor al pool (queda preparado un rato por si se vuelve a esta entrada)
+     */
+    private void releasePlayer() {
+        Choreographer.getInstance().removeFrameCallback(progressFrame);
+        pendingAcquire = null;
+        if (mediaPlayer != null) {
+            PlayerPool.getInstance().release(mediaPlayer);
+            mediaPlayer = null;
+        }
+        isPlaying = false;
+        // Las vistas se crean al llegar la entrada; la pantalla puede cerrarse antes
+        if (btnPlayPause != null) {
+            btnPlayPause.setImageResource(R.drawable.ic_play);
+        }
+    }
 
-            } else {
-                Toast.makeText(this, "Audio no encontrado", Toast.LENGTH_SHORT).show();
-                cvAudioPlayer.setVisibility(View.GONE);
+    private void onPlayerReady(Object request, Task<MediaPlayer> task) {
+        if (request != pendingAcquire) {
+            // La pantalla se fue o cambió de entrada mientras se preparaba
+            if (task.isSuccessful()) {
+                PlayerPool.getInstance().release(task.getResult());
             }
+            return;
+        }
+        pendingAcquire = null;
+        if (!task.isSuccessful()) {
+            if (task.getException() != null) {
+                task.getException().printStackTrace();
+            }
+            Toast.makeText(this, "No se pudo reproducir el audio", Toast.LENGTH_SHORT).show();
+            return;
+        }
 
-        } catch (IOException e) {
-            e.printStackTrace();
-            Toast.makeText(this, "Error al cargar audio", Toast.LENGTH_SHORT).show();
-            cvAudioPlayer.setVisibility(View.GONE);
+        mediaPlayer = task.getResult();
+        mediaPlayer.setOnCompletionListener(mp -> {
+            isPlaying = false;
+            Choreographer.getInstance().removeFrameCallback(progressFrame);
+            btnPlayPause.setImageResource(R.drawable.ic_play);
+            showProgress(0);
+        });
+        mediaPlayer.setOnErrorListener((mp, what, extra) -> {
+            PlayerPool.getInstance().discard(mp);
+            mediaPlayer = null;
+            isPlaying = false;
+            Choreographer.getInstance().removeFrameCallback(progressFrame);
+            btnPlayPause.setImageResource(R.drawable.ic_play);
+            Toast.makeText(this, "No se pudo reproducir el audio", Toast.LENGTH_SHORT).show();
+            return true;
+        });
+
+        int duration = mediaPlayer.getDuration();
+        seekBarAudio.setMax(duration);
+        tvAudioDuration.setText(formatTime(duration));
+        if (pendingSeekMs >= 0) {
+            mediaPlayer.seekTo(pendingSeekMs);
+            pendingSeekMs = -1;
         }
+        playAudio();
     }
 
+    /**
+     * Dibuja la forma de onda precalculada; las grabaciones sin picos solo muestran la barra
+     */
+    private void loadWaveform() {
+        waveformAudio.setVisibility(View.GONE);
+        waveformAudio.setPeaks(null);
+        Entry shownEntry = entry;
+        AudioPeaks.load(this, entry)
+                .addOnSuccessListener(this, peaks -> {
+                    if (peaks == null || shownEntry != entry) {
+                        return;
+                    }
+                    waveformAudio.setPeaks(peaks);
+                    waveformAudio.setVisibility(View.VISIBLE);
+                    if (mediaPlayer == null) {
+                        // Duración sin preparar el reproductor
+                        int duration = (int) peaks.getDurationMs();
+                        seekBarAudio.setMax(duration);
+                        tvAudioDuration.setText(formatTime(duration));
+                    }
+                })
+                .addOnFailureListener(this, Throwable::printStackTrace);
+    }
 
     private void setupListeners() {
         // Play/Pause
         btnPlayPause.setOnClickListener(v -> {
-            if (mediaPlayer != null) {
+            if (audioSource != null) {
                 if (isPlaying) {
                     pauseAudio();
                 } else {
@@ -242,8 +354,8 @@ public class EntryDetailActivity extends AppCompatActivity implements OnMapReady
         seekBarAudio.setOnSeekBarChangeListener(new SeekBar.OnSeekBarChangeListener() {
             @Override
             public void onProgressChanged(SeekBar seekBar, int progress, boolean fromUser) {
-                if (fromUser && mediaPlayer != null) {
-                    mediaPlayer.seekTo(progress);
+                if (fromUser && audioSource != null) {
+                    seekAudio(progress);
                 }
             }
 
@@ -254,10 +366,16 @@ public class EntryDetailActivity extends AppCompatActivity implements OnMapReady
             public void onStopTrackingTouch(SeekBar seekBar) {}
         });
 
+        waveformAudio.setOnSeekListener(fraction -> {
+            if (audioSource != null) {
+                seekAudio((int) (fraction * seekBarAudio.getMax()));
+            }
+        });
+
         // Botón Editar
         btnEditEntry.setOnClickListener(v -> {
             Intent intent = new Intent(EntryDetailActivity.this, EditEntryActivity.class);
-            intent.putExtra("ENTRY", entry);
+            intent.putExtra("ENTRY_ID", entry.getId());
             startActivity(intent);
         });
 
@@ -266,27 +384,77 @@ public class EntryDetailActivity extends AppCompatActivity implements OnMapReady
     }
 
     private void playAudio() {
-        if (mediaPlayer != null) {
-            mediaPlayer.start();
-            isPlaying = true;
-            btnPlayPause.setImageResource(R.drawable.ic_pause);
-            updateSeekBar();
+        if (mediaPlayer == null) {
+            if (audioSource == null || pendingAcquire != null) {
+                return;
+            }
+            Object request = new Object();
+            pendingAcquire = request;
+            Task<MediaPlayer> task = PlayerPool.getInstance().acquire(audioKey, audioSource);
+            if (!task.isComplete()) {
+                Toast.makeText(this, "Cargando audio...", Toast.LENGTH_SHORT).show();
+            }
+            // Sin atarlo a la actividad: el reproductor tiene que volver al pool aunque ya no exista
+            task.addOnCompleteListener(result -> onPlayerReady(request, result));
+            return;
         }
+        PlayerPool.getInstance().start(mediaPlayer);
+        isPlaying = true;
+        btnPlayPause.setImageResource(R.drawable.ic_pause);
+        // Fuerza leer la posición real en el primer frame
+        anchorFrameNanos = 0;
+        Choreographer.getInstance().removeFrameCallback(progressFrame);
+        Choreographer.getInstance().postFrameCallback(progressFrame);
     }
 
     private void pauseAudio() {
         if (mediaPlayer != null && mediaPlayer.isPlaying()) {
             mediaPlayer.pause();
             isPlaying = false;
+            Choreographer.getInstance().removeFrameCallback(progressFrame);
             btnPlayPause.setImageResource(R.drawable.ic_play);
         }
     }
 
-    private void updateSeekBar() {
-        if (mediaPlayer != null && isPlaying) {
-            seekBarAudio.setProgress(mediaPlayer.getCurrentPosition());
-            handler.postDelayed(this::updateSeekBar, 100);
+    private void seekAudio(int positionMs) {
+        if (mediaPlayer != null) {
+            mediaPlayer.seekTo(positionMs);
+        } else {
+            // Se aplica cuando el pool entregue el reproductor
+            pendingSeekMs = positionMs;
         }
+        anchorFrameNanos = 0;
+        showProgress(positionMs);
+    }
+
+    /**
+     * Actualiza el progreso una vez por frame mientras suena. getCurrentPosition() es una
+     * llamada al servicio de medios: se lee cada PROGRESS_RESYNC_NANOS y entre medio se extrapola.
+     */
+    private final Choreographer.FrameCallback progressFrame = new Choreographer.FrameCallback() {
+        @Override
+        public void doFrame(long frameTimeNanos) {
+            if (mediaPlayer == null || !isPlaying) {
+                return;
+            }
+            if (frameTimeNanos - anchorFrameNanos >= PROGRESS_RESYNC_NANOS) {
+                anchorPositionMs = mediaPlayer.getCurrentPosition();
+                anchorFrameNanos = frameTimeNanos;
+            }
+            long elapsedMs = (frameTimeNanos - anchorFrameNanos) / 1_000_000;
+            showProgress((int) Math.min(seekBarAudio.getMax(), anchorPositionMs + elapsedMs));
+            Choreographer.getInstance().postFrameCallback(this);
+        }
+    };
+
+    private void showProgress(int positionMs) {
+        seekBarAudio.setProgress(positionMs);
+        int duration = seekBarAudio.getMax();
+        waveformAudio.setProgress(duration > 0 ? (float) positionMs / duration : 0f);
+    }
+
+    private static boolean hasText(String value) {
+        return value != null && !value.isEmpty();
     }
 
     private String formatTime(int milliseconds) {
@@ -309,24 +477,15 @@ public class EntryDetailActivity extends AppCompatActivity implements OnMapReady
         btnDeleteEntry.setEnabled(false);
         btnDeleteEntry.setText("Eliminando...");
 
-        // Eliminar de Firestore
-        db.collection("entries").document(entry.getId())
-                .delete()
-                .addOnSuccessListener(aVoid -> {
-                    // Eliminar imagen si existe
-                    if (entry.getImageBase64() != null && !entry.getImageBase64().isEmpty()) {
-                        deleteFileFromStorage(entry.getImageBase64());
-                    }
-
-                    // Eliminar audio si existe
-                    if (entry.getAudioFileName() != null && !entry.getAudioFileName().isEmpty()) {
-                        deleteFileFromStorage(entry.getAudioFileName());
-                    }
-
+        // Encolar el borrado; la cola lo envía a Firestore y después se borran sus blobs sin uso
+        BulkOperations.getInstance(this)
+                .deleteEntry(entry, null)
+                .getQueued()
+                .addOnSuccessListener(this, aVoid -> {
                     Toast.makeText(this, "Entrada eliminada", Toast.LENGTH_SHORT).show();
                     finish();
                 })
-                .addOnFailureListener(e -> {
+                .addOnFailureListener(this, e -> {
                     Toast.makeText(this, "Error al eliminar: " + e.getMessage(),
                             Toast.LENGTH_SHORT).show();
                     btnDeleteEntry.setEnabled(true);
@@ -334,55 +493,63 @@ public class EntryDetailActivity extends AppCompatActivity implements OnMapReady
                 });
     }
 
-    private void deleteFileFromStorage(String fileUrl) {
-        try {
-            StorageReference fileRef = storage.getReferenceFromUrl(fileUrl);
-            fileRef.delete();
-        } catch (Exception e) {
-            e.printStackTrace();
-        }
-    }
-
     @Override
     protected void onPause() {
         super.onPause();
+        // Un play que todavía se está preparando ya no debe sonar
+        pendingAcquire = null;
         if (mediaPlayer != null && isPlaying) {
             pauseAudio();
         }
     }
 
     @Override
-    protected void onResume() {
-        super.onResume();
-        // Recargar datos de la entrada por si fue editada
-        reloadEntryData();
+    protected void onStart() {
+        super.onStart();
+        // El listener compartido avisa de ediciones; solo entonces se vuelve a pedir el documento
+        entryRepository.addObserver(this);
+        // Entrada fuera de la ventana (abierta desde el mapa o la búsqueda): ningún listener la
+        // cubre, así que al volver a la pantalla se pide de nuevo
+        if (entry != null && entryRepository.getSummary(entryId) == null) {
+            refreshEntry();
+        }
     }
 
-    private void reloadEntryData() {
-        db.collection("entries").document(entry.getId())
-                .get()
-                .addOnSuccessListener(documentSnapshot -> {
-                    if (documentSnapshot.exists()) {
-                        Entry updatedEntry = documentSnapshot.toObject(Entry.class);
-                        if (updatedEntry != null) {
-                            updatedEntry.setId(documentSnapshot.getId());
-                            entry = updatedEntry;
-                            loadEntryData();
-                        }
+    @Override
+    protected void onStop() {
+        super.onStop();
+        entryRepository.removeObserver(this);
+        // Las pantallas apiladas no retienen reproductores
+        releasePlayer();
+    }
+
+    @Override
+    public void onEntriesChanged(List<EntrySummary> entries) {
+        if (entry == null) {
+            return;
+        }
+        EntrySummary summary = entryRepository.getSummary(entryId);
+        if (summary == null || summary.getUpdatedAt() == entry.getUpdatedAt()) {
+            return;
+        }
+        refreshEntry();
+    }
+
+    private void refreshEntry() {
+        entryRepository.loadEntry(entryId)
+                .addOnSuccessListener(this, updatedEntry -> {
+                    if (updatedEntry == null || updatedEntry.getUpdatedAt() == entry.getUpdatedAt()) {
+                        return;
                     }
-                })
-                .addOnFailureListener(e -> {
-                    // Silently fail, keep showing current data
+                    entry = updatedEntry;
+                    collapsingToolbar.setTitle(entry.getTitle());
+                    loadEntryData();
                 });
     }
 
     @Override
     protected void onDestroy() {
         super.onDestroy();
-        if (mediaPlayer != null) {
-            mediaPlayer.release();
-            mediaPlayer = null;
-        }
-        handler.removeCallbacksAndMessages(null);
+        releasePlayer();
     }
 }
\ No newline at end of file
@@ -13,27 +13,33 @@ import android.widget.Toast;
 import androidx.annotation.NonNull;
 import androidx.appcompat.app.AlertDialog;
 import androidx.appcompat.app.AppCompatActivity;
+import androidx.appcompat.view.ActionMode;
 import androidx.appcompat.widget.Toolbar;
 import androidx.recyclerview.widget.LinearLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
 
 import com.example.chronicav1.R;
 import com.example.chronicav1.adapters.EntryAdapter;
-import com.example.chronicav1.models.Entry;
+import com.example.chronicav1.data.BulkOperations;
+import com.example.chronicav1.data.EntryRepository;
+import com.example.chronicav1.models.EntrySummary;
+import com.example.chronicav1.search.SearchExecutor;
+import com.example.chronicav1.utils.LaunchTimer;
 import com.example.chronicav1.utils.PermissionsHelper;
 import com.google.android.material.floatingactionbutton.FloatingActionButton;
 import com.google.firebase.auth.FirebaseAuth;
-import com.google.firebase.firestore.FirebaseFirestore;
-import com.google.firebase.firestore.Query;
-import com.google.firebase.firestore.QueryDocumentSnapshot;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Set;
 
 /**
  * Activity principal que muestra la lista de entradas del diario
  */
-public class MainActivity extends AppCompatActivity {
+public class MainActivity extends AppCompatActivity implements EntryRepository.Observer {
+
+    // Cuántas filas antes del final se pide la siguiente página
+    private static final int PREFETCH_DISTANCE = 5;
 
     private Toolbar toolbar;
     private EditText etSearch;
@@ -41,12 +47,14 @@ public class MainActivity extends AppCompatActivity {
     private FloatingActionButton fabNewEntry;
 
     private EntryAdapter entryAdapter;
-    private List<Entry> entryList;
-    private List<Entry> filteredList;
+    private List<EntrySummary> entryList;
 
     private FirebaseAuth mAuth;
-    private FirebaseFirestore db;
     private String currentUserId;
+    private EntryRepository entryRepository;
+    private SearchExecutor searchExecutor;
+    // Modo selección múltiple (pulsación larga en una entrada)
+    private ActionMode selectionMode;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -55,7 +63,6 @@ public class MainActivity extends AppCompatActivity {
 
         // Inicializar Firebase
         mAuth = FirebaseAuth.getInstance();
-        db = FirebaseFirestore.getInstance();
 
         // Verificar usuario autenticado
         if (mAuth.getCurrentUser() == null) {
@@ -85,8 +92,8 @@ public class MainActivity extends AppCompatActivity {
         // Configurar búsqueda
         setupSearch();
 
-        // Cargar entradas desde Firebase
-        loadEntriesFromFirebase();
+        // Observar las entradas del repositorio compartido
+        setupRepository();
     }
 
     private void initViews() {
@@ -125,6 +132,7 @@ public class MainActivity extends AppCompatActivity {
                 .setPositiveButton("Sí", (dialog, which) -> {
                     // Cerrar sesión en Firebase
                     mAuth.signOut();
+                    EntryRepository.reset();
 
                     // Mostrar mensaje
                     Toast.makeText(MainActivity.this,
@@ -141,18 +149,140 @@ public class MainActivity extends AppCompatActivity {
 
     private void setupRecyclerView() {
         entryList = new ArrayList<>();
-        filteredList = new ArrayList<>();
-        entryAdapter = new EntryAdapter(this, filteredList);
+        entryAdapter = new EntryAdapter(this, entryList);
 
-        rvEntries.setLayoutManager(new LinearLayoutManager(this));
+        LinearLayoutManager layoutManager = new LinearLayoutManager(this);
+        rvEntries.setLayoutManager(layoutManager);
         rvEntries.setAdapter(entryAdapter);
 
+        // Pedir la siguiente página antes de llegar al final de la lista
+        rvEntries.addOnScrollListener(new RecyclerView.OnScrollListener() {
+            @Override
+            public void onScrolled(@NonNull RecyclerView recyclerView, int dx, int dy) {
+                if (dy <= 0 || entryRepository == null) {
+                    return;
+                }
+                int lastVisible = layoutManager.findLastVisibleItemPosition();
+                if (lastVisible >= entryAdapter.getItemCount() - PREFETCH_DISTANCE) {
+                    entryRepository.loadMore();
+                }
+            }
+        });
+
         // Listener para clicks en las entradas
         entryAdapter.setOnItemClickListener(entry -> {
+            if (selectionMode != null) {
+                toggleSelection(entry);
+                return;
+            }
             Intent intent = new Intent(MainActivity.this, EntryDetailActivity.class);
-            intent.putExtra("ENTRY", entry);
+            intent.putExtra("ENTRY_ID", entry.getId());
+            LaunchTimer.start(intent);
             startActivity(intent);
         });
+
+        entryAdapter.setOnItemLongClickListener(entry -> {
+            if (selectionMode == null) {
+                selectionMode = startSupportActionMode(selectionCallback);
+            }
+            toggleSelection(entry);
+        });
+    }
+
+    private void toggleSelection(EntrySummary entry) {
+        entryAdapter.toggleSelection(entry.getId());
+        updateSelectionTitle();
+    }
+
+    private void updateSelectionTitle() {
+        int count = entryAdapter.getSelectedIds().size();
+        if (count == 0) {
+            selectionMode.finish();
+            return;
+        }
+        selectionMode.setTitle(count + (count == 1 ? " seleccionada" : " seleccionadas"));
+    }
+
+    private final ActionMode.Callback selectionCallback = new ActionMode.Callback() {
+        @Override
+        public boolean onCreateActionMode(ActionMode mode, Menu menu) {
+            mode.getMenuInflater().inflate(R.menu.menu_selection, menu);
+            return true;
+        }
+
+        @Override
+        public boolean onPrepareActionMode(ActionMode mode, Menu menu) {
+            return false;
+        }
+
+        @Override
+        public boolean onActionItemClicked(ActionMode mode, MenuItem item) {
+            if (item.getItemId() == R.id.action_select_all) {
+                entryAdapter.selectAll();
+                updateSelectionTitle();
+                return true;
+            }
+            if (item.getItemId() == R.id.action_delete_selected) {
+                showDeleteSelectedDialog(entryAdapter.getSelectedIds());
+                return true;
+            }
+            return false;
+        }
+
+        @Override
+        public void onDestroyActionMode(ActionMode mode) {
+            selectionMode = null;
+            entryAdapter.clearSelection();
+        }
+    };
+
+    private void showDeleteSelectedDialog(Set<String> entryIds) {
+        new AlertDialog.Builder(this)
+                .setTitle("Eliminar entradas")
+                .setMessage("¿Eliminar " + entryIds.size() + " entradas? Esta acción no se puede deshacer.")
+                .setPositiveButton("Eliminar", (dialog, which) -> deleteSelected(entryIds))
+                .setNegativeButton("Cancelar", null)
+                .show();
+    }
+
+    /**
+     * Borrado masivo: el progreso se muestra como subtítulo de la barra
+     */
+    private void deleteSelected(Set<String> entryIds) {
+        if (selectionMode != null) {
+            selectionMode.finish();
+        }
+        if (getSupportActionBar() != null) {
+            getSupportActionBar().setSubtitle("Eliminando " + entryIds.size() + " entradas...");
+        }
+
+        BulkOperations.getInstance(this)
+                .deleteEntries(currentUserId, entryIds, progress -> {
+                    if (getSupportActionBar() == null || isDestroyed()) {
+                        return;
+                    }
+                    if (progress.written < progress.total) {
+                        getSupportActionBar().setSubtitle("Eliminando " + progress.written
+                                + " de " + progress.total);
+                    } else {
+                        getSupportActionBar().setSubtitle("Limpiando archivos " + progress.blobsDeleted
+                                + " de " + progress.blobsTotal);
+                    }
+                })
+                .getFinished()
+                .addOnCompleteListener(this, task -> {
+                    if (getSupportActionBar() != null) {
+                        getSupportActionBar().setSubtitle(null);
+                    }
+                    if (task.isSuccessful()) {
+                        BulkOperations.Progress progress = task.getResult();
+                        Toast.makeText(this, progress.total + " entradas eliminadas ("
+                                + progress.entriesPerSecond() + "/s)", Toast.LENGTH_SHORT).show();
+                    } else {
+                        Toast.makeText(this, "Error al eliminar: " + task.getException().getMessage(),
+                                Toast.LENGTH_SHORT).show();
+                    }
+                });
     }
 
     private void setupFab() {
@@ -169,7 +299,7 @@ public class MainActivity extends AppCompatActivity {
 
             @Override
             public void onTextChanged(CharSequence s, int start, int before, int count) {
-                filterEntries(s.toString());
+                filterEntries(s.toString(), false);
             }
 
             @Override
@@ -177,52 +307,50 @@ public class MainActivity extends AppCompatActivity {
         });
     }
 
-    private void filterEntries(String searchText) {
-        filteredList.clear();
+    private void filterEntries(String searchText, boolean immediate) {
+        if (searchText.trim().isEmpty()) {
+            searchExecutor.cancel();
+            entryRepository.endSearch();
+            entryAdapter.updateData(new ArrayList<>(entryList));
+            return;
+        }
+        // Busca en todas las entradas, no solo en las páginas cargadas
+        entryRepository.prepareSearch();
 
-        if (searchText.isEmpty()) {
-            filteredList.addAll(entryList);
+        // La búsqueda corre en segundo plano; solo se publica el resultado de la última consulta
+        if (immediate) {
+            searchExecutor.submitNow(searchText);
         } else {
-            String searchLower = searchText.toLowerCase();
-            for (Entry entry : entryList) {
-                if (entry.getTitle().toLowerCase().contains(searchLower) ||
-                        entry.getContent().toLowerCase().contains(searchLower) ||
-                        entry.getLocation().toLowerCase().contains(searchLower)) {
-                    filteredList.add(entry);
-                }
-            }
+            searchExecutor.submit(searchText);
         }
+    }
 
-        entryAdapter.notifyDataSetChanged();
+    private void setupRepository() {
+        entryRepository = EntryRepository.getInstance(this, currentUserId);
+        // El adaptador calcula el diff y solo vuelve a enlazar las filas que cambiaron
+        searchExecutor = new SearchExecutor(entryRepository.getSearchIndex(),
+                (query, results) -> entryAdapter.updateData(results));
     }
 
-    private void loadEntriesFromFirebase() {
-        db.collection("entries")
-                .whereEqualTo("userId", currentUserId)
-                .orderBy("timestamp", Query.Direction.DESCENDING)
-                .get()
-                .addOnSuccessListener(queryDocumentSnapshots -> {
-                    entryList.clear();
-
-                    for (QueryDocumentSnapshot document : queryDocumentSnapshots) {
-                        Entry entry = document.toObject(Entry.class);
-                        entry.setId(document.getId());
-                        entryList.add(entry);
-                    }
+    private void showLoadError(Exception e) {
+        Toast.makeText(this, "Error al cargar entradas: " + e.getMessage(),
+                Toast.LENGTH_SHORT).show();
+    }
 
-                    filteredList.clear();
-                    filteredList.addAll(entryList);
-                    entryAdapter.notifyDataSetChanged();
+    @Override
+    public void onEntriesChanged(List<EntrySummary> entries) {
+        showEntries(entries);
 
-                    if (entryList.isEmpty()) {
-                        Toast.makeText(this, "No hay entradas. ¡Crea tu primera entrada!",
-                                Toast.LENGTH_LONG).show();
-                    }
-                })
-                .addOnFailureListener(e -> {
-                    Toast.makeText(this, "Error al cargar entradas: " + e.getMessage(),
-                            Toast.LENGTH_SHORT).show();
-                });
+        if (entries.isEmpty()) {
+            Toast.makeText(this, "No hay entradas. ¡Crea tu primera entrada!",
+                    Toast.LENGTH_LONG).show();
+        }
+    }
+
+    private void showEntries(List<EntrySummary> entries) {
+        entryList.clear();
+        entryList.addAll(entries);
+        filterEntries(etSearch.getText().toString(), true);
     }
 
     private void goToLogin() {
@@ -278,11 +406,42 @@ public class MainActivity extends AppCompatActivity {
     }
 
     @Override
-    protected void onResume() {
-        super.onResume();
-        // Recargar datos cuando vuelvas a esta actividad
-        if (currentUserId != null) {
-            loadEntriesFromFirebase();
+    protected void onStart() {
+        super.onStart();
+        // El índice ya cargado se entrega al instante, sin lecturas de red
+        if (entryRepository != null) {
+            entryRepository.setErrorListener(this::showLoadError);
+            entryRepository.addObserver(this);
+            // Si el índice crece mientras hay una búsqueda escrita, se vuelve a buscar
+            entryRepository.setSearchIndexListener(() -> {
+                String searchText = etSearch.getText().toString();
+                if (!searchText.trim().isEmpty()) {
+                    searchExecutor.submitNow(searchText);
+                }
+            });
+            // El listener de búsqueda se quitó en onStop; solo vuelve si hay una consulta escrita
+            if (!etSearch.getText().toString().trim().isEmpty()) {
+                entryRepository.prepareSearch();
+            }
+        }
+    }
+
+    @Override
+    protected void onStop() {
+        super.onStop();
+        if (entryRepository != null) {
+            entryRepository.removeObserver(this);
+            entryRepository.setErrorListener(null);
+            entryRepository.setSearchIndexListener(null);
+            entryRepository.endSearch();
+        }
+    }
+
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        if (searchExecutor != null) {
+            searchExecutor.shutdown();
         }
     }
 }
\ No newline at end of file
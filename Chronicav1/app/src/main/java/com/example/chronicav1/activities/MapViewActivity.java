@@ -16,7 +16,13 @@ import androidx.cardview.widget.CardView;
 
 import com.bumptech.glide.Glide;
 import com.example.chronicav1.R;
-import com.example.chronicav1.models.Entry;
+import com.example.chronicav1.data.EntryRepository;
+import com.example.chronicav1.data.GeoEntryLoader;
+import com.example.chronicav1.maps.ClusterEngine;
+import com.example.chronicav1.maps.ClusterIcons;
+import com.example.chronicav1.models.EntrySummary;
+import com.example.chronicav1.utils.EntryImages;
+import com.example.chronicav1.utils.LaunchTimer;
 import com.google.android.gms.maps.CameraUpdateFactory;
 import com.google.android.gms.maps.GoogleMap;
 import com.google.android.gms.maps.OnMapReadyCallback;
@@ -26,18 +32,18 @@ import com.google.android.gms.maps.model.LatLngBounds;
 import com.google.android.gms.maps.model.Marker;
 import com.google.android.gms.maps.model.MarkerOptions;
 import com.google.firebase.auth.FirebaseAuth;
-import com.google.firebase.firestore.FirebaseFirestore;
-import com.google.firebase.firestore.QueryDocumentSnapshot;
 
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 
 /**
  * Activity que muestra todas las entradas en un mapa
  */
-public class MapViewActivity extends AppCompatActivity implements OnMapReadyCallback {
+public class MapViewActivity extends AppCompatActivity implements OnMapReadyCallback,
+        EntryRepository.Observer {
 
     // Vistas
     private Toolbar toolbar;
@@ -48,14 +54,22 @@ public class MapViewActivity extends AppCompatActivity implements OnMapReadyCall
     private ImageButton btnViewEntry;
 
     // Datos
-    private List<Entry> entryList;
-    private Map<Marker, Entry> markerEntryMap;
-    private Entry selectedEntry;
+    private List<EntrySummary> entryList;
+    private Map<Marker, ClusterEngine.Cluster> markerClusters;
+    private Map<String, Marker> markersByKey;
+    private EntrySummary selectedEntry;
+    private boolean cameraFitted = false;
 
     // Firebase
     private FirebaseAuth mAuth;
-    private FirebaseFirestore db;
     private String currentUserId;
+    private EntryRepository entryRepository;
+    private GeoEntryLoader geoEntryLoader;
+    private List<EntrySummary> recentEntries = new ArrayList<>();
+
+    // Clustering
+    private ClusterEngine clusterEngine;
+    private ClusterIcons clusterIcons;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -64,12 +78,16 @@ public class MapViewActivity extends AppCompatActivity implements OnMapReadyCall
 
         // Inicializar Firebase
         mAuth = FirebaseAuth.getInstance();
-        db = FirebaseFirestore.getInstance();
         currentUserId = mAuth.getCurrentUser().getUid();
+        entryRepository = EntryRepository.getInstance(this, currentUserId);
+        geoEntryLoader = new GeoEntryLoader(this, currentUserId, entries -> updateMapEntries());
 
         // Inicializar listas
         entryList = new ArrayList<>();
-        markerEntryMap = new HashMap<>();
+        markerClusters = new HashMap<>();
+        markersByKey = new HashMap<>();
+        clusterEngine = new ClusterEngine();
+        clusterIcons = new ClusterIcons(this);
 
         // Inicializar vistas
         initViews();
@@ -118,106 +136,200 @@ public class MapViewActivity extends AppCompatActivity implements OnMapReadyCall
 
         // Configurar listener de marcadores
         mMap.setOnMarkerClickListener(marker -> {
-            Entry entry = markerEntryMap.get(marker);
-            if (entry != null) {
-                showMarkerInfo(entry);
+            ClusterEngine.Cluster cluster = markerClusters.get(marker);
+            if (cluster != null) {
+                onClusterClick(cluster);
             }
             return true;
         });
 
+        // Al detenerse la cámara: pedir las celdas nuevas y recalcular los clusters
+        mMap.setOnCameraIdleListener(() -> {
+            geoEntryLoader.loadVisible(mMap.getProjection().getVisibleRegion().latLngBounds);
+            refreshClusters();
+        });
+
         // Listener cuando se hace click en el mapa (no en un marcador)
         mMap.setOnMapClickListener(latLng -> {
             cvMarkerInfo.setVisibility(View.GONE);
         });
 
-        // Cargar entradas y marcadores
-        loadEntriesWithLocation();
+        // Las entradas recientes del repositorio ubican la cámara; el resto llega por celdas
+        entryRepository.addObserver(this);
     }
 
     private void setupListeners() {
         btnViewEntry.setOnClickListener(v -> {
             if (selectedEntry != null) {
                 Intent intent = new Intent(MapViewActivity.this, EntryDetailActivity.class);
-                intent.putExtra("ENTRY", selectedEntry);
+                intent.putExtra("ENTRY_ID", selectedEntry.getId());
+                LaunchTimer.start(intent);
                 startActivity(intent);
             }
         });
     }
 
-    private void loadEntriesWithLocation() {
-        db.collection("entries")
-                .whereEqualTo("userId", currentUserId)
-                .get()
-                .addOnSuccessListener(queryDocumentSnapshots -> {
-                    entryList.clear();
-                    markerEntryMap.clear();
-
-                    if (queryDocumentSnapshots.isEmpty()) {
-                        Toast.makeText(this, "No hay entradas con ubicación",
-                                Toast.LENGTH_SHORT).show();
-                        return;
-                    }
-
-                    LatLngBounds.Builder boundsBuilder = new LatLngBounds.Builder();
-                    boolean hasValidLocation = false;
-
-                    for (QueryDocumentSnapshot document : queryDocumentSnapshots) {
-                        Entry entry = document.toObject(Entry.class);
-                        entry.setId(document.getId());
-
-                        // Solo agregar si tiene ubicación válida
-                        if (entry.getLatitude() != 0 && entry.getLongitude() != 0) {
-                            entryList.add(entry);
-
-                            // Crear marcador
-                            LatLng position = new LatLng(entry.getLatitude(), entry.getLongitude());
-                            Marker marker = mMap.addMarker(new MarkerOptions()
-                                    .position(position)
-                                    .title(entry.getTitle())
-                                    .snippet(entry.getDate()));
-
-                            // Asociar marcador con entrada
-                            markerEntryMap.put(marker, entry);
-
-                            // Agregar al builder de bounds
-                            boundsBuilder.include(position);
-                            hasValidLocation = true;
-                        }
-                    }
-
-                    // Ajustar cámara para mostrar todos los marcadores
-                    if (hasValidLocation) {
-                        try {
-                            LatLngBounds bounds = boundsBuilder.build();
-                            int padding = 100; // padding en píxeles
-                            mMap.animateCamera(CameraUpdateFactory.newLatLngBounds(bounds, padding));
-                        } catch (IllegalStateException e) {
-                            // Si solo hay un marcador, hacer zoom normal
-                            if (!entryList.isEmpty()) {
-                                Entry firstEntry = entryList.get(0);
-                                LatLng position = new LatLng(firstEntry.getLatitude(),
-                                        firstEntry.getLongitude());
-                                mMap.animateCamera(CameraUpdateFactory.newLatLngZoom(position, 12));
-                            }
-                        }
+    @Override
+    public void onEntriesChanged(List<EntrySummary> entries) {
+        if (mMap == null || !entryRepository.isLoaded()) {
+            return;
+        }
+        recentEntries = entries;
+        updateMapEntries();
+        fitCameraOnce();
+    }
+
+    /**
+     * Une lo cargado por celdas con las entradas del repositorio (más frescas) y reagrupa
+     */
+    private void updateMapEntries() {
+        Map<String, EntrySummary> merged = new HashMap<>();
+        for (EntrySummary entry : geoEntryLoader.getLoadedEntries()) {
+            merged.put(entry.getId(), entry);
+        }
+        for (EntrySummary entry : recentEntries) {
+            merged.put(entry.getId(), entry);
+        }
+
+        // La entrada de la tarjeta pudo borrarse (por ejemplo desde el detalle)
+        if (selectedEntry != null && !merged.containsKey(selectedEntry.getId())) {
+            selectedEntry = null;
+            cvMarkerInfo.setVisibility(View.GONE);
+        }
+
+        entryList.clear();
+        for (EntrySummary entry : merged.values()) {
+            // Solo agregar si tiene ubicación válida
+            if (entry.getLatitude() != 0 && entry.getLongitude() != 0) {
+                entryList.add(entry);
+            }
+        }
+
+        // Los marcadores los pone el motor de clusters, no uno por entrada
+        clusterEngine.setEntries(entryList);
+        refreshClusters();
+    }
+
+    /**
+     * La primera vez centra la cámara en las entradas recientes; luego respeta lo que mira el usuario
+     */
+    private void fitCameraOnce() {
+        if (cameraFitted) {
+            return;
+        }
+        cameraFitted = true;
+
+        LatLngBounds.Builder boundsBuilder = new LatLngBounds.Builder();
+        boolean hasValidLocation = false;
+        for (EntrySummary entry : recentEntries) {
+            if (entry.getLatitude() != 0 && entry.getLongitude() != 0) {
+                boundsBuilder.include(new LatLng(entry.getLatitude(), entry.getLongitude()));
+                hasValidLocation = true;
+            }
+        }
+
+        if (hasValidLocation) {
+            try {
+                LatLngBounds bounds = boundsBuilder.build();
+                int padding = 100; // padding en píxeles
+                mMap.animateCamera(CameraUpdateFactory.newLatLngBounds(bounds, padding));
+            } catch (IllegalStateException e) {
+                // Si solo hay un marcador, hacer zoom normal
+                if (!entryList.isEmpty()) {
+                    EntrySummary firstEntry = entryList.get(0);
+                    LatLng position = new LatLng(firstEntry.getLatitude(),
+                            firstEntry.getLongitude());
+                    mMap.animateCamera(CameraUpdateFactory.newLatLngZoom(position, 12));
+                }
+            }
+
+            Toast.makeText(this,
+                    entryList.size() + " entrada(s) encontrada(s)",
+                    Toast.LENGTH_SHORT).show();
+        } else {
+            Toast.makeText(this,
+                    "No hay entradas con ubicación válida",
+                    Toast.LENGTH_SHORT).show();
+        }
+    }
 
-                        Toast.makeText(this,
-                                entryList.size() + " entrada(s) encontrada(s)",
-                                Toast.LENGTH_SHORT).show();
-                    } else {
-                        Toast.makeText(this,
-                                "No hay entradas con ubicación válida",
-                                Toast.LENGTH_SHORT).show();
-                    }
-                })
-                .addOnFailureListener(e -> {
-                    Toast.makeText(this,
-                            "Error al cargar entradas: " + e.getMessage(),
-                            Toast.LENGTH_SHORT).show();
-                });
-    }
-
-    private void showMarkerInfo(Entry entry) {
+    private void refreshClusters() {
+        if (mMap == null) {
+            return;
+        }
+        clusterEngine.requestClusters(mMap.getCameraPosition().zoom,
+                mMap.getProjection().getVisibleRegion().latLngBounds,
+                this::showClusters);
+    }
+
+    private void showClusters(List<ClusterEngine.Cluster> clusters) {
+        // Solo se tocan los marcadores que cambiaron respecto a la vista anterior
+        Map<String, ClusterEngine.Cluster> next = new HashMap<>();
+        for (ClusterEngine.Cluster cluster : clusters) {
+            next.put(cluster.getKey(), cluster);
+        }
+
+        Iterator<Map.Entry<String, Marker>> iterator = markersByKey.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<String, Marker> shown = iterator.next();
+            if (!next.containsKey(shown.getKey())) {
+                markerClusters.remove(shown.getValue());
+                shown.getValue().remove();
+                iterator.remove();
+            }
+        }
+
+        for (ClusterEngine.Cluster cluster : next.values()) {
+            Marker existing = markersByKey.get(cluster.getKey());
+            if (existing != null) {
+                updateMarker(existing, markerClusters.put(existing, cluster), cluster);
+                continue;
+            }
+
+            MarkerOptions options = new MarkerOptions().position(cluster.getPosition());
+            if (cluster.isSingle()) {
+                EntrySummary entry = cluster.getFirstEntry();
+                options.title(entry.getTitle()).snippet(entry.getDate());
+            } else {
+                options.icon(clusterIcons.forSize(cluster.getSize()));
+            }
+            Marker marker = mMap.addMarker(options);
+            if (marker != null) {
+                markerClusters.put(marker, cluster);
+                markersByKey.put(cluster.getKey(), marker);
+            }
+        }
+    }
+
+    private void updateMarker(Marker marker, ClusterEngine.Cluster previous, ClusterEngine.Cluster cluster) {
+        if (previous == null) {
+            return;
+        }
+        if (!previous.getPosition().equals(cluster.getPosition())) {
+            marker.setPosition(cluster.getPosition());
+        }
+        if (cluster.isSingle()) {
+            EntrySummary entry = cluster.getFirstEntry();
+            marker.setTitle(entry.getTitle());
+            marker.setSnippet(entry.getDate());
+        } else if (previous.getSize() != cluster.getSize()) {
+            marker.setIcon(clusterIcons.forSize(cluster.getSize()));
+        }
+    }
+
+    private void onClusterClick(ClusterEngine.Cluster cluster) {
+        if (cluster.isSingle()) {
+            showMarkerInfo(cluster.getFirstEntry());
+        } else if (cluster.isSinglePoint()) {
+            // Entradas en el mismo lugar: acercar no las separa, mostrar la más reciente
+            showMarkerInfo(cluster.getFirstEntry());
+        } else {
+            // Acercar hasta que el grupo se separe
+            mMap.animateCamera(CameraUpdateFactory.newLatLngBounds(cluster.getBounds(), 100));
+        }
+    }
+
+    private void showMarkerInfo(EntrySummary entry) {
         selectedEntry = entry;
 
         // Mostrar información
@@ -226,20 +338,35 @@ public class MapViewActivity extends AppCompatActivity implements OnMapReadyCall
         tvMarkerLocation.setText(entry.getLocation());
 
         // Cargar imagen
-        if (entry.getImageBase64() != null && !entry.getImageBase64().isEmpty()) {
-            Glide.with(this)
-                    .load(entry.getImageBase64())
-                    .centerCrop()
-                    .placeholder(R.drawable.ic_logo)
-                    .into(ivMarkerImage);
-        } else {
-            ivMarkerImage.setImageResource(R.drawable.ic_logo);
+        ivMarkerImage.setImageResource(R.drawable.ic_logo);
+        if (entry.hasImage()) {
+            EntryImages.loadBytes(this, entry, ivMarkerImage.getLayoutParams().width)
+                    .addOnSuccessListener(this, bytes -> {
+                        // Ignorar si ya se seleccionó otro marcador
+                        if (bytes == null || selectedEntry != entry || isDestroyed()) {
+                            return;
+                        }
+                        Glide.with(this)
+                                .load(bytes)
+                                .centerCrop()
+                                .placeholder(R.drawable.ic_logo)
+                                .into(ivMarkerImage);
+                    })
+                    .addOnFailureListener(this, Throwable::printStackTrace);
         }
 
         // Mostrar tarjeta
         cvMarkerInfo.setVisibility(View.VISIBLE);
     }
 
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        entryRepository.removeObserver(this);
+        geoEntryLoader.close();
+        clusterEngine.shutdown();
+    }
+
     @SuppressLint("GestureBackNavigation")
     @Override
     public void onBackPressed() {
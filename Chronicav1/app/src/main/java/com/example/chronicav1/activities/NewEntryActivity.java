@@ -2,18 +2,17 @@ package com.example.chronicav1.activities;
 
 import android.Manifest;
 import android.content.Intent;
+import android.content.SharedPreferences;
 import android.content.pm.PackageManager;
 import android.graphics.Bitmap;
 import android.location.Address;
 import android.location.Geocoder;
-import android.media.MediaRecorder;
 import android.net.Uri;
 import android.os.Build;
 import android.os.Bundle;
 import android.os.Handler;
 import android.provider.MediaStore;
 import android.text.TextUtils;
-import android.util.Base64;
 import android.view.View;
 import android.widget.ImageButton;
 import android.widget.ImageView;
@@ -30,6 +29,14 @@ import androidx.core.app.ActivityCompat;
 import androidx.core.content.ContextCompat;
 
 import com.example.chronicav1.R;
+import com.example.chronicav1.data.BlobStore;
+import com.example.chronicav1.data.EntryOutbox;
+import com.example.chronicav1.maps.GeoHash;
+import com.example.chronicav1.media.AudioPeaks;
+import com.example.chronicav1.media.AudioRecorder;
+import com.example.chronicav1.media.CameraCapture;
+import com.example.chronicav1.media.ImageImporter;
+import com.example.chronicav1.media.ImageVariants;
 import com.google.android.gms.location.FusedLocationProviderClient;
 import com.google.android.gms.location.LocationServices;
 import com.google.android.gms.maps.CameraUpdateFactory;
@@ -38,12 +45,13 @@ import com.google.android.gms.maps.OnMapReadyCallback;
 import com.google.android.gms.maps.SupportMapFragment;
 import com.google.android.gms.maps.model.LatLng;
 import com.google.android.gms.maps.model.MarkerOptions;
+import com.google.android.gms.tasks.Task;
+import com.google.android.gms.tasks.Tasks;
 import com.google.android.material.button.MaterialButton;
 import com.google.android.material.textfield.TextInputEditText;
 import com.google.firebase.auth.FirebaseAuth;
 import com.google.firebase.firestore.FirebaseFirestore;
 
-import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
 import java.text.SimpleDateFormat;
@@ -61,6 +69,12 @@ public class NewEntryActivity extends AppCompatActivity implements OnMapReadyCal
     private static final int REQUEST_AUDIO_PERMISSION = 103;
     private static final int REQUEST_PICK_IMAGE = 200;
     private static final int REQUEST_CAPTURE_IMAGE = 201;
+    // La cámara puede hacer que el sistema destruya esta actividad mientras está abierta
+    private static final String STATE_CAPTURE_FILE = "capture_file";
+    private static final String STATE_AUDIO_PATH = "audio_path";
+    // Toma en curso o sin guardar; si el proceso muere se ofrece recuperarla al volver
+    private static final String PREFS_NAME = "new_entry";
+    private static final String KEY_PENDING_AUDIO = "pendingAudio_";
     private static final int MAX_AUDIO_DURATION = 120000;
 
     private Toolbar toolbar;
@@ -78,12 +92,16 @@ public class NewEntryActivity extends AppCompatActivity implements OnMapReadyCal
 
     private Uri imageUri;
     private Bitmap selectedBitmap;
+    // Archivo donde la cámara escribe la foto en curso
+    private File captureFile;
     private String audioPath;
     private double latitude = 0;
     private double longitude = 0;
     private String locationAddress = "";
     private boolean isRecording = false;
-    private MediaRecorder mediaRecorder;
+    // Mientras se guarda, la toma ya está en camino a la entrada
+    private boolean saving = false;
+    private AudioRecorder audioRecorder;
     private Handler handler = new Handler();
 
     private FusedLocationProviderClient fusedLocationClient;
@@ -93,6 +111,10 @@ public class NewEntryActivity extends AppCompatActivity implements OnMapReadyCal
         super.onCreate(savedInstanceState);
         setContentView(R.layout.activity_new_entry);
 
+        if (savedInstanceState != null && savedInstanceState.containsKey(STATE_CAPTURE_FILE)) {
+            captureFile = new File(savedInstanceState.getString(STATE_CAPTURE_FILE));
+        }
+
         mAuth = FirebaseAuth.getInstance();
         db = FirebaseFirestore.getInstance();
         currentUserId = mAuth.getCurrentUser().getUid();
@@ -103,6 +125,68 @@ public class NewEntryActivity extends AppCompatActivity implements OnMapReadyCal
         setupListeners();
         setupMap();
         getCurrentLocation();
+        restoreRecording(savedInstanceState);
+    }
+
+    /**
+     * Recupera la toma tras recrear la pantalla. Si el proceso murió, lo escrito hasta el último
+     * bloque sigue en disco (ver AudioRecorder) y se ofrece adjuntarlo; el recolector de medios
+     * no lo borra antes de un día.
+     */
+    private void restoreRecording(Bundle savedInstanceState) {
+        if (savedInstanceState != null && savedInstanceState.containsKey(STATE_AUDIO_PATH)) {
+            audioPath = savedInstanceState.getString(STATE_AUDIO_PATH);
+            if (new File(audioPath).length() > 0) {
+                showRecordedAudio();
+            } else {
+                audioPath = null;
+            }
+            return;
+        }
+
+        String pendingPath = pendingAudioPrefs().getString(KEY_PENDING_AUDIO + currentUserId, null);
+        if (pendingPath == null) {
+            return;
+        }
+        File pendingFile = new File(pendingPath);
+        if (pendingFile.length() == 0) {
+            discardPendingAudio(pendingFile);
+            return;
+        }
+        new AlertDialog.Builder(this)
+                .setTitle("Grabación sin guardar")
+                .setMessage("Quedó una grabación de una entrada que no se guardó. ¿Adjuntarla a esta entrada?")
+                .setPositiveButton("Adjuntar", (dialog, which) -> {
+                    audioPath = pendingPath;
+                    showRecordedAudio();
+                })
+                .setNegativeButton("Descartar", (dialog, which) -> discardPendingAudio(pendingFile))
+                .show();
+    }
+
+    private void showRecordedAudio() {
+        tvMicText.setText("Audio grabado ✓");
+        ivMicIcon.setColorFilter(getResources().getColor(android.R.color.holo_green_dark));
+    }
+
+    private SharedPreferences pendingAudioPrefs() {
+        return getSharedPreferences(PREFS_NAME, MODE_PRIVATE);
+    }
+
+    private void setPendingAudio(String path) {
+        SharedPreferences.Editor editor = pendingAudioPrefs().edit();
+        if (path != null) {
+            editor.putString(KEY_PENDING_AUDIO + currentUserId, path);
+        } else {
+            editor.remove(KEY_PENDING_AUDIO + currentUserId);
+        }
+        editor.apply();
+    }
+
+    private void discardPendingAudio(File file) {
+        file.delete();
+        AudioPeaks.fileFor(file).delete();
+        setPendingAudio(null);
     }
 
     private void initViews() {
@@ -249,7 +333,15 @@ public class NewEntryActivity extends AppCompatActivity implements OnMapReadyCal
     }
 
     private void captureImage() {
-        Intent takePictureIntent = new Intent(MediaStore.ACTION_IMAGE_CAPTURE);
+        try {
+            captureFile = CameraCapture.createTarget(this);
+        } catch (IOException e) {
+            e.printStackTrace();
+            Toast.makeText(this, "No se pudo preparar la cámara", Toast.LENGTH_SHORT).show();
+            return;
+        }
+        // La foto va directo al archivo a resolución completa, no como miniatura en el Intent
+        Intent takePictureIntent = CameraCapture.createIntent(this, captureFile);
         Intent chooser = Intent.createChooser(takePictureIntent, "Tomar foto");
         startActivityForResult(chooser, REQUEST_CAPTURE_IMAGE);
     }
@@ -291,17 +383,13 @@ public class NewEntryActivity extends AppCompatActivity implements OnMapReadyCal
             }
 
             String timeStamp = new SimpleDateFormat("yyyyMMdd_HHmmss", Locale.getDefault()).format(new Date());
-            String audioFileName = "AUDIO_" + timeStamp + ".3gp";
+            String audioFileName = "AUDIO_" + timeStamp + AudioRecorder.EXTENSION;
             File audioFile = new File(audioDir, audioFileName);
             audioPath = audioFile.getAbsolutePath();
 
-            mediaRecorder = new MediaRecorder();
-            mediaRecorder.setAudioSource(MediaRecorder.AudioSource.MIC);
-            mediaRecorder.setOutputFormat(MediaRecorder.OutputFormat.THREE_GPP);
-            mediaRecorder.setAudioEncoder(MediaRecorder.AudioEncoder.AMR_NB);
-            mediaRecorder.setOutputFile(audioPath);
-            mediaRecorder.prepare();
-            mediaRecorder.start();
+            // AAC escrito por bloques: si la app muere a mitad de la toma, lo grabado se conserva
+            audioRecorder = AudioRecorder.start(audioFile, AudioRecorder.Config.VOICE);
+            setPendingAudio(audioPath);
 
             isRecording = true;
             tvMicText.setText("Grabando...");
@@ -323,25 +411,27 @@ public class NewEntryActivity extends AppCompatActivity implements OnMapReadyCal
     }
 
     private void stopRecording() {
-        if (mediaRecorder != null) {
-            try {
-                mediaRecorder.stop();
-                mediaRecorder.release();
-                mediaRecorder = null;
-
-                isRecording = false;
-                tvMicText.setText("Audio grabado ✓");
-                ivMicIcon.setColorFilter(getResources().getColor(android.R.color.holo_green_dark));
-
-                handler.removeCallbacksAndMessages(null);
-
-                Toast.makeText(this, "Audio guardado", Toast.LENGTH_SHORT).show();
-
-            } catch (RuntimeException e) {
-                e.printStackTrace();
-                audioPath = null;
-                Toast.makeText(this, "Error al detener grabación", Toast.LENGTH_SHORT).show();
-            }
+        if (audioRecorder != null) {
+            AudioRecorder recorder = audioRecorder;
+            audioRecorder = null;
+            isRecording = false;
+            handler.removeCallbacksAndMessages(null);
+
+            // No guardar hasta que el codec haya vaciado las últimas tramas
+            btnSaveEntry.setEnabled(false);
+            recorder.stop()
+                    .addOnSuccessListener(this, result -> {
+                        showRecordedAudio();
+                        Toast.makeText(this, "Audio guardado", Toast.LENGTH_SHORT).show();
+                    })
+                    .addOnFailureListener(this, e -> {
+                        e.printStackTrace();
+                        audioPath = null;
+                        setPendingAudio(null);
+                        tvMicText.setText("Audio");
+                        Toast.makeText(this, "Error al detener grabación", Toast.LENGTH_SHORT).show();
+                    })
+                    .addOnCompleteListener(this, task -> btnSaveEntry.setEnabled(true));
         }
     }
 
@@ -363,6 +453,7 @@ public class NewEntryActivity extends AppCompatActivity implements OnMapReadyCal
 
         btnSaveEntry.setEnabled(false);
         btnSaveEntry.setText("Guardando...");
+        saving = true;
 
         String entryId = db.collection("entries").document().getId();
         String date = new SimpleDateFormat("dd MMM yyyy", Locale.getDefault()).format(new Date());
@@ -377,105 +468,148 @@ public class NewEntryActivity extends AppCompatActivity implements OnMapReadyCal
         entryData.put("location", locationAddress);
         entryData.put("latitude", latitude);
         entryData.put("longitude", longitude);
+        // Permite al mapa pedir solo las entradas de las celdas visibles
+        entryData.put("geohash", GeoHash.forEntry(latitude, longitude));
         entryData.put("timestamp", timestamp);
+        entryData.put("updatedAt", timestamp);
 
-        if (selectedBitmap != null) {
-            try {
-                Bitmap resized = resizeBitmap(selectedBitmap, 800, 800);
-
-                ByteArrayOutputStream baos = new ByteArrayOutputStream();
-                resized.compress(Bitmap.CompressFormat.JPEG, 60, baos);
-                byte[] imageBytes = baos.toByteArray();
-
-                // Verificar tamaño real antes de Base64
-                if (imageBytes.length > 750_000) {
-                    Toast.makeText(this, "Imagen muy grande. Usa una más pequeña.", Toast.LENGTH_LONG).show();
-                    btnSaveEntry.setEnabled(true);
-                    btnSaveEntry.setText("Guardar Entrada");
-                    return;
-                }
-
-                // Codificar sin saltos de línea
-                String base64Image = Base64.encodeToString(imageBytes, Base64.NO_WRAP);
-
-                entryData.put("imageBase64", base64Image);
-
-            } catch (Exception e) {
-                e.printStackTrace();
-                Toast.makeText(this, "Error al procesar imagen", Toast.LENGTH_SHORT).show();
-            }
-        }
-
+        // Las variantes de la imagen (lista, mapa, detalle) se generan en segundo plano;
+        // el documento solo guarda sus hashes y dimensiones
+        Task<Map<String, Object>> imageTask = selectedBitmap != null
+                ? ImageVariants.save(this, currentUserId, selectedBitmap)
+                : Tasks.forResult(null);
 
+        // El audio se copia al almacén de blobs y se sube en segundo plano (ver BlobUploader)
+        Task<String> audioTask = Tasks.forResult(null);
+        Task<String> peaksTask = Tasks.forResult(null);
         if (audioPath != null && !audioPath.isEmpty()) {
-            String newName = entryId + ".3gp";
+            String newName = entryId + AudioRecorder.EXTENSION;
 
             File oldFile = new File(audioPath);  // el archivo grabado
             File newFile = new File(getFilesDir(), "audio/" + newName);
 
             if (oldFile.renameTo(newFile)) {
+                // Hasta que la entrada quede en la cola la toma sigue pendiente: si el guardado
+                // falla, el reintento y la recuperación usan el archivo con su nombre nuevo
+                audioPath = newFile.getAbsolutePath();
+                setPendingAudio(audioPath);
                 entryData.put("audioFileName", newName);  // SE GUARDA EN FIREBASE
+                audioTask = BlobStore.getInstance(this).putFile(currentUserId, newFile, AudioRecorder.CONTENT_TYPE);
+
+                // La forma de onda viaja junto al audio
+                File newPeaks = AudioPeaks.fileFor(newFile);
+                if (AudioPeaks.fileFor(oldFile).renameTo(newPeaks)) {
+                    peaksTask = BlobStore.getInstance(this).putFile(currentUserId, newPeaks, AudioPeaks.CONTENT_TYPE);
+                }
             }
 
         }
 
-        db.collection("entries").document(entryId)
-                .set(entryData)
-                .addOnSuccessListener(aVoid -> {
+        Task<String> savedAudio = audioTask;
+        Task<String> savedPeaks = peaksTask;
+        Tasks.whenAllSuccess(imageTask, audioTask, peaksTask)
+                .onSuccessTask(ignored -> {
+                    if (imageTask.getResult() != null) {
+                        entryData.putAll(imageTask.getResult());
+                    }
+                    if (savedAudio.getResult() != null) {
+                        entryData.put("audioHash", savedAudio.getResult());
+                    }
+                    if (savedPeaks.getResult() != null) {
+                        entryData.put("peaksHash", savedPeaks.getResult());
+                    }
+                    // Se guarda en la cola local; el envío a Firestore sigue en segundo plano
+                    return EntryOutbox.getInstance(this).enqueueSet(currentUserId, entryId, entryData);
+                })
+                .addOnSuccessListener(this, aVoid -> {
+                    // La toma ya pertenece a la entrada: no se vuelve a ofrecer
+                    setPendingAudio(null);
+                    audioPath = null;
                     Toast.makeText(this, "Entrada guardada ✓", Toast.LENGTH_SHORT).show();
                     finish();
                 })
-                .addOnFailureListener(e -> {
+                .addOnFailureListener(this, e -> {
                     Toast.makeText(this, "Error: " + e.getMessage(), Toast.LENGTH_LONG).show();
+                    saving = false;
                     btnSaveEntry.setEnabled(true);
                     btnSaveEntry.setText("Guardar Entrada");
                 });
     }
 
-    private Bitmap resizeBitmap(Bitmap bitmap, int maxWidth, int maxHeight) {
-        if (bitmap.getWidth() <= maxWidth && bitmap.getHeight() <= maxHeight) {
-            return bitmap;
-        }
-
-        float scale = Math.min(
-                (float) maxWidth / bitmap.getWidth(),
-                (float) maxHeight / bitmap.getHeight()
-        );
-
-        int newWidth = Math.round(bitmap.getWidth() * scale);
-        int newHeight = Math.round(bitmap.getHeight() * scale);
-
-        return Bitmap.createScaledBitmap(bitmap, newWidth, newHeight, true);
-    }
-
     @Override
     protected void onActivityResult(int requestCode, int resultCode, @Nullable Intent data) {
         super.onActivityResult(requestCode, resultCode, data);
 
         if (resultCode == RESULT_OK && data != null) {
-            try {
-                if (requestCode == REQUEST_PICK_IMAGE) {
-                    imageUri = data.getData();
-                    if (imageUri != null) {
-                        selectedBitmap = MediaStore.Images.Media.getBitmap(getContentResolver(), imageUri);
-                        ivImagePreview.setImageBitmap(selectedBitmap);
-                        cvImagePreview.setVisibility(View.VISIBLE);
-                        Toast.makeText(this, "Imagen seleccionada", Toast.LENGTH_SHORT).show();
-                    }
-                } else if (requestCode == REQUEST_CAPTURE_IMAGE) {
-                    Bundle extras = data.getExtras();
-                    if (extras != null) {
-                        selectedBitmap = (Bitmap) extras.get("data");
-                        ivImagePreview.setImageBitmap(selectedBitmap);
-                        cvImagePreview.setVisibility(View.VISIBLE);
-                        Toast.makeText(this, "Foto capturada", Toast.LENGTH_SHORT).show();
-                    }
+            if (requestCode == REQUEST_PICK_IMAGE) {
+                imageUri = data.getData();
+                if (imageUri != null) {
+                    importImage(imageUri);
                 }
-            } catch (IOException e) {
-                e.printStackTrace();
-                Toast.makeText(this, "Error al cargar imagen: " + e.getMessage(), Toast.LENGTH_LONG).show();
             }
         }
+
+        // Con EXTRA_OUTPUT la cámara no devuelve datos en el Intent
+        if (requestCode == REQUEST_CAPTURE_IMAGE && captureFile != null) {
+            if (resultCode == RESULT_OK) {
+                importCapture(captureFile);
+            } else {
+                CameraCapture.discard(captureFile);
+            }
+            captureFile = null;
+        }
+    }
+
+    @Override
+    protected void onSaveInstanceState(@NonNull Bundle outState) {
+        super.onSaveInstanceState(outState);
+        if (captureFile != null) {
+            outState.putString(STATE_CAPTURE_FILE, captureFile.getAbsolutePath());
+        }
+        // onPause ya detuvo la grabación: lo que queda es una toma terminada
+        if (audioPath != null) {
+            outState.putString(STATE_AUDIO_PATH, audioPath);
+        }
+    }
+
+    /**
+     * Decodifica la foto capturada en segundo plano, ya reducida al tamaño que se guarda
+     */
+    private void importCapture(File file) {
+        // No guardar mientras la foto se decodifica
+        btnSaveEntry.setEnabled(false);
+        CameraCapture.load(this, file, ImageVariants.FULL_SIZE)
+                .addOnSuccessListener(this, bitmap -> {
+                    selectedBitmap = bitmap;
+                    ivImagePreview.setImageBitmap(selectedBitmap);
+                    cvImagePreview.setVisibility(View.VISIBLE);
+                    Toast.makeText(this, "Foto capturada", Toast.LENGTH_SHORT).show();
+                })
+                .addOnFailureListener(this, e -> {
+                    e.printStackTrace();
+                    Toast.makeText(this, "Error al cargar la foto: " + e.getMessage(), Toast.LENGTH_LONG).show();
+                })
+                .addOnCompleteListener(this, task -> btnSaveEntry.setEnabled(true));
+    }
+
+    /**
+     * Decodifica la imagen elegida en segundo plano, ya reducida al tamaño que se guarda
+     */
+    private void importImage(Uri uri) {
+        // No guardar mientras la imagen se decodifica
+        btnSaveEntry.setEnabled(false);
+        ImageImporter.load(this, uri, ImageVariants.FULL_SIZE)
+                .addOnSuccessListener(this, bitmap -> {
+                    selectedBitmap = bitmap;
+                    ivImagePreview.setImageBitmap(selectedBitmap);
+                    cvImagePreview.setVisibility(View.VISIBLE);
+                    Toast.makeText(this, "Imagen seleccionada", Toast.LENGTH_SHORT).show();
+                })
+                .addOnFailureListener(this, e -> {
+                    e.printStackTrace();
+                    Toast.makeText(this, "Error al cargar imagen: " + e.getMessage(), Toast.LENGTH_LONG).show();
+                })
+                .addOnCompleteListener(this, task -> btnSaveEntry.setEnabled(true));
     }
 
     @Override
@@ -515,5 +649,10 @@ public class NewEntryActivity extends AppCompatActivity implements OnMapReadyCal
     protected void onDestroy() {
         super.onDestroy();
         handler.removeCallbacksAndMessages(null);
+        // Salir sin guardar descarta la toma; solo se conserva si el proceso muere o la
+        // pantalla se recrea (ver restoreRecording)
+        if (isFinishing() && !saving && audioPath != null) {
+            discardPendingAudio(new File(audioPath));
+        }
     }
 }
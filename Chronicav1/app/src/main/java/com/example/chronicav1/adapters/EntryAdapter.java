@@ -1,9 +1,6 @@
 package com.example.chronicav1.adapters;
 
 import android.content.Context;
-import android.graphics.Bitmap;
-import android.graphics.BitmapFactory;
-import android.util.Base64;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
@@ -11,39 +8,123 @@ import android.widget.ImageView;
 import android.widget.TextView;
 
 import androidx.annotation.NonNull;
+import androidx.cardview.widget.CardView;
+import androidx.recyclerview.widget.AsyncListDiffer;
+import androidx.recyclerview.widget.DiffUtil;
 import androidx.recyclerview.widget.RecyclerView;
 
 import com.example.chronicav1.R;
-import com.example.chronicav1.models.Entry;
+import com.example.chronicav1.media.ThumbnailLoader;
+import com.example.chronicav1.models.EntrySummary;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 /**
  * Adaptador para mostrar la lista de entradas
- * VERSIÓN CON SOPORTE PARA BASE64
+ * Las miniaturas se cargan en segundo plano con ThumbnailLoader y las
+ * actualizaciones se calculan con AsyncListDiffer fuera del hilo principal.
+ * Admite selección múltiple para las operaciones masivas (ver BulkOperations).
  */
 public class EntryAdapter extends RecyclerView.Adapter<EntryAdapter.EntryViewHolder> {
 
+    private static final int CARD_COLOR = 0xFFFFFFFF;
+    private static final int SELECTED_CARD_COLOR = 0xFFEDE7F6;
+    // Payload de notifyItemChanged: solo cambia la marca de selección, no se recarga la miniatura
+    private static final Object PAYLOAD_SELECTION = new Object();
+
+    // Misma entrada = mismo id; mismo contenido = misma versión (updatedAt)
+    static final DiffUtil.ItemCallback<EntrySummary> DIFF_CALLBACK =
+            new DiffUtil.ItemCallback<EntrySummary>() {
+        @Override
+        public boolean areItemsTheSame(@NonNull EntrySummary oldItem, @NonNull EntrySummary newItem) {
+            return oldItem.getId().equals(newItem.getId());
+        }
+
+        @Override
+        public boolean areContentsTheSame(@NonNull EntrySummary oldItem, @NonNull EntrySummary newItem) {
+            return oldItem.hasSameContent(newItem);
+        }
+    };
+
     private Context context;
-    private List<Entry> entryList;
+    private final AsyncListDiffer<EntrySummary> differ;
     private OnItemClickListener listener;
+    private OnItemLongClickListener longClickListener;
+    private final Set<String> selectedIds = new HashSet<>();
+    private final ThumbnailLoader thumbnailLoader;
+
+    // Ids numéricos estables asignados a cada id de Firestore
+    private final Map<String, Long> stableIds = new HashMap<>();
 
     public interface OnItemClickListener {
-        void onItemClick(Entry entry);
+        void onItemClick(EntrySummary entry);
     }
 
-    // ✅ Constructor correcto - inicializa entryList
-    public EntryAdapter(Context context, List<Entry> entryList) {
+    public interface OnItemLongClickListener {
+        void onItemLongClick(EntrySummary entry);
+    }
+
+    public EntryAdapter(Context context, List<EntrySummary> entryList) {
         this.context = context;
-        // Protección contra null
-        this.entryList = entryList != null ? entryList : new ArrayList<>();
+        this.differ = new AsyncListDiffer<>(this, DIFF_CALLBACK);
+        this.thumbnailLoader = ThumbnailLoader.getInstance(context);
+        setHasStableIds(true);
+        updateData(entryList);
     }
 
     public void setOnItemClickListener(OnItemClickListener listener) {
         this.listener = listener;
     }
 
+    public void setOnItemLongClickListener(OnItemLongClickListener longClickListener) {
+        this.longClickListener = longClickListener;
+    }
+
+    public Set<String> getSelectedIds() {
+        return new HashSet<>(selectedIds);
+    }
+
+    public boolean isSelected(String entryId) {
+        return selectedIds.contains(entryId);
+    }
+
+    public void toggleSelection(String entryId) {
+        if (!selectedIds.remove(entryId)) {
+            selectedIds.add(entryId);
+        }
+        List<EntrySummary> current = differ.getCurrentList();
+        for (int i = 0; i < current.size(); i++) {
+            if (current.get(i).getId().equals(entryId)) {
+                notifyItemChanged(i, PAYLOAD_SELECTION);
+                break;
+            }
+        }
+    }
+
+    /**
+     * Selecciona todas las entradas visibles (con búsqueda activa, solo los resultados)
+     */
+    public void selectAll() {
+        for (EntrySummary entry : differ.getCurrentList()) {
+            selectedIds.add(entry.getId());
+        }
+        notifyItemRangeChanged(0, getItemCount(), PAYLOAD_SELECTION);
+    }
+
+    public void clearSelection() {
+        if (selectedIds.isEmpty()) {
+            return;
+        }
+        selectedIds.clear();
+        notifyItemRangeChanged(0, getItemCount(), PAYLOAD_SELECTION);
+    }
+
     @NonNull
     @Override
     public EntryViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
@@ -53,37 +134,67 @@ public class EntryAdapter extends RecyclerView.Adapter<EntryAdapter.EntryViewHol
 
     @Override
     public void onBindViewHolder(@NonNull EntryViewHolder holder, int position) {
-        Entry entry = entryList.get(position);
+        EntrySummary entry = differ.getCurrentList().get(position);
 
         holder.tvEntryTitle.setText(entry.getTitle());
         holder.tvEntryPreview.setText(entry.getPreview());
         holder.tvEntryDate.setText(entry.getDate());
         holder.tvEntryLocation.setText(entry.getLocation());
 
-        // Cargar imagen desde Base64 si existe
-        if (entry.getImageBase64() != null && !entry.getImageBase64().isEmpty()) {
-            try {
-                byte[] decodedBytes = Base64.decode(entry.getImageBase64(), Base64.DEFAULT);
-                Bitmap bitmap = BitmapFactory.decodeByteArray(decodedBytes, 0, decodedBytes.length);
-                holder.ivEntryImage.setImageBitmap(bitmap);
-            } catch (Exception e) {
-                e.printStackTrace();
-                holder.ivEntryImage.setImageResource(R.drawable.ic_logo);
-            }
-        } else {
-            holder.ivEntryImage.setImageResource(R.drawable.ic_logo);
-        }
+        // Miniatura decodificada en segundo plano y cacheada por entrada + hash
+        thumbnailLoader.load(entry, holder.ivEntryImage, R.drawable.ic_logo);
 
         holder.itemView.setOnClickListener(v -> {
             if (listener != null) {
                 listener.onItemClick(entry);
             }
         });
+        holder.itemView.setOnLongClickListener(v -> {
+            if (longClickListener == null) {
+                return false;
+            }
+            longClickListener.onItemLongClick(entry);
+            return true;
+        });
+        bindSelection(holder, entry);
+    }
+
+    @Override
+    public void onBindViewHolder(@NonNull EntryViewHolder holder, int position,
+                                 @NonNull List<Object> payloads) {
+        if (payloads.isEmpty() || !payloads.contains(PAYLOAD_SELECTION)) {
+            super.onBindViewHolder(holder, position, payloads);
+            return;
+        }
+        bindSelection(holder, differ.getCurrentList().get(position));
+    }
+
+    private void bindSelection(EntryViewHolder holder, EntrySummary entry) {
+        ((CardView) holder.itemView).setCardBackgroundColor(
+                selectedIds.contains(entry.getId()) ? SELECTED_CARD_COLOR : CARD_COLOR);
+    }
+
+    @Override
+    public void onViewRecycled(@NonNull EntryViewHolder holder) {
+        super.onViewRecycled(holder);
+        // Cancelar la decodificación pendiente de la fila reciclada
+        thumbnailLoader.cancel(holder.ivEntryImage);
     }
 
     @Override
     public int getItemCount() {
-        return entryList != null ? entryList.size() : 0;
+        return differ.getCurrentList().size();
+    }
+
+    @Override
+    public long getItemId(int position) {
+        String entryId = differ.getCurrentList().get(position).getId();
+        Long stableId = stableIds.get(entryId);
+        if (stableId == null) {
+            stableId = (long) stableIds.size();
+            stableIds.put(entryId, stableId);
+        }
+        return stableId;
     }
 
     static class EntryViewHolder extends RecyclerView.ViewHolder {
@@ -103,8 +214,13 @@ public class EntryAdapter extends RecyclerView.Adapter<EntryAdapter.EntryViewHol
         }
     }
 
-    public void updateData(List<Entry> newEntries) {
-        this.entryList = newEntries != null ? newEntries : new ArrayList<>();
-        notifyDataSetChanged();
+    /**
+     * Publica una nueva lista; se copia para que el differ trabaje sobre una instantánea inmutable
+     */
+    public void updateData(List<EntrySummary> newEntries) {
+        List<EntrySummary> snapshot = newEntries != null
+                ? Collections.unmodifiableList(new ArrayList<>(newEntries))
+                : Collections.emptyList();
+        differ.submitList(snapshot);
     }
 }
\ No newline at end of file
@@ -0,0 +1,296 @@
+package com.example.chronicav1.data;
+
+import android.content.Context;
+
+import com.google.android.gms.tasks.Task;
+import com.google.android.gms.tasks.Tasks;
+import com.google.firebase.storage.FirebaseStorage;
+import com.google.firebase.storage.StorageException;
+import com.google.firebase.storage.StorageReference;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Almacén de blobs direccionado por contenido (SHA-256)
+ * Cada blob se guarda una sola vez en disco (filesDir/blobs) y en Firebase Storage
+ * bajo blobs/{userId}/{hash}; las entradas de Firestore solo guardan el hash.
+ * La subida la hace BlobUploader en segundo plano; guardar nunca espera a la red.
+ */
+public class BlobStore {
+
+    private static final String BLOB_DIR = "blobs";
+    private static final String REMOTE_ROOT = "blobs";
+
+    private static BlobStore instance;
+
+    private final Context appContext;
+    private final File blobDir;
+    private final FirebaseStorage storage;
+    private final ExecutorService ioExecutor = Executors.newFixedThreadPool(2);
+    // Descargas en curso por hash: quien pide el mismo blob comparte la tarea (y el archivo temporal)
+    private final Map<String, Task<File>> downloads = new HashMap<>();
+
+    private BlobStore(Context context) {
+        appContext = context.getApplicationContext();
+        blobDir = new File(appContext.getFilesDir(), BLOB_DIR);
+        if (!blobDir.exists()) {
+            blobDir.mkdirs();
+        }
+        storage = FirebaseStorage.getInstance();
+    }
+
+    public static synchronized BlobStore getInstance(Context context) {
+        if (instance == null) {
+            instance = new BlobStore(context);
+        }
+        return instance;
+    }
+
+    /**
+     * Hilos de disco del store; sirven a quien necesite convertir lo leído fuera del hilo principal
+     */
+    public Executor getExecutor() {
+        return ioExecutor;
+    }
+
+    /**
+     * Guarda los bytes en disco y encola su subida a Storage.
+     * La tarea termina cuando la copia local está escrita y devuelve el hash.
+     */
+    public Task<String> put(String ownerId, byte[] data, String contentType) {
+        return Tasks.call(ioExecutor, () -> {
+            String hash = sha256(data);
+            File file = getLocalFile(hash);
+
+            if (!file.exists()) {
+                File tmp = new File(blobDir, hash + ".tmp");
+                try (FileOutputStream out = new FileOutputStream(tmp)) {
+                    out.write(data);
+                    out.getFD().sync();
+                }
+                if (!tmp.renameTo(file)) {
+                    tmp.delete();
+                    throw new IOException("No se pudo guardar el blob " + hash);
+                }
+            }
+
+            BlobUploader.getInstance(appContext).enqueue(ownerId, hash, contentType);
+            return hash;
+        });
+    }
+
+    /**
+     * Copia el archivo al almacén (sin cargarlo entero en memoria) y encola su subida.
+     * El archivo original no se modifica.
+     */
+    public Task<String> putFile(String ownerId, File source, String contentType) {
+        return Tasks.call(ioExecutor, () -> {
+            String hash = sha256(source);
+            File file = getLocalFile(hash);
+
+            if (!file.exists()) {
+                File tmp = new File(blobDir, hash + ".tmp");
+                try (InputStream in = new FileInputStream(source);
+                     FileOutputStream out = new FileOutputStream(tmp)) {
+                    copy(in, out);
+                    out.getFD().sync();
+                }
+                if (!tmp.renameTo(file)) {
+                    tmp.delete();
+                    throw new IOException("No se pudo guardar el blob " + hash);
+                }
+            }
+
+            BlobUploader.getInstance(appContext).enqueue(ownerId, hash, contentType);
+            return hash;
+        });
+    }
+
+    /**
+     * Devuelve el archivo local del blob, descargándolo de Storage si no está en disco
+     */
+    public Task<File> fetch(String ownerId, String hash) {
+        File file = getLocalFile(hash);
+        if (file.exists()) {
+            return Tasks.forResult(file);
+        }
+
+        synchronized (downloads) {
+            Task<File> download = downloads.get(hash);
+            if (download == null) {
+                download = download(ownerId, hash, file);
+                downloads.put(hash, download);
+                download.addOnCompleteListener(ioExecutor, task -> {
+                    synchronized (downloads) {
+                        downloads.remove(hash);
+                    }
+                });
+            }
+            return download;
+        }
+    }
+
+    private Task<File> download(String ownerId, String hash, File file) {
+        File tmp = new File(blobDir, hash + ".download");
+        return remoteRef(ownerId, hash).getFile(tmp)
+                .continueWith(ioExecutor, task -> {
+                    if (!task.isSuccessful()) {
+                        tmp.delete();
+                        throw task.getException();
+                    }
+
+                    // Verificar que el contenido corresponde al hash antes de aceptarlo
+                    if (!hash.equals(sha256(tmp))) {
+                        tmp.delete();
+                        throw new IOException("Blob corrupto: " + hash);
+                    }
+                    if (!file.exists() && !tmp.renameTo(file)) {
+                        tmp.delete();
+                        throw new IOException("No se pudo guardar el blob " + hash);
+                    }
+                    tmp.delete();
+                    return file;
+                });
+    }
+
+    /**
+     * Receptor de un blob remoto leído como stream (ver stream())
+     */
+    public interface StreamReader {
+        void read(long totalBytes, InputStream in) throws IOException;
+    }
+
+    /**
+     * Lee el blob remoto como stream, sin guardarlo en el almacén.
+     * El reader corre en un hilo de Storage y recibe los bytes a medida que llegan.
+     */
+    public Task<Void> stream(String ownerId, String hash, StreamReader reader) {
+        return remoteRef(ownerId, hash)
+                .getStream((snapshot, in) -> reader.read(snapshot.getTotalByteCount(), in))
+                .continueWith(task -> {
+                    if (!task.isSuccessful()) {
+                        throw task.getException();
+                    }
+                    return null;
+                });
+    }
+
+    /**
+     * Lee el contenido completo del blob (local o remoto) en segundo plano
+     */
+    public Task<byte[]> read(String ownerId, String hash) {
+        return fetch(ownerId, hash)
+                .continueWith(ioExecutor, task -> readFully(task.getResult()));
+    }
+
+    /**
+     * Borra el blob en disco y en Storage; que ya no exista no es un error.
+     * Solo para blobs que ninguna entrada referencia: el mismo contenido se comparte.
+     * Una subida pendiente se descarta sola al no encontrar la copia local.
+     */
+    public Task<Void> delete(String ownerId, String hash) {
+        return Tasks.call(ioExecutor, () -> {
+            getLocalFile(hash).delete();
+            return null;
+        }).continueWithTask(local -> remoteRef(ownerId, hash).delete())
+                .continueWith(task -> {
+                    Exception e = task.getException();
+                    if (e != null && !(e instanceof StorageException
+                            && ((StorageException) e).getErrorCode() == StorageException.ERROR_OBJECT_NOT_FOUND)) {
+                        throw e;
+                    }
+                    return null;
+                });
+    }
+
+    public File getLocalFile(String hash) {
+        return new File(blobDir, hash);
+    }
+
+    StorageReference remoteRef(String ownerId, String hash) {
+        return remoteDir(ownerId).child(hash);
+    }
+
+    StorageReference remoteDir(String ownerId) {
+        return storage.getReference()
+                .child(REMOTE_ROOT)
+                .child(ownerId);
+    }
+
+    File getLocalDir() {
+        return blobDir;
+    }
+
+    /**
+     * Contenido completo del archivo; también lo usan los lectores de audio y picos
+     */
+    public static byte[] readFully(File file) throws IOException {
+        byte[] data = new byte[(int) file.length()];
+        try (InputStream in = new FileInputStream(file)) {
+            int offset = 0;
+            int read;
+            while (offset < data.length && (read = in.read(data, offset, data.length - offset)) != -1) {
+                offset += read;
+            }
+        }
+        return data;
+    }
+
+    private static void copy(InputStream in, OutputStream out) throws IOException {
+        byte[] buffer = new byte[8192];
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            out.write(buffer, 0, read);
+        }
+    }
+
+    public static String sha256(byte[] data) {
+        return toHex(newDigest().digest(data));
+    }
+
+    private static String sha256(File file) throws IOException {
+        try (InputStream in = new FileInputStream(file)) {
+            MessageDigest digest = newDigest();
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                digest.update(buffer, 0, read);
+            }
+            return toHex(digest.digest());
+        }
+    }
+
+    /**
+     * SHA-256 para quien calcula el hash de un blob por partes (por ejemplo mientras lo descarga)
+     */
+    public static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Nombre del blob a partir del resultado del digest
+     */
+    public static String toHex(byte[] bytes) {
+        StringBuilder sb = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            sb.append(String.format("%02x", b));
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,381 @@
+package com.example.chronicav1.data;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.net.ConnectivityManager;
+import android.net.Network;
+import android.net.Uri;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+
+import com.google.android.gms.tasks.Task;
+import com.google.android.gms.tasks.Tasks;
+import com.google.firebase.auth.FirebaseAuth;
+import com.google.firebase.auth.FirebaseUser;
+import com.google.firebase.storage.FirebaseStorage;
+import com.google.firebase.storage.StorageException;
+import com.google.firebase.storage.StorageMetadata;
+import com.google.firebase.storage.StorageReference;
+import com.google.firebase.storage.UploadTask;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cola persistente de subidas de blobs a Firebase Storage
+ * BlobStore encola el blob apenas queda escrito en disco; nadie espera a la subida.
+ * Cada subida usa una sesión reanudable cuyo URI y avance se guardan en SQLite, así una
+ * subida cortada (sin red, proceso terminado) sigue desde el último byte confirmado.
+ * Como máximo MAX_CONCURRENT subidas a la vez; los fallos se reintentan con backoff exponencial.
+ */
+public class BlobUploader {
+
+    private static final String TAG = "BlobUploader";
+
+    static final String TABLE_UPLOADS = "uploads";
+
+    private static final String COL_OWNER_ID = "ownerId";
+    private static final String COL_HASH = "hash";
+    private static final String COL_CONTENT_TYPE = "contentType";
+    private static final String COL_SESSION_URI = "sessionUri";
+    private static final String COL_BYTES_UPLOADED = "bytesUploaded";
+    private static final String COL_TOTAL_BYTES = "totalBytes";
+    private static final String COL_ATTEMPTS = "attempts";
+    private static final String COL_NEXT_ATTEMPT_AT = "nextAttemptAt";
+
+    private static final int MAX_CONCURRENT = 2;
+    // Guardar el avance en cada callback escribiría SQLite decenas de veces por segundo
+    private static final long PROGRESS_SAVE_BYTES = 256 * 1024;
+    // Storage reintenta por su cuenta hasta este tiempo; después decide el backoff de la cola
+    private static final long STORAGE_RETRY_MS = 60_000;
+    private static final long BASE_BACKOFF_MS = 2_000;
+    private static final long MAX_BACKOFF_MS = 10 * 60 * 1000;
+
+    private static BlobUploader instance;
+
+    private final EntryDatabase database;
+    private final BlobStore blobStore;
+    private final ScheduledExecutorService worker = Executors.newSingleThreadScheduledExecutor();
+    private final Random jitter = new Random();
+
+    // Solo se accede desde el hilo del worker
+    private final Set<String> active = new HashSet<>();
+    private ScheduledFuture<?> scheduledPump;
+    private long scheduledAt = Long.MAX_VALUE;
+
+    private BlobUploader(Context context) {
+        database = EntryDatabase.getInstance(context);
+        blobStore = BlobStore.getInstance(context);
+        FirebaseStorage.getInstance().setMaxUploadRetryTimeMillis(STORAGE_RETRY_MS);
+
+        // Al recuperar la red no se espera al siguiente backoff
+        ConnectivityManager connectivity = context.getApplicationContext()
+                .getSystemService(ConnectivityManager.class);
+        if (connectivity != null) {
+            connectivity.registerDefaultNetworkCallback(new ConnectivityManager.NetworkCallback() {
+                @Override
+                public void onAvailable(@NonNull Network network) {
+                    worker.execute(() -> {
+                        resetBackoff();
+                        schedulePump(0);
+                    });
+                }
+            });
+        }
+    }
+
+    public static synchronized BlobUploader getInstance(Context context) {
+        if (instance == null) {
+            instance = new BlobUploader(context);
+        }
+        return instance;
+    }
+
+    static void createTable(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE " + TABLE_UPLOADS + " ("
+                + COL_OWNER_ID + " TEXT NOT NULL, "
+                + COL_HASH + " TEXT NOT NULL, "
+                + COL_CONTENT_TYPE + " TEXT, "
+                + COL_SESSION_URI + " TEXT, "
+                + COL_BYTES_UPLOADED + " INTEGER NOT NULL DEFAULT 0, "
+                + COL_TOTAL_BYTES + " INTEGER NOT NULL DEFAULT 0, "
+                + COL_ATTEMPTS + " INTEGER NOT NULL DEFAULT 0, "
+                + COL_NEXT_ATTEMPT_AT + " INTEGER NOT NULL DEFAULT 0, "
+                + "PRIMARY KEY (" + COL_OWNER_ID + ", " + COL_HASH + "))");
+    }
+
+    /**
+     * Encola la subida del blob; si ya estaba en cola se conserva su sesión y avance.
+     * La tarea termina cuando la fila quedó guardada, no cuando el blob llega a Storage.
+     */
+    public Task<Void> enqueue(String ownerId, String hash, String contentType) {
+        return Tasks.call(worker, () -> {
+            ContentValues values = new ContentValues();
+            values.put(COL_OWNER_ID, ownerId);
+            values.put(COL_HASH, hash);
+            values.put(COL_CONTENT_TYPE, contentType);
+            database.getWritableDatabase().insertWithOnConflict(TABLE_UPLOADS, null, values,
+                    SQLiteDatabase.CONFLICT_IGNORE);
+            pump();
+            return null;
+        });
+    }
+
+    /**
+     * Pide retomar las subidas pendientes (por ejemplo al abrir la app)
+     */
+    public void requestDrain() {
+        worker.execute(() -> schedulePump(0));
+    }
+
+    private void schedulePump(long delayMs) {
+        long runAt = System.currentTimeMillis() + delayMs;
+        if (scheduledPump != null && !scheduledPump.isDone()) {
+            if (scheduledAt <= runAt) {
+                return;
+            }
+            scheduledPump.cancel(false);
+        }
+        scheduledAt = runAt;
+        scheduledPump = worker.schedule(this::pump, delayMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Arranca subidas vencidas hasta llenar los cupos libres
+     */
+    private void pump() {
+        scheduledAt = Long.MAX_VALUE;
+        String userId = currentUserId();
+        if (userId == null) {
+            return;
+        }
+
+        long now = System.currentTimeMillis();
+        if (active.size() < MAX_CONCURRENT) {
+            for (Pending pending : loadDue(userId, now, MAX_CONCURRENT + active.size())) {
+                if (active.size() >= MAX_CONCURRENT) {
+                    break;
+                }
+                if (!active.contains(pending.key())) {
+                    start(pending);
+                }
+            }
+        }
+        // Las filas vencidas que no entraron arrancan cuando termine una subida activa
+        scheduleNextDue(userId, now);
+    }
+
+    private void start(Pending pending) {
+        File file = blobStore.getLocalFile(pending.hash);
+        if (!file.exists()) {
+            Log.w(TAG, "Blob sin copia local, se descarta la subida: " + pending.hash);
+            remove(pending);
+            return;
+        }
+
+        active.add(pending.key());
+        StorageReference ref = blobStore.remoteRef(pending.ownerId, pending.hash);
+        if (pending.sessionUri != null) {
+            upload(pending, file, ref);
+            return;
+        }
+
+        // Blobs direccionados por contenido: si el objeto existe, es idéntico
+        ref.getMetadata().addOnCompleteListener(worker, task -> {
+            if (task.isSuccessful()) {
+                finish(pending, null);
+            } else if (errorCode(task.getException()) == StorageException.ERROR_OBJECT_NOT_FOUND) {
+                upload(pending, file, ref);
+            } else {
+                finish(pending, task.getException());
+            }
+        });
+    }
+
+    private void upload(Pending pending, File file, StorageReference ref) {
+        long start = System.currentTimeMillis();
+        long resumedFrom = pending.bytesUploaded;
+        StorageMetadata metadata = pending.contentType != null
+                ? new StorageMetadata.Builder().setContentType(pending.contentType).build()
+                : null;
+        Uri session = pending.sessionUri != null ? Uri.parse(pending.sessionUri) : null;
+
+        UploadTask task = ref.putFile(Uri.fromFile(file), metadata, session);
+        task.addOnProgressListener(worker, snapshot -> {
+            Uri sessionUri = snapshot.getUploadSessionUri();
+            long sent = snapshot.getBytesTransferred();
+            if (sessionUri == null) {
+                return;
+            }
+            // La sesión se guarda en cuanto existe; el avance, cada PROGRESS_SAVE_BYTES
+            if (pending.sessionUri == null || sent - pending.bytesUploaded >= PROGRESS_SAVE_BYTES) {
+                pending.sessionUri = sessionUri.toString();
+                pending.bytesUploaded = sent;
+                saveProgress(pending, snapshot.getTotalByteCount());
+            }
+        });
+        task.addOnCompleteListener(worker, result -> {
+            if (result.isSuccessful()) {
+                Log.d(TAG, String.format("Subido %s: %dKB en %d ms%s", pending.hash,
+                        file.length() / 1024, System.currentTimeMillis() - start,
+                        resumedFrom > 0 ? " (reanudado desde " + resumedFrom / 1024 + "KB)" : ""));
+            }
+            finish(pending, result.isSuccessful() ? null : result.getException());
+        });
+    }
+
+    private void finish(Pending pending, Exception error) {
+        active.remove(pending.key());
+        if (error == null) {
+            remove(pending);
+        } else {
+            handleFailure(pending, error);
+        }
+        pump();
+    }
+
+    private void handleFailure(Pending pending, Exception e) {
+        int code = errorCode(e);
+        if (code == StorageException.ERROR_NOT_AUTHORIZED
+                || code == StorageException.ERROR_BUCKET_NOT_FOUND
+                || code == StorageException.ERROR_PROJECT_NOT_FOUND) {
+            // Reintentar no lo va a arreglar
+            Log.w(TAG, "Descartando subida de " + pending.hash, e);
+            remove(pending);
+            return;
+        }
+
+        int attempts = pending.attempts + 1;
+        long backoff = Math.min(MAX_BACKOFF_MS, BASE_BACKOFF_MS << Math.min(attempts - 1, 20));
+        long delay = backoff / 2 + (long) (jitter.nextDouble() * backoff / 2);
+
+        ContentValues values = new ContentValues();
+        values.put(COL_ATTEMPTS, attempts);
+        values.put(COL_NEXT_ATTEMPT_AT, System.currentTimeMillis() + delay);
+        if (pending.sessionUri != null && isSessionInvalid(e)) {
+            // La sesión venció o el contenido no coincide: empezar una nueva desde cero
+            values.putNull(COL_SESSION_URI);
+            values.put(COL_BYTES_UPLOADED, 0);
+        }
+        database.getWritableDatabase().update(TABLE_UPLOADS, values,
+                COL_OWNER_ID + " = ? AND " + COL_HASH + " = ?",
+                new String[]{pending.ownerId, pending.hash});
+        Log.d(TAG, "Reintento " + attempts + " de " + pending.hash + " en " + delay + " ms: " + e.getMessage());
+    }
+
+    private static boolean isSessionInvalid(Exception e) {
+        if (!(e instanceof StorageException)) {
+            return false;
+        }
+        StorageException storageException = (StorageException) e;
+        int http = storageException.getHttpResultCode();
+        return storageException.getErrorCode() == StorageException.ERROR_INVALID_CHECKSUM
+                || http == 404 || http == 410;
+    }
+
+    private static int errorCode(Exception e) {
+        return e instanceof StorageException
+                ? ((StorageException) e).getErrorCode()
+                : StorageException.ERROR_UNKNOWN;
+    }
+
+    private void saveProgress(Pending pending, long totalBytes) {
+        ContentValues values = new ContentValues();
+        values.put(COL_SESSION_URI, pending.sessionUri);
+        values.put(COL_BYTES_UPLOADED, pending.bytesUploaded);
+        values.put(COL_TOTAL_BYTES, totalBytes);
+        database.getWritableDatabase().update(TABLE_UPLOADS, values,
+                COL_OWNER_ID + " = ? AND " + COL_HASH + " = ?",
+                new String[]{pending.ownerId, pending.hash});
+    }
+
+    private void scheduleNextDue(String userId, long now) {
+        try (Cursor cursor = database.getReadableDatabase().rawQuery(
+                "SELECT MIN(" + COL_NEXT_ATTEMPT_AT + ") FROM " + TABLE_UPLOADS
+                        + " WHERE " + COL_OWNER_ID + " = ? AND " + COL_NEXT_ATTEMPT_AT + " > ?",
+                new String[]{userId, String.valueOf(now)})) {
+            if (cursor.moveToFirst() && !cursor.isNull(0)) {
+                schedulePump(Math.max(0, cursor.getLong(0) - System.currentTimeMillis()));
+            }
+        }
+    }
+
+    private void resetBackoff() {
+        ContentValues values = new ContentValues();
+        values.put(COL_NEXT_ATTEMPT_AT, 0);
+        database.getWritableDatabase().update(TABLE_UPLOADS, values, null, null);
+    }
+
+    private void remove(Pending pending) {
+        database.getWritableDatabase().delete(TABLE_UPLOADS,
+                COL_OWNER_ID + " = ? AND " + COL_HASH + " = ?",
+                new String[]{pending.ownerId, pending.hash});
+    }
+
+    /**
+     * Hashes que todavía esperan subida, de cualquier usuario (el directorio local es compartido)
+     */
+    Set<String> loadPendingHashes() {
+        Set<String> hashes = new HashSet<>();
+        try (Cursor cursor = database.getReadableDatabase().query(TABLE_UPLOADS,
+                new String[]{COL_HASH}, null, null, null, null, null)) {
+            while (cursor.moveToNext()) {
+                hashes.add(cursor.getString(0));
+            }
+        }
+        return hashes;
+    }
+
+    private List<Pending> loadDue(String userId, long now, int limit) {
+        List<Pending> due = new ArrayList<>();
+        try (Cursor cursor = database.getReadableDatabase().query(TABLE_UPLOADS, null,
+                COL_OWNER_ID + " = ? AND " + COL_NEXT_ATTEMPT_AT + " <= ?",
+                new String[]{userId, String.valueOf(now)},
+                null, null, COL_NEXT_ATTEMPT_AT + " ASC", String.valueOf(limit))) {
+            while (cursor.moveToNext()) {
+                due.add(fromCursor(cursor));
+            }
+        }
+        return due;
+    }
+
+    private static Pending fromCursor(Cursor cursor) {
+        Pending pending = new Pending();
+        pending.ownerId = cursor.getString(cursor.getColumnIndexOrThrow(COL_OWNER_ID));
+        pending.hash = cursor.getString(cursor.getColumnIndexOrThrow(COL_HASH));
+        pending.contentType = cursor.getString(cursor.getColumnIndexOrThrow(COL_CONTENT_TYPE));
+        pending.sessionUri = cursor.getString(cursor.getColumnIndexOrThrow(COL_SESSION_URI));
+        pending.bytesUploaded = cursor.getLong(cursor.getColumnIndexOrThrow(COL_BYTES_UPLOADED));
+        pending.attempts = cursor.getInt(cursor.getColumnIndexOrThrow(COL_ATTEMPTS));
+        return pending;
+    }
+
+    private static String currentUserId() {
+        FirebaseUser user = FirebaseAuth.getInstance().getCurrentUser();
+        return user != null ? user.getUid() : null;
+    }
+
+    private static class Pending {
+        String ownerId;
+        String hash;
+        String contentType;
+        String sessionUri;
+        long bytesUploaded;
+        int attempts;
+
+        String key() {
+            return ownerId + "/" + hash;
+        }
+    }
+}
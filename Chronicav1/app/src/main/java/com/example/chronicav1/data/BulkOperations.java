@@ -0,0 +1,378 @@
+package com.example.chronicav1.data;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.util.Log;
+
+import com.example.chronicav1.media.AudioPeaks;
+import com.example.chronicav1.media.ImageVariants;
+import com.example.chronicav1.models.Entry;
+import com.google.android.gms.tasks.Task;
+import com.google.android.gms.tasks.TaskCompletionSource;
+import com.google.android.gms.tasks.Tasks;
+import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.FieldPath;
+import com.google.firebase.firestore.FirebaseFirestore;
+import com.google.firebase.firestore.QuerySnapshot;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Function;
+
+/**
+ * Operaciones sobre muchas entradas a la vez (borrado y actualización masivos)
+ * Las escrituras pasan por EntryOutbox, que las agrupa en WriteBatch de 250 filas
+ * (500 escrituras: entrada y resumen) y envía varios lotes en paralelo; pasar por la cola
+ * mantiene el orden respecto de ediciones pendientes de las mismas entradas.
+ * Después de un borrado se eliminan los blobs que quedaron sin referencias, con
+ * concurrencia acotada. El progreso se informa en el hilo principal.
+ */
+public class BulkOperations {
+
+    private static final String TAG = "BulkOperations";
+    private static final String ENTRIES = "entries";
+
+    // whereIn sobre el id de documento admite hasta 10 valores
+    private static final int READ_CHUNK = 10;
+    private static final int MAX_READS_IN_FLIGHT = 8;
+    private static final int MAX_CLEANUPS_IN_FLIGHT = 4;
+
+    // Campos de una entrada que guardan hashes de BlobStore (también los usa MediaCollector)
+    static final String[] BLOB_FIELDS = {
+            ImageVariants.FIELD_FULL, ImageVariants.FIELD_CARD, ImageVariants.FIELD_THUMB,
+            "audioHash", "peaksHash"
+    };
+
+    /**
+     * Estado de una operación; entriesPerSecond mide solo la escritura de las entradas
+     */
+    public static final class Progress {
+        public final int total;
+        public final int written;
+        public final int blobsTotal;
+        public final int blobsDeleted;
+        public final long elapsedMs;
+
+        Progress(int total, int written, int blobsTotal, int blobsDeleted, long elapsedMs) {
+            this.total = total;
+            this.written = written;
+            this.blobsTotal = blobsTotal;
+            this.blobsDeleted = blobsDeleted;
+            this.elapsedMs = elapsedMs;
+        }
+
+        public long entriesPerSecond() {
+            return elapsedMs > 0 ? written * 1000L / elapsedMs : 0;
+        }
+    }
+
+    public interface ProgressListener {
+        void onProgress(Progress progress);
+    }
+
+    /**
+     * Una operación en curso. getQueued() termina cuando los cambios están guardados en la cola
+     * local (ya se pueden dar por hechos); getFinished() cuando llegaron a Firestore y se
+     * limpiaron los blobs.
+     */
+    public static final class Operation implements EntryOutbox.Listener {
+        private final Handler mainHandler;
+        private final ProgressListener listener;
+        private final long startedAt = SystemClock.elapsedRealtime();
+        private final int total;
+        private final TaskCompletionSource<Void> queued = new TaskCompletionSource<>();
+        private final TaskCompletionSource<Progress> finished = new TaskCompletionSource<>();
+        private final TaskCompletionSource<Void> settled = new TaskCompletionSource<>();
+
+        // Lo modifica el hilo del worker de EntryOutbox
+        private final Set<String> unsettled;
+        private int written;
+        private int blobsTotal;
+        private int blobsDeleted;
+        private long writtenAt;
+
+        Operation(Collection<String> entryIds, ProgressListener listener, Handler mainHandler) {
+            this.unsettled = new HashSet<>(entryIds);
+            this.total = unsettled.size();
+            this.listener = listener;
+            this.mainHandler = mainHandler;
+        }
+
+        public Task<Void> getQueued() {
+            return queued.getTask();
+        }
+
+        public Task<Progress> getFinished() {
+            return finished.getTask();
+        }
+
+        @Override
+        public void onSettled(Collection<String> entryIds) {
+            boolean done;
+            synchronized (this) {
+                for (String entryId : entryIds) {
+                    if (unsettled.remove(entryId)) {
+                        written++;
+                    }
+                }
+                done = unsettled.isEmpty();
+                if (done && writtenAt == 0) {
+                    writtenAt = SystemClock.elapsedRealtime();
+                }
+            }
+            publish();
+            if (done) {
+                settled.trySetResult(null);
+            }
+        }
+
+        synchronized void addBlobs(int count) {
+            blobsTotal += count;
+        }
+
+        void blobDeleted() {
+            synchronized (this) {
+                blobsDeleted++;
+            }
+            publish();
+        }
+
+        synchronized Progress snapshot() {
+            long end = writtenAt != 0 ? writtenAt : SystemClock.elapsedRealtime();
+            return new Progress(total, written, blobsTotal, blobsDeleted, end - startedAt);
+        }
+
+        private void publish() {
+            if (listener != null) {
+                Progress progress = snapshot();
+                mainHandler.post(() -> listener.onProgress(progress));
+            }
+        }
+    }
+
+    /**
+     * Blobs y archivos locales que usan las entradas a borrar
+     */
+    private static final class References {
+        // hash -> campo donde aparece
+        final Map<String, String> blobs = new HashMap<>();
+        final List<String> audioFiles = new ArrayList<>();
+
+        void add(String field, String hash) {
+            if (hash != null && !hash.isEmpty()) {
+                blobs.put(hash, field);
+            }
+        }
+    }
+
+    private static BulkOperations instance;
+
+    private final File audioDir;
+    private final FirebaseFirestore db;
+    private final EntryOutbox outbox;
+    private final BlobStore blobStore;
+    private final ExecutorService fileExecutor = Executors.newSingleThreadExecutor();
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    private BulkOperations(Context context) {
+        audioDir = new File(context.getApplicationContext().getFilesDir(), "audio");
+        db = FirebaseFirestore.getInstance();
+        outbox = EntryOutbox.getInstance(context);
+        blobStore = BlobStore.getInstance(context);
+    }
+
+    public static synchronized BulkOperations getInstance(Context context) {
+        if (instance == null) {
+            instance = new BulkOperations(context);
+        }
+        return instance;
+    }
+
+    /**
+     * Borra las entradas y después sus blobs. Primero se leen los documentos para saber qué
+     * blobs usan; si una lectura falla esos blobs quedan (mejor sobrar que borrar de más).
+     */
+    public Operation deleteEntries(String userId, Collection<String> entryIds, ProgressListener listener) {
+        return delete(userId, entryIds, readReferences(userId, new ArrayList<>(entryIds)), listener);
+    }
+
+    /**
+     * Borra una entrada ya cargada: sus referencias se conocen sin leer nada
+     */
+    public Operation deleteEntry(Entry entry, ProgressListener listener) {
+        References references = new References();
+        collect(references, entry.getImageHash(), entry.getCardHash(), entry.getThumbHash(),
+                entry.getAudioHash(), entry.getPeaksHash(), entry.getAudioFileName());
+        return delete(entry.getUserId(), Collections.singleton(entry.getId()),
+                Tasks.forResult(references), listener);
+    }
+
+    /**
+     * Aplica el mismo cambio a muchas entradas (por ejemplo cambiar el lugar de una selección)
+     */
+    public Operation updateEntries(String userId, Collection<String> entryIds, Map<String, Object> updates,
+                                   Collection<String> deletedFields, ProgressListener listener) {
+        Operation operation = new Operation(entryIds, listener, mainHandler);
+        write(operation, outbox.enqueueUpdateAll(userId, entryIds, updates, deletedFields))
+                .addOnCompleteListener(task -> finish(operation, task, "Actualizadas"));
+        return operation;
+    }
+
+    private Operation delete(String userId, Collection<String> entryIds, Task<References> references,
+                             ProgressListener listener) {
+        Operation operation = new Operation(entryIds, listener, mainHandler);
+        List<String> deleted = new ArrayList<>(entryIds);
+        references
+                .onSuccessTask(refs -> write(operation, outbox.enqueueDeleteAll(userId, deleted))
+                        .onSuccessTask(v -> deleteLocalAudio(refs))
+                        .onSuccessTask(v -> cleanupBlobs(operation, userId, deleted, refs)))
+                .addOnCompleteListener(task -> finish(operation, task, "Borradas"));
+        return operation;
+    }
+
+    /**
+     * Encola y espera a que la cola confirme todas las filas de la operación
+     */
+    private Task<Void> write(Operation operation, Task<Void> enqueued) {
+        // Registrado antes de que la cola pueda enviar nada: no se pierde ningún aviso
+        outbox.addListener(operation);
+        return enqueued
+                .onSuccessTask(v -> {
+                    operation.queued.trySetResult(null);
+                    operation.publish();
+                    return operation.settled.getTask();
+                })
+                .continueWithTask(task -> {
+                    outbox.removeListener(operation);
+                    if (!task.isSuccessful()) {
+                        operation.queued.trySetException(task.getException());
+                    }
+                    return task;
+                });
+    }
+
+    private void finish(Operation operation, Task<Void> task, String verb) {
+        Progress progress = operation.snapshot();
+        if (!task.isSuccessful()) {
+            operation.queued.trySetException(task.getException());
+            Log.w(TAG, "Operación masiva fallida tras " + progress.written + "/" + progress.total,
+                    task.getException());
+            operation.finished.trySetException(task.getException());
+            return;
+        }
+        Log.d(TAG, String.format("%s %d entradas en %d ms (%d/s), blobs borrados %d/%d", verb,
+                progress.total, progress.elapsedMs, progress.entriesPerSecond(),
+                progress.blobsDeleted, progress.blobsTotal));
+        operation.finished.trySetResult(progress);
+    }
+
+    private Task<References> readReferences(String userId, List<String> entryIds) {
+        List<List<String>> chunks = new ArrayList<>();
+        for (int from = 0; from < entryIds.size(); from += READ_CHUNK) {
+            chunks.add(entryIds.subList(from, Math.min(entryIds.size(), from + READ_CHUNK)));
+        }
+
+        References references = new References();
+        return runBounded(chunks, MAX_READS_IN_FLIGHT, chunk -> db.collection(ENTRIES)
+                .whereEqualTo("userId", userId)
+                .whereIn(FieldPath.documentId(), chunk)
+                .get()
+                .addOnSuccessListener(snapshots -> collect(references, snapshots))
+                .addOnFailureListener(e -> Log.w(TAG, "No se pudieron leer " + chunk.size()
+                        + " entradas; sus blobs se conservan", e)))
+                .continueWith(task -> references);
+    }
+
+    private static void collect(References references, QuerySnapshot snapshots) {
+        for (DocumentSnapshot document : snapshots.getDocuments()) {
+            collect(references, document.getString(BLOB_FIELDS[0]), document.getString(BLOB_FIELDS[1]),
+                    document.getString(BLOB_FIELDS[2]), document.getString(BLOB_FIELDS[3]),
+                    document.getString(BLOB_FIELDS[4]), document.getString("audioFileName"));
+        }
+    }
+
+    private static void collect(References references, String imageHash, String cardHash,
+                                String thumbHash, String audioHash, String peaksHash, String audioFileName) {
+        references.add(BLOB_FIELDS[0], imageHash);
+        references.add(BLOB_FIELDS[1], cardHash);
+        references.add(BLOB_FIELDS[2], thumbHash);
+        references.add(BLOB_FIELDS[3], audioHash);
+        references.add(BLOB_FIELDS[4], peaksHash);
+        if (audioFileName != null && !audioFileName.isEmpty()) {
+            references.audioFiles.add(audioFileName);
+        }
+    }
+
+    private Task<Void> deleteLocalAudio(References references) {
+        return Tasks.call(fileExecutor, () -> {
+            for (String name : references.audioFiles) {
+                File audio = new File(audioDir, name);
+                audio.delete();
+                AudioPeaks.fileFor(audio).delete();
+            }
+            return null;
+        });
+    }
+
+    /**
+     * Borra cada blob solo si ninguna otra entrada lo usa: el mismo contenido se comparte
+     */
+    private Task<Void> cleanupBlobs(Operation operation, String userId, List<String> deleted,
+                                    References references) {
+        Set<String> deletedIds = new HashSet<>(deleted);
+        List<Map.Entry<String, String>> blobs = new ArrayList<>(references.blobs.entrySet());
+        operation.addBlobs(blobs.size());
+        // Las entradas recién borradas pueden seguir apareciendo (caché o escritura pendiente):
+        // con un resultado más que ellas, si hay una entrada viva que use el blob se ve siempre
+        long queryLimit = deletedIds.size() + 1L;
+        return runBounded(blobs, MAX_CLEANUPS_IN_FLIGHT, blob -> db.collection(ENTRIES)
+                .whereEqualTo("userId", userId)
+                .whereEqualTo(blob.getValue(), blob.getKey())
+                .limit(queryLimit)
+                .get()
+                .onSuccessTask(snapshots -> {
+                    for (DocumentSnapshot document : snapshots.getDocuments()) {
+                        if (!deletedIds.contains(document.getId())) {
+                            return Tasks.forResult(null);
+                        }
+                    }
+                    return blobStore.delete(userId, blob.getKey())
+                            .addOnSuccessListener(v -> operation.blobDeleted());
+                })
+                .addOnFailureListener(e -> Log.w(TAG, "Blob sin borrar: " + blob.getKey(), e)));
+    }
+
+    /**
+     * Ejecuta work sobre cada elemento con como mucho maxInFlight tareas a la vez.
+     * Un fallo no detiene al resto; quien necesite saberlo lo registra en su propia tarea.
+     */
+    private static <T> Task<Void> runBounded(List<T> items, int maxInFlight, Function<T, Task<?>> work) {
+        // Las continuaciones corren en el hilo principal: el iterador no se comparte entre hilos
+        Iterator<T> queue = items.iterator();
+        List<Task<Void>> lanes = new ArrayList<>();
+        for (int i = 0; i < Math.min(maxInFlight, items.size()); i++) {
+            lanes.add(nextInLane(queue, work));
+        }
+        return Tasks.whenAll(lanes);
+    }
+
+    private static <T> Task<Void> nextInLane(Iterator<T> queue, Function<T, Task<?>> work) {
+        if (!queue.hasNext()) {
+            return Tasks.forResult(null);
+        }
+        T item = queue.next();
+        return work.apply(item).continueWithTask(done -> nextInLane(queue, work));
+    }
+}
@@ -0,0 +1,329 @@
+package com.example.chronicav1.data;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteOpenHelper;
+
+import com.example.chronicav1.models.Entry;
+import com.example.chronicav1.models.EntrySummary;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Copia local (SQLite) de los resúmenes de entradas del usuario (ver EntrySummary)
+ * Permite pintar la lista desde disco al arrancar, antes de que responda Firestore.
+ * Firestore sigue siendo la fuente de verdad: esta tabla solo se escribe con sus snapshots.
+ * Las entradas completas que se abrieron quedan en otra tabla para abrirlas de nuevo sin red.
+ * La misma base guarda la cola de escrituras pendientes (ver EntryOutbox).
+ */
+public class EntryDatabase extends SQLiteOpenHelper {
+
+    private static final String DATABASE_NAME = "chronica.db";
+    private static final int DATABASE_VERSION = 7;
+
+    static final String TABLE_SUMMARIES = "summaries";
+    private static final String TABLE_ENTRY_CACHE = "entry_cache";
+    private static final String TABLE_ENTRIES_V3 = "entries";
+
+    private static final String COL_ID = "id";
+    private static final String COL_USER_ID = "userId";
+    private static final String COL_TITLE = "title";
+    private static final String COL_PREVIEW = "preview";
+    private static final String COL_CONTENT = "content";
+    private static final String COL_TERMS = "terms";
+    private static final String COL_DATE = "date";
+    private static final String COL_LOCATION = "location";
+    private static final String COL_IMAGE_HASH = "imageHash";
+    private static final String COL_CARD_HASH = "cardHash";
+    private static final String COL_THUMB_HASH = "thumbHash";
+    private static final String COL_IMAGE_WIDTH = "imageWidth";
+    private static final String COL_IMAGE_HEIGHT = "imageHeight";
+    private static final String COL_LEGACY_IMAGE = "legacyImage";
+    private static final String COL_AUDIO_FILE_NAME = "audioFileName";
+    private static final String COL_AUDIO_HASH = "audioHash";
+    private static final String COL_PEAKS_HASH = "peaksHash";
+    private static final String COL_LATITUDE = "latitude";
+    private static final String COL_LONGITUDE = "longitude";
+    private static final String COL_GEOHASH = "geohash";
+    private static final String COL_TIMESTAMP = "timestamp";
+    private static final String COL_UPDATED_AT = "updatedAt";
+
+    private static EntryDatabase instance;
+
+    private EntryDatabase(Context context) {
+        super(context.getApplicationContext(), DATABASE_NAME, null, DATABASE_VERSION);
+    }
+
+    public static synchronized EntryDatabase getInstance(Context context) {
+        if (instance == null) {
+            instance = new EntryDatabase(context);
+        }
+        return instance;
+    }
+
+    @Override
+    public void onConfigure(SQLiteDatabase db) {
+        // WAL: las lecturas del arranque no esperan a las escrituras de los snapshots
+        db.enableWriteAheadLogging();
+    }
+
+    @Override
+    public void onCreate(SQLiteDatabase db) {
+        createSummariesTable(db);
+        createEntryCacheTable(db);
+        EntryOutbox.createTable(db);
+        BlobUploader.createTable(db);
+    }
+
+    @Override
+    public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+        // La tabla de entradas es solo una caché; la cola nunca se descarta
+        if (oldVersion < 2) {
+            EntryOutbox.createTable(db);
+        }
+        if (oldVersion < 4) {
+            // Las entradas completas se reemplazan por resúmenes; se vuelven a llenar desde Firestore
+            db.execSQL("DROP TABLE IF EXISTS " + TABLE_ENTRIES_V3);
+            createSummariesTable(db);
+        } else if (oldVersion < 5) {
+            db.execSQL("ALTER TABLE " + TABLE_SUMMARIES + " ADD COLUMN " + COL_CARD_HASH + " TEXT");
+            db.execSQL("ALTER TABLE " + TABLE_SUMMARIES + " ADD COLUMN " + COL_THUMB_HASH + " TEXT");
+        }
+        if (oldVersion < 6) {
+            BlobUploader.createTable(db);
+        }
+        if (oldVersion < 7) {
+            createEntryCacheTable(db);
+        }
+    }
+
+    private static void createSummariesTable(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE " + TABLE_SUMMARIES + " ("
+                + COL_ID + " TEXT PRIMARY KEY NOT NULL, "
+                + COL_USER_ID + " TEXT NOT NULL, "
+                + COL_TITLE + " TEXT, "
+                + COL_PREVIEW + " TEXT, "
+                + COL_TERMS + " TEXT, "
+                + COL_DATE + " TEXT, "
+                + COL_LOCATION + " TEXT, "
+                + COL_IMAGE_HASH + " TEXT, "
+                + COL_CARD_HASH + " TEXT, "
+                + COL_THUMB_HASH + " TEXT, "
+                + COL_IMAGE_WIDTH + " INTEGER NOT NULL DEFAULT 0, "
+                + COL_IMAGE_HEIGHT + " INTEGER NOT NULL DEFAULT 0, "
+                + COL_LEGACY_IMAGE + " INTEGER NOT NULL DEFAULT 0, "
+                + COL_LATITUDE + " REAL NOT NULL DEFAULT 0, "
+                + COL_LONGITUDE + " REAL NOT NULL DEFAULT 0, "
+                + COL_GEOHASH + " TEXT, "
+                + COL_TIMESTAMP + " INTEGER NOT NULL DEFAULT 0, "
+                + COL_UPDATED_AT + " INTEGER NOT NULL DEFAULT 0)");
+
+        // Cubre "entradas del usuario más recientes primero" sin ordenar en memoria
+        db.execSQL("CREATE INDEX idx_summaries_user_timestamp ON " + TABLE_SUMMARIES
+                + " (" + COL_USER_ID + ", " + COL_TIMESTAMP + " DESC)");
+    }
+
+    private static void createEntryCacheTable(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE " + TABLE_ENTRY_CACHE + " ("
+                + COL_ID + " TEXT PRIMARY KEY NOT NULL, "
+                + COL_USER_ID + " TEXT NOT NULL, "
+                + COL_TITLE + " TEXT, "
+                + COL_CONTENT + " TEXT, "
+                + COL_DATE + " TEXT, "
+                + COL_LOCATION + " TEXT, "
+                + COL_IMAGE_HASH + " TEXT, "
+                + COL_CARD_HASH + " TEXT, "
+                + COL_THUMB_HASH + " TEXT, "
+                + COL_IMAGE_WIDTH + " INTEGER NOT NULL DEFAULT 0, "
+                + COL_IMAGE_HEIGHT + " INTEGER NOT NULL DEFAULT 0, "
+                + COL_AUDIO_FILE_NAME + " TEXT, "
+                + COL_AUDIO_HASH + " TEXT, "
+                + COL_PEAKS_HASH + " TEXT, "
+                + COL_LATITUDE + " REAL NOT NULL DEFAULT 0, "
+                + COL_LONGITUDE + " REAL NOT NULL DEFAULT 0, "
+                + COL_GEOHASH + " TEXT, "
+                + COL_TIMESTAMP + " INTEGER NOT NULL DEFAULT 0, "
+                + COL_UPDATED_AT + " INTEGER NOT NULL DEFAULT 0)");
+    }
+
+    /**
+     * Resúmenes del usuario, más recientes primero; limit <= 0 devuelve todos
+     */
+    public List<EntrySummary> loadSummaries(String userId, long limit) {
+        List<EntrySummary> summaries = new ArrayList<>();
+        String orderBy = COL_TIMESTAMP + " DESC, " + COL_ID + " ASC";
+        try (Cursor cursor = getReadableDatabase().query(TABLE_SUMMARIES, null,
+                COL_USER_ID + " = ?", new String[]{userId},
+                null, null, orderBy, limit > 0 ? String.valueOf(limit) : null)) {
+            while (cursor.moveToNext()) {
+                summaries.add(fromCursor(cursor));
+            }
+        }
+        return summaries;
+    }
+
+    /**
+     * Inserta o reemplaza los resúmenes dados y borra los indicados, en una sola transacción
+     */
+    public void apply(Collection<EntrySummary> upserts, Collection<String> deletedIds) {
+        SQLiteDatabase db = getWritableDatabase();
+        db.beginTransaction();
+        try {
+            for (EntrySummary summary : upserts) {
+                db.insertWithOnConflict(TABLE_SUMMARIES, null, toValues(summary),
+                        SQLiteDatabase.CONFLICT_REPLACE);
+            }
+            for (String entryId : deletedIds) {
+                db.delete(TABLE_SUMMARIES, COL_ID + " = ?", new String[]{entryId});
+                db.delete(TABLE_ENTRY_CACHE, COL_ID + " = ?", new String[]{entryId});
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    /**
+     * Ids guardados del usuario con fromTimestamp <= timestamp < toTimestamp
+     * (para detectar borrados remotos dentro del rango que cubre una página)
+     */
+    public List<String> loadIdsBetween(String userId, long fromTimestamp, long toTimestamp) {
+        List<String> ids = new ArrayList<>();
+        try (Cursor cursor = getReadableDatabase().query(TABLE_SUMMARIES, new String[]{COL_ID},
+                COL_USER_ID + " = ? AND " + COL_TIMESTAMP + " >= ? AND " + COL_TIMESTAMP + " < ?",
+                new String[]{userId, String.valueOf(fromTimestamp), String.valueOf(toTimestamp)},
+                null, null, null)) {
+            while (cursor.moveToNext()) {
+                ids.add(cursor.getString(0));
+            }
+        }
+        return ids;
+    }
+
+    /**
+     * Entrada completa guardada del usuario (null si no se abrió antes o ya no existe)
+     */
+    public Entry loadEntry(String userId, String entryId) {
+        try (Cursor cursor = getReadableDatabase().query(TABLE_ENTRY_CACHE, null,
+                COL_ID + " = ? AND " + COL_USER_ID + " = ?", new String[]{entryId, userId},
+                null, null, null)) {
+            return cursor.moveToFirst() ? entryFromCursor(cursor) : null;
+        }
+    }
+
+    /**
+     * Guarda la entrada completa. Las de imagen Base64 heredada no se guardan: la fila sería enorme.
+     */
+    public void saveEntry(Entry entry) {
+        if (entry.getImageBase64() != null && !entry.getImageBase64().isEmpty()) {
+            return;
+        }
+        getWritableDatabase().insertWithOnConflict(TABLE_ENTRY_CACHE, null, toValues(entry),
+                SQLiteDatabase.CONFLICT_REPLACE);
+    }
+
+    /**
+     * Descarta la copia completa guardada, dentro de la transacción de quien llama
+     */
+    void forgetEntry(SQLiteDatabase db, String entryId) {
+        db.delete(TABLE_ENTRY_CACHE, COL_ID + " = ?", new String[]{entryId});
+    }
+
+    private static ContentValues toValues(Entry entry) {
+        ContentValues values = new ContentValues();
+        values.put(COL_ID, entry.getId());
+        values.put(COL_USER_ID, entry.getUserId());
+        values.put(COL_TITLE, entry.getTitle());
+        values.put(COL_CONTENT, entry.getContent());
+        values.put(COL_DATE, entry.getDate());
+        values.put(COL_LOCATION, entry.getLocation());
+        values.put(COL_IMAGE_HASH, entry.getImageHash());
+        values.put(COL_CARD_HASH, entry.getCardHash());
+        values.put(COL_THUMB_HASH, entry.getThumbHash());
+        values.put(COL_IMAGE_WIDTH, entry.getImageWidth());
+        values.put(COL_IMAGE_HEIGHT, entry.getImageHeight());
+        values.put(COL_AUDIO_FILE_NAME, entry.getAudioFileName());
+        values.put(COL_AUDIO_HASH, entry.getAudioHash());
+        values.put(COL_PEAKS_HASH, entry.getPeaksHash());
+        values.put(COL_LATITUDE, entry.getLatitude());
+        values.put(COL_LONGITUDE, entry.getLongitude());
+        values.put(COL_GEOHASH, entry.getGeohash());
+        values.put(COL_TIMESTAMP, entry.getTimestamp());
+        values.put(COL_UPDATED_AT, entry.getUpdatedAt());
+        return values;
+    }
+
+    private static Entry entryFromCursor(Cursor cursor) {
+        Entry entry = new Entry();
+        entry.setId(cursor.getString(cursor.getColumnIndexOrThrow(COL_ID)));
+        entry.setUserId(cursor.getString(cursor.getColumnIndexOrThrow(COL_USER_ID)));
+        entry.setTitle(cursor.getString(cursor.getColumnIndexOrThrow(COL_TITLE)));
+        entry.setContent(cursor.getString(cursor.getColumnIndexOrThrow(COL_CONTENT)));
+        entry.setDate(cursor.getString(cursor.getColumnIndexOrThrow(COL_DATE)));
+        entry.setLocation(cursor.getString(cursor.getColumnIndexOrThrow(COL_LOCATION)));
+        entry.setImageHash(cursor.getString(cursor.getColumnIndexOrThrow(COL_IMAGE_HASH)));
+        entry.setCardHash(cursor.getString(cursor.getColumnIndexOrThrow(COL_CARD_HASH)));
+        entry.setThumbHash(cursor.getString(cursor.getColumnIndexOrThrow(COL_THUMB_HASH)));
+        entry.setImageWidth(cursor.getInt(cursor.getColumnIndexOrThrow(COL_IMAGE_WIDTH)));
+        entry.setImageHeight(cursor.getInt(cursor.getColumnIndexOrThrow(COL_IMAGE_HEIGHT)));
+        entry.setAudioFileName(cursor.getString(cursor.getColumnIndexOrThrow(COL_AUDIO_FILE_NAME)));
+        entry.setAudioHash(cursor.getString(cursor.getColumnIndexOrThrow(COL_AUDIO_HASH)));
+        entry.setPeaksHash(cursor.getString(cursor.getColumnIndexOrThrow(COL_PEAKS_HASH)));
+        entry.setLatitude(cursor.getDouble(cursor.getColumnIndexOrThrow(COL_LATITUDE)));
+        entry.setLongitude(cursor.getDouble(cursor.getColumnIndexOrThrow(COL_LONGITUDE)));
+        entry.setGeohash(cursor.getString(cursor.getColumnIndexOrThrow(COL_GEOHASH)));
+        entry.setTimestamp(cursor.getLong(cursor.getColumnIndexOrThrow(COL_TIMESTAMP)));
+        entry.setUpdatedAt(cursor.getLong(cursor.getColumnIndexOrThrow(COL_UPDATED_AT)));
+        return entry;
+    }
+
+    private static ContentValues toValues(EntrySummary summary) {
+        ContentValues values = new ContentValues();
+        values.put(COL_ID, summary.getId());
+        values.put(COL_USER_ID, summary.getUserId());
+        values.put(COL_TITLE, summary.getTitle());
+        values.put(COL_PREVIEW, summary.getPreview());
+        values.put(COL_TERMS, summary.getTerms());
+        values.put(COL_DATE, summary.getDate());
+        values.put(COL_LOCATION, summary.getLocation());
+        values.put(COL_IMAGE_HASH, summary.getImageHash());
+        values.put(COL_CARD_HASH, summary.getCardHash());
+        values.put(COL_THUMB_HASH, summary.getThumbHash());
+        values.put(COL_IMAGE_WIDTH, summary.getImageWidth());
+        values.put(COL_IMAGE_HEIGHT, summary.getImageHeight());
+        values.put(COL_LEGACY_IMAGE, summary.isLegacyImage() ? 1 : 0);
+        values.put(COL_LATITUDE, summary.getLatitude());
+        values.put(COL_LONGITUDE, summary.getLongitude());
+        values.put(COL_GEOHASH, summary.getGeohash());
+        values.put(COL_TIMESTAMP, summary.getTimestamp());
+        values.put(COL_UPDATED_AT, summary.getUpdatedAt());
+        return values;
+    }
+
+    private static EntrySummary fromCursor(Cursor cursor) {
+        EntrySummary summary = new EntrySummary();
+        summary.setId(cursor.getString(cursor.getColumnIndexOrThrow(COL_ID)));
+        summary.setUserId(cursor.getString(cursor.getColumnIndexOrThrow(COL_USER_ID)));
+        summary.setTitle(cursor.getString(cursor.getColumnIndexOrThrow(COL_TITLE)));
+        summary.setPreview(cursor.getString(cursor.getColumnIndexOrThrow(COL_PREVIEW)));
+        summary.setTerms(cursor.getString(cursor.getColumnIndexOrThrow(COL_TERMS)));
+        summary.setDate(cursor.getString(cursor.getColumnIndexOrThrow(COL_DATE)));
+        summary.setLocation(cursor.getString(cursor.getColumnIndexOrThrow(COL_LOCATION)));
+        summary.setImageHash(cursor.getString(cursor.getColumnIndexOrThrow(COL_IMAGE_HASH)));
+        summary.setCardHash(cursor.getString(cursor.getColumnIndexOrThrow(COL_CARD_HASH)));
+        summary.setThumbHash(cursor.getString(cursor.getColumnIndexOrThrow(COL_THUMB_HASH)));
+        summary.setImageWidth(cursor.getInt(cursor.getColumnIndexOrThrow(COL_IMAGE_WIDTH)));
+        summary.setImageHeight(cursor.getInt(cursor.getColumnIndexOrThrow(COL_IMAGE_HEIGHT)));
+        summary.setLegacyImage(cursor.getInt(cursor.getColumnIndexOrThrow(COL_LEGACY_IMAGE)) != 0);
+        summary.setLatitude(cursor.getDouble(cursor.getColumnIndexOrThrow(COL_LATITUDE)));
+        summary.setLongitude(cursor.getDouble(cursor.getColumnIndexOrThrow(COL_LONGITUDE)));
+        summary.setGeohash(cursor.getString(cursor.getColumnIndexOrThrow(COL_GEOHASH)));
+        summary.setTimestamp(cursor.getLong(cursor.getColumnIndexOrThrow(COL_TIMESTAMP)));
+        summary.setUpdatedAt(cursor.getLong(cursor.getColumnIndexOrThrow(COL_UPDATED_AT)));
+        return summary;
+    }
+}
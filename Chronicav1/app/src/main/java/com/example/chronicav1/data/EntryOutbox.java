@@ -0,0 +1,659 @@
+package com.example.chronicav1.data;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.net.ConnectivityManager;
+import android.net.Network;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+
+import com.google.android.gms.tasks.Task;
+import com.google.android.gms.tasks.Tasks;
+import com.google.firebase.auth.FirebaseAuth;
+import com.google.firebase.auth.FirebaseUser;
+import com.google.firebase.firestore.DocumentReference;
+import com.google.firebase.firestore.FieldValue;
+import com.google.firebase.firestore.FirebaseFirestore;
+import com.google.firebase.firestore.FirebaseFirestoreException;
+import com.google.firebase.firestore.SetOptions;
+import com.google.firebase.firestore.WriteBatch;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Cola persistente de escrituras de entradas (crear, editar, borrar)
+ * Las pantallas encolan el cambio en SQLite y terminan de inmediato; la cola se vacía
+ * en segundo plano con WriteBatch, reintentos y backoff exponencial.
+ * Hay como máximo una fila por entrada: varias ediciones seguidas se fusionan en una escritura.
+ * Cada escritura actualiza también el resumen de la entrada (ver EntrySummaries) en el mismo lote.
+ * Con muchas filas listas (operaciones masivas) se envían varios lotes a la vez.
+ * Un lote sin confirmar a tiempo no se reenvía: ya está en la cola del SDK de Firestore, que lo
+ * manda al volver la red. Su fila queda a la espera del resultado de esa misma tarea.
+ */
+public class EntryOutbox {
+
+    private static final String TAG = "EntryOutbox";
+
+    static final String TABLE_OUTBOX = "outbox";
+
+    private static final String COL_ENTRY_ID = "entryId";
+    private static final String COL_USER_ID = "userId";
+    private static final String COL_OP = "op";
+    private static final String COL_FIELDS = "fields";
+    private static final String COL_DELETES = "deletes";
+    private static final String COL_VERSION = "version";
+    private static final String COL_ATTEMPTS = "attempts";
+    private static final String COL_NEXT_ATTEMPT_AT = "nextAttemptAt";
+
+    static final String OP_SET = "set";
+    static final String OP_UPDATE = "update";
+    static final String OP_DELETE = "delete";
+
+    // Límite de operaciones por WriteBatch en Firestore; cada fila escribe entrada y resumen
+    private static final int MAX_BATCH = 250;
+    // Los lotes tocan documentos distintos: enviarlos en paralelo solo ahorra idas y vueltas
+    private static final int MAX_BATCHES_IN_FLIGHT = 4;
+    private static final long COMMIT_TIMEOUT_SECONDS = 30;
+    private static final long BASE_BACKOFF_MS = 2_000;
+    private static final long MAX_BACKOFF_MS = 10 * 60 * 1000;
+
+    public interface Listener {
+        /**
+         * Filas que salieron de la cola, confirmadas o descartadas. Corre en el hilo del worker.
+         */
+        default void onSettled(Collection<String> entryIds) {
+        }
+
+        /**
+         * Cambios locales recién guardados en la cola: las copias completas de esas entradas ya no
+         * valen. Corre en el hilo de disco de la cola.
+         */
+        default void onEnqueued(Collection<String> entryIds) {
+        }
+
+        /**
+         * Borrados locales recién guardados en la cola (además de onEnqueued); todavía no llegaron
+         * a Firestore. Corre en el hilo de disco de la cola.
+         */
+        default void onDeleteEnqueued(Collection<String> entryIds) {
+        }
+    }
+
+    private static EntryOutbox instance;
+
+    private final EntryDatabase database;
+    private final FirebaseFirestore db;
+    // Encolar no debe esperar a un envío en curso: disco y red van en hilos distintos
+    private final ExecutorService diskExecutor = Executors.newSingleThreadExecutor();
+    private final ScheduledExecutorService worker = Executors.newSingleThreadScheduledExecutor();
+    private final Random jitter = new Random();
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+
+    // Solo se accede desde el hilo del worker
+    private ScheduledFuture<?> scheduledDrain;
+    private long scheduledAt = Long.MAX_VALUE;
+    // Filas (id -> versión) cuyo commit venció el plazo y sigue pendiente en el SDK
+    private final Map<String, Long> inFlight = new HashMap<>();
+
+    private EntryOutbox(Context context) {
+        database = EntryDatabase.getInstance(context);
+        db = FirebaseFirestore.getInstance();
+
+        // Al recuperar la red no se espera al siguiente backoff
+        ConnectivityManager connectivity = context.getApplicationContext()
+                .getSystemService(ConnectivityManager.class);
+        if (connectivity != null) {
+            connectivity.registerDefaultNetworkCallback(new ConnectivityManager.NetworkCallback() {
+                @Override
+                public void onAvailable(@NonNull Network network) {
+                    worker.execute(() -> {
+                        resetBackoff();
+                        scheduleDrain(0);
+                    });
+                }
+            });
+        }
+    }
+
+    public static synchronized EntryOutbox getInstance(Context context) {
+        if (instance == null) {
+            instance = new EntryOutbox(context);
+        }
+        return instance;
+    }
+
+    static void createTable(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE " + TABLE_OUTBOX + " ("
+                + COL_ENTRY_ID + " TEXT PRIMARY KEY NOT NULL, "
+                + COL_USER_ID + " TEXT NOT NULL, "
+                + COL_OP + " TEXT NOT NULL, "
+                + COL_FIELDS + " TEXT, "
+                + COL_DELETES + " TEXT, "
+                + COL_VERSION + " INTEGER NOT NULL DEFAULT 0, "
+                + COL_ATTEMPTS + " INTEGER NOT NULL DEFAULT 0, "
+                + COL_NEXT_ATTEMPT_AT + " INTEGER NOT NULL DEFAULT 0)");
+        db.execSQL("CREATE INDEX idx_outbox_due ON " + TABLE_OUTBOX
+                + " (" + COL_USER_ID + ", " + COL_NEXT_ATTEMPT_AT + ")");
+    }
+
+    /**
+     * Crea o reemplaza el documento completo de la entrada
+     */
+    public Task<Void> enqueueSet(String userId, String entryId, Map<String, Object> data) {
+        return enqueue(userId, entryId, new Mutation(OP_SET, data, Collections.emptySet()));
+    }
+
+    /**
+     * Actualiza algunos campos; deletedFields se eliminan del documento
+     */
+    public Task<Void> enqueueUpdate(String userId, String entryId, Map<String, Object> updates,
+                                    Collection<String> deletedFields) {
+        return enqueue(userId, entryId, new Mutation(OP_UPDATE, updates, deletedFields));
+    }
+
+    public Task<Void> enqueueDelete(String userId, String entryId) {
+        return enqueueDeleteAll(userId, Collections.singleton(entryId));
+    }
+
+    /**
+     * Borra muchas entradas; todas las filas se guardan en una sola transacción
+     */
+    public Task<Void> enqueueDeleteAll(String userId, Collection<String> entryIds) {
+        return enqueue(userId, entryIds,
+                new Mutation(OP_DELETE, Collections.emptyMap(), Collections.emptySet()));
+    }
+
+    /**
+     * Aplica el mismo update a muchas entradas en una sola transacción
+     */
+    public Task<Void> enqueueUpdateAll(String userId, Collection<String> entryIds,
+                                       Map<String, Object> updates, Collection<String> deletedFields) {
+        return enqueue(userId, entryIds, new Mutation(OP_UPDATE, updates, deletedFields));
+    }
+
+    public void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(Listener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Pide vaciar la cola cuanto antes (por ejemplo al abrir la app)
+     */
+    public void requestDrain() {
+        worker.execute(() -> scheduleDrain(0));
+    }
+
+    /**
+     * La tarea termina cuando el cambio quedó guardado en disco, no cuando llega a Firestore
+     */
+    private Task<Void> enqueue(String userId, String entryId, Mutation mutation) {
+        return enqueue(userId, Collections.singleton(entryId), mutation);
+    }
+
+    private Task<Void> enqueue(String userId, Collection<String> entryIds, Mutation mutation) {
+        List<String> ids = new ArrayList<>(entryIds);
+        return Tasks.call(diskExecutor, () -> {
+            SQLiteDatabase sqlite = database.getWritableDatabase();
+            sqlite.beginTransaction();
+            try {
+                for (String entryId : ids) {
+                    Pending existing = loadPending(sqlite, entryId);
+                    Mutation merged = existing != null ? existing.mutation.mergeWith(mutation) : mutation;
+
+                    ContentValues values = new ContentValues();
+                    values.put(COL_ENTRY_ID, entryId);
+                    values.put(COL_USER_ID, userId);
+                    values.put(COL_OP, merged.op);
+                    values.put(COL_FIELDS, merged.fieldsToJson());
+                    values.put(COL_DELETES, new JSONArray(merged.deletes).toString());
+                    values.put(COL_VERSION, existing != null ? existing.version + 1 : 1);
+                    values.put(COL_ATTEMPTS, 0);
+                    values.put(COL_NEXT_ATTEMPT_AT, 0);
+                    sqlite.insertWithOnConflict(TABLE_OUTBOX, null, values, SQLiteDatabase.CONFLICT_REPLACE);
+                    database.forgetEntry(sqlite, entryId);
+                }
+
+                sqlite.setTransactionSuccessful();
+            } finally {
+                sqlite.endTransaction();
+            }
+            for (Listener listener : listeners) {
+                listener.onEnqueued(ids);
+                if (OP_DELETE.equals(mutation.op)) {
+                    listener.onDeleteEnqueued(ids);
+                }
+            }
+            requestDrain();
+            return null;
+        });
+    }
+
+    private void scheduleDrain(long delayMs) {
+        long runAt = System.currentTimeMillis() + delayMs;
+        if (scheduledDrain != null && !scheduledDrain.isDone()) {
+            if (scheduledAt <= runAt) {
+                return;
+            }
+            scheduledDrain.cancel(false);
+        }
+        scheduledAt = runAt;
+        scheduledDrain = worker.schedule(this::drain, delayMs, TimeUnit.MILLISECONDS);
+    }
+
+    private void drain() {
+        scheduledAt = Long.MAX_VALUE;
+        String userId = currentUserId();
+        if (userId == null) {
+            return;
+        }
+
+        List<Pending> due = loadDue(userId, System.currentTimeMillis());
+        List<Pending> watched = new ArrayList<>();
+        for (Iterator<Pending> it = due.iterator(); it.hasNext(); ) {
+            Pending pending = it.next();
+            Long version = inFlight.get(pending.entryId);
+            if (version != null && version == pending.version) {
+                it.remove();
+                watched.add(pending);
+            }
+        }
+        postpone(watched);
+        if (due.isEmpty()) {
+            scheduleNextDue(userId);
+            return;
+        }
+
+        long startedAt = System.currentTimeMillis();
+        List<List<Pending>> batches = new ArrayList<>();
+        List<Task<Void>> commits = new ArrayList<>();
+        for (int from = 0; from < due.size(); from += MAX_BATCH) {
+            List<Pending> batchItems = due.subList(from, Math.min(due.size(), from + MAX_BATCH));
+            batches.add(batchItems);
+            commits.add(buildBatch(batchItems).commit());
+        }
+
+        boolean allCommitted = true;
+        long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(COMMIT_TIMEOUT_SECONDS);
+        for (int i = 0; i < batches.size(); i++) {
+            List<Pending> batchItems = batches.get(i);
+            try {
+                if (!awaitCommit(batchItems, commits.get(i), deadline)) {
+                    allCommitted = false;
+                }
+            } catch (Exception e) {
+                allCommitted = false;
+                retryOneByOne(batchItems, e);
+            }
+        }
+        if (due.size() > MAX_BATCH) {
+            long elapsed = Math.max(1, System.currentTimeMillis() - startedAt);
+            Log.d(TAG, String.format("%d filas en %d lotes: %d ms (%d filas/s)", due.size(),
+                    batches.size(), elapsed, due.size() * 1000L / elapsed));
+        }
+
+        if (allCommitted) {
+            // Puede haber más filas listas que no cupieron en los lotes
+            scheduleDrain(0);
+            return;
+        }
+        scheduleNextDue(userId);
+    }
+
+    private void retryOneByOne(List<Pending> batchItems, Exception e) {
+        if (batchItems.size() == 1) {
+            for (Pending pending : batchItems) {
+                handleFailure(pending, e);
+            }
+            return;
+        }
+        // Un lote falla completo: reintentar de uno en uno para aislar la fila problemática
+        for (Pending pending : batchItems) {
+            try {
+                List<Pending> single = Collections.singletonList(pending);
+                awaitCommit(single, buildBatch(single).commit(),
+                        System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(COMMIT_TIMEOUT_SECONDS));
+            } catch (Exception single) {
+                handleFailure(pending, single);
+            }
+        }
+    }
+
+    private WriteBatch buildBatch(List<Pending> batchItems) {
+        WriteBatch batch = db.batch();
+        for (Pending pending : batchItems) {
+            DocumentReference ref = db.collection("entries").document(pending.entryId);
+            DocumentReference summaryRef = db.collection(EntrySummaries.COLLECTION).document(pending.entryId);
+            Mutation mutation = pending.mutation;
+            switch (mutation.op) {
+                case OP_SET:
+                    batch.set(ref, mutation.fields);
+                    batch.set(summaryRef, EntrySummaries.project(mutation.fields, Collections.emptySet()));
+                    break;
+                case OP_UPDATE:
+                    Map<String, Object> updates = new HashMap<>(mutation.fields);
+                    for (String field : mutation.deletes) {
+                        updates.put(field, FieldValue.delete());
+                    }
+                    batch.update(ref, updates);
+                    Map<String, Object> summary = EntrySummaries.project(mutation.fields, mutation.deletes);
+                    if (!summary.isEmpty()) {
+                        // merge: el resumen puede no existir aún si la entrada es anterior a la colección
+                        batch.set(summaryRef, summary, SetOptions.merge());
+                    }
+                    break;
+                case OP_DELETE:
+                    batch.delete(ref);
+                    batch.delete(summaryRef);
+                    break;
+            }
+        }
+
+        return batch;
+    }
+
+    /**
+     * Espera la confirmación del lote y saca sus filas de la cola. Devuelve false si se venció
+     * el plazo: el lote queda vigilado (ver watch). Lanza el error si Firestore lo rechazó.
+     */
+    private boolean awaitCommit(List<Pending> batchItems, Task<Void> commit, long deadline) throws Exception {
+        try {
+            Tasks.await(commit, Math.max(0, deadline - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+        } catch (TimeoutException e) {
+            watch(batchItems, commit);
+            return false;
+        }
+        settle(batchItems);
+        return true;
+    }
+
+    /**
+     * Sin red Firestore no confirma, pero el lote ya está en su cola y se envía al reconectar.
+     * Reenviarlo en cada backoff apilaría copias: se espera el resultado de la tarea original
+     * y solo un error real vuelve a pasar por los reintentos.
+     */
+    private void watch(List<Pending> batchItems, Task<Void> commit) {
+        for (Pending pending : batchItems) {
+            inFlight.put(pending.entryId, pending.version);
+        }
+        postpone(batchItems);
+        commit.addOnCompleteListener(worker, task -> {
+            for (Pending pending : batchItems) {
+                inFlight.remove(pending.entryId, pending.version);
+            }
+            if (task.isSuccessful()) {
+                settle(batchItems);
+            } else {
+                retryOneByOne(batchItems, task.getException());
+            }
+            // Puede haber versiones nuevas de estas filas esperando
+            scheduleDrain(0);
+        });
+    }
+
+    /**
+     * Aleja el próximo intento de filas vigiladas sin contarlo como fallo. Si el proceso muere
+     * con el lote sin confirmar, se reenvía una vez pasado MAX_BACKOFF_MS en el siguiente arranque.
+     */
+    private void postpone(List<Pending> watched) {
+        if (watched.isEmpty()) {
+            return;
+        }
+        ContentValues values = new ContentValues();
+        values.put(COL_NEXT_ATTEMPT_AT, System.currentTimeMillis() + MAX_BACKOFF_MS);
+        SQLiteDatabase sqlite = database.getWritableDatabase();
+        for (Pending pending : watched) {
+            sqlite.update(TABLE_OUTBOX, values, COL_ENTRY_ID + " = ? AND " + COL_VERSION + " = ?",
+                    new String[]{pending.entryId, String.valueOf(pending.version)});
+        }
+    }
+
+    private void settle(List<Pending> batchItems) {
+        for (Pending pending : batchItems) {
+            removeIfUnchanged(pending);
+        }
+        notifySettled(batchItems);
+    }
+
+    private void notifySettled(List<Pending> settled) {
+        if (listeners.isEmpty()) {
+            return;
+        }
+        List<String> entryIds = new ArrayList<>(settled.size());
+        for (Pending pending : settled) {
+            entryIds.add(pending.entryId);
+        }
+        for (Listener listener : listeners) {
+            listener.onSettled(entryIds);
+        }
+    }
+
+    private void handleFailure(Pending pending, Exception e) {
+        if (isPermanent(e)) {
+            // Reintentar no lo va a arreglar (p. ej. sin permisos o documento inexistente)
+            Log.w(TAG, "Descartando " + pending.mutation.op + " de " + pending.entryId, e);
+            removeIfUnchanged(pending);
+            notifySettled(Collections.singletonList(pending));
+            return;
+        }
+
+        int attempts = pending.attempts + 1;
+        long backoff = Math.min(MAX_BACKOFF_MS, BASE_BACKOFF_MS << Math.min(attempts - 1, 20));
+        long delay = backoff / 2 + (long) (jitter.nextDouble() * backoff / 2);
+
+        ContentValues values = new ContentValues();
+        values.put(COL_ATTEMPTS, attempts);
+        values.put(COL_NEXT_ATTEMPT_AT, System.currentTimeMillis() + delay);
+        database.getWritableDatabase().update(TABLE_OUTBOX, values,
+                COL_ENTRY_ID + " = ? AND " + COL_VERSION + " = ?",
+                new String[]{pending.entryId, String.valueOf(pending.version)});
+        Log.d(TAG, "Reintento " + attempts + " de " + pending.entryId + " en " + delay + " ms: " + e.getMessage());
+    }
+
+    private static boolean isPermanent(Exception e) {
+        if (!(e instanceof FirebaseFirestoreException)) {
+            return false;
+        }
+        switch (((FirebaseFirestoreException) e).getCode()) {
+            case INVALID_ARGUMENT:
+            case NOT_FOUND:
+            case ALREADY_EXISTS:
+            case PERMISSION_DENIED:
+            case FAILED_PRECONDITION:
+            case OUT_OF_RANGE:
+            case UNIMPLEMENTED:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    private void scheduleNextDue(String userId) {
+        try (Cursor cursor = database.getReadableDatabase().rawQuery(
+                "SELECT MIN(" + COL_NEXT_ATTEMPT_AT + ") FROM " + TABLE_OUTBOX
+                        + " WHERE " + COL_USER_ID + " = ?", new String[]{userId})) {
+            if (cursor.moveToFirst() && !cursor.isNull(0)) {
+                scheduleDrain(Math.max(0, cursor.getLong(0) - System.currentTimeMillis()));
+            }
+        }
+    }
+
+    private void resetBackoff() {
+        ContentValues values = new ContentValues();
+        values.put(COL_NEXT_ATTEMPT_AT, 0);
+        database.getWritableDatabase().update(TABLE_OUTBOX, values, null, null);
+    }
+
+    /**
+     * Borra la fila solo si nadie la modificó mientras se enviaba
+     */
+    private void removeIfUnchanged(Pending pending) {
+        database.getWritableDatabase().delete(TABLE_OUTBOX,
+                COL_ENTRY_ID + " = ? AND " + COL_VERSION + " = ?",
+                new String[]{pending.entryId, String.valueOf(pending.version)});
+    }
+
+    private List<Pending> loadDue(String userId, long now) {
+        List<Pending> due = new ArrayList<>();
+        try (Cursor cursor = database.getReadableDatabase().query(TABLE_OUTBOX, null,
+                COL_USER_ID + " = ? AND " + COL_NEXT_ATTEMPT_AT + " <= ?",
+                new String[]{userId, String.valueOf(now)},
+                null, null, COL_NEXT_ATTEMPT_AT + " ASC",
+                String.valueOf(MAX_BATCH * MAX_BATCHES_IN_FLIGHT))) {
+            while (cursor.moveToNext()) {
+                due.add(fromCursor(cursor));
+            }
+        }
+        return due;
+    }
+
+    /**
+     * Campos de todas las escrituras pendientes del usuario (referencias que aún no están en Firestore)
+     */
+    List<Map<String, Object>> loadPendingFields(String userId) {
+        List<Map<String, Object>> pending = new ArrayList<>();
+        try (Cursor cursor = database.getReadableDatabase().query(TABLE_OUTBOX, null,
+                COL_USER_ID + " = ?", new String[]{userId}, null, null, null)) {
+            while (cursor.moveToNext()) {
+                pending.add(fromCursor(cursor).mutation.fields);
+            }
+        }
+        return pending;
+    }
+
+    private Pending loadPending(SQLiteDatabase sqlite, String entryId) {
+        try (Cursor cursor = sqlite.query(TABLE_OUTBOX, null, COL_ENTRY_ID + " = ?",
+                new String[]{entryId}, null, null, null)) {
+            return cursor.moveToFirst() ? fromCursor(cursor) : null;
+        }
+    }
+
+    private static Pending fromCursor(Cursor cursor) {
+        Pending pending = new Pending();
+        pending.entryId = cursor.getString(cursor.getColumnIndexOrThrow(COL_ENTRY_ID));
+        pending.version = cursor.getLong(cursor.getColumnIndexOrThrow(COL_VERSION));
+        pending.attempts = cursor.getInt(cursor.getColumnIndexOrThrow(COL_ATTEMPTS));
+        pending.mutation = Mutation.fromJson(
+                cursor.getString(cursor.getColumnIndexOrThrow(COL_OP)),
+                cursor.getString(cursor.getColumnIndexOrThrow(COL_FIELDS)),
+                cursor.getString(cursor.getColumnIndexOrThrow(COL_DELETES)));
+        return pending;
+    }
+
+    private static String currentUserId() {
+        FirebaseUser user = FirebaseAuth.getInstance().getCurrentUser();
+        return user != null ? user.getUid() : null;
+    }
+
+    private static class Pending {
+        String entryId;
+        long version;
+        int attempts;
+        Mutation mutation;
+    }
+
+    /**
+     * Cambio pendiente sobre un documento: set completo, update parcial o borrado
+     */
+    static class Mutation {
+        final String op;
+        final Map<String, Object> fields;
+        final Set<String> deletes;
+
+        Mutation(String op, Map<String, Object> fields, Collection<String> deletes) {
+            this.op = op;
+            this.fields = new HashMap<>(fields);
+            this.deletes = new LinkedHashSet<>(deletes);
+        }
+
+        /**
+         * Resultado de aplicar "next" después de este cambio, como una sola escritura
+         */
+        Mutation mergeWith(Mutation next) {
+            if (!OP_UPDATE.equals(next.op)) {
+                // set y delete reemplazan todo lo anterior
+                return next;
+            }
+            if (OP_DELETE.equals(op)) {
+                // Editar una entrada ya borrada no tiene efecto
+                return this;
+            }
+
+            Map<String, Object> mergedFields = new HashMap<>(fields);
+            mergedFields.putAll(next.fields);
+            for (String field : next.deletes) {
+                mergedFields.remove(field);
+            }
+            if (OP_SET.equals(op)) {
+                return new Mutation(OP_SET, mergedFields, Collections.emptySet());
+            }
+
+            Set<String> mergedDeletes = new LinkedHashSet<>(deletes);
+            mergedDeletes.removeAll(next.fields.keySet());
+            mergedDeletes.addAll(next.deletes);
+            return new Mutation(OP_UPDATE, mergedFields, mergedDeletes);
+        }
+
+        String fieldsToJson() {
+            try {
+                JSONObject json = new JSONObject();
+                for (Map.Entry<String, Object> field : fields.entrySet()) {
+                    json.put(field.getKey(), field.getValue() != null ? field.getValue() : JSONObject.NULL);
+                }
+                return json.toString();
+            } catch (JSONException e) {
+                throw new IllegalArgumentException("Valor no serializable en la cola", e);
+            }
+        }
+
+        static Mutation fromJson(String op, String fieldsJson, String deletesJson) {
+            try {
+                Map<String, Object> fields = new HashMap<>();
+                JSONObject json = new JSONObject(fieldsJson != null ? fieldsJson : "{}");
+                Iterator<String> keys = json.keys();
+                while (keys.hasNext()) {
+                    String key = keys.next();
+                    Object value = json.get(key);
+                    fields.put(key, value == JSONObject.NULL ? null : value);
+                }
+
+                List<String> deletes = new ArrayList<>();
+                JSONArray array = new JSONArray(deletesJson != null ? deletesJson : "[]");
+                for (int i = 0; i < array.length(); i++) {
+                    deletes.add(array.getString(i));
+                }
+                return new Mutation(op, fields, deletes);
+            } catch (JSONException e) {
+                throw new IllegalStateException("Fila corrupta en la cola", e);
+            }
+        }
+    }
+}
@@ -0,0 +1,694 @@
+package com.example.chronicav1.data;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.util.Log;
+import android.util.LruCache;
+
+import com.example.chronicav1.models.Entry;
+import com.example.chronicav1.models.EntrySummary;
+import com.example.chronicav1.search.SearchIndex;
+import com.google.android.gms.tasks.Task;
+import com.google.android.gms.tasks.Tasks;
+import com.google.firebase.firestore.DocumentChange;
+import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.FirebaseFirestore;
+import com.google.firebase.firestore.ListenerRegistration;
+import com.google.firebase.firestore.Query;
+import com.google.firebase.firestore.QuerySnapshot;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Repositorio compartido de entradas del usuario
+ * La lista y el mapa solo necesitan resúmenes (EntrySummary), así que se escucha la colección
+ * de resúmenes; la entrada completa se pide con loadEntry al abrir el detalle o la edición.
+ * Solo la primera página tiene un addSnapshotListener (uno por usuario) cuyos DocumentChange
+ * (ADDED/MODIFIED/REMOVED) se aplican a un índice en memoria ordenado por fecha. Las páginas
+ * siguientes se piden una vez con get() y startAfter(último timestamp), así recorrer n entradas
+ * cuesta n lecturas; sus cambios locales llegan por los avisos de EntryOutbox. Las pantallas
+ * observan ese índice, así volver a una pantalla no cuesta lecturas de red.
+ * Cada snapshot se guarda en EntryDatabase; al arrancar se pinta primero lo que hay
+ * en disco y luego se reconcilia con Firestore en segundo plano.
+ * El índice de búsqueda no depende de la ventana paginada: con la primera búsqueda se llena
+ * con todos los resúmenes guardados en disco y un listener sin límite lo mantiene al día.
+ * Ese segundo listener solo vive mientras hay una consulta escrita (ver endSearch); volver
+ * a buscar dentro de los 30 min siguientes solo cuesta las lecturas de lo que cambió.
+ */
+public class EntryRepository {
+
+    public static final int PAGE_SIZE = 20;
+
+    // Entradas completas abiertas hace poco; las demás salen de disco
+    private static final int ENTRY_CACHE_SIZE = 32;
+
+    private static final String TAG = "EntryRepository";
+
+    public interface Observer {
+        void onEntriesChanged(List<EntrySummary> entries);
+    }
+
+    public interface ErrorListener {
+        void onError(Exception e);
+    }
+
+    // Más recientes primero; el id desempata entradas con el mismo timestamp
+    private static final Comparator<EntrySummary> ORDER = (a, b) -> {
+        int byTime = Long.compare(b.getTimestamp(), a.getTimestamp());
+        return byTime != 0 ? byTime : a.getId().compareTo(b.getId());
+    };
+
+    private static EntryRepository instance;
+
+    private final String userId;
+    private final FirebaseFirestore db;
+    private final EntryDatabase database;
+    private final ExecutorService diskExecutor = Executors.newSingleThreadExecutor();
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    private final List<EntrySummary> index = new ArrayList<>();
+    private final Map<String, EntrySummary> byId = new HashMap<>();
+    private final SearchIndex searchIndex = new SearchIndex();
+    private final LruCache<String, Entry> entryCache = new LruCache<>(ENTRY_CACHE_SIZE);
+    private final List<Observer> observers = new CopyOnWriteArrayList<>();
+    private ErrorListener errorListener;
+
+    private final EntryOutbox outbox;
+    // Una edición local encolada deja vieja la copia completa en memoria (la de disco la borra la cola)
+    private final EntryOutbox.Listener outboxListener = new EntryOutbox.Listener() {
+        @Override
+        public void onEnqueued(Collection<String> entryIds) {
+            for (String entryId : entryIds) {
+                entryCache.remove(entryId);
+            }
+        }
+
+        @Override
+        public void onDeleteEnqueued(Collection<String> entryIds) {
+            List<String> ids = new ArrayList<>(entryIds);
+            mainHandler.post(() -> {
+                if (removeEntries(ids) && loaded) {
+                    notifyObservers();
+                }
+            });
+        }
+
+        @Override
+        public void onSettled(Collection<String> entryIds) {
+            List<String> ids = new ArrayList<>(entryIds);
+            mainHandler.post(() -> refreshOutsideWindow(ids));
+        }
+    };
+
+    private ListenerRegistration registration;
+    private ListenerRegistration searchRegistration;
+    private Runnable searchIndexListener;
+    private boolean searchLoaded = false;
+    private boolean awaitingFirstSnapshot = false;
+    private boolean loaded = false;
+    private boolean endReached = false;
+    private boolean diskLoadStarted = false;
+    private boolean loadingPage = false;
+    private boolean pagesLoaded = false;
+    // Ids del último snapshot de la primera página (las únicas que se escuchan en vivo)
+    private final Set<String> liveIds = new HashSet<>();
+
+    private EntryRepository(Context context, String userId) {
+        this.userId = userId;
+        this.db = FirebaseFirestore.getInstance();
+        this.database = EntryDatabase.getInstance(context);
+        this.outbox = EntryOutbox.getInstance(context);
+        outbox.addListener(outboxListener);
+        // Enviar lo que quedó pendiente de una sesión anterior
+        outbox.requestDrain();
+        BlobUploader.getInstance(context).requestDrain();
+        // Entradas anteriores a los resúmenes: los que se creen llegan por el listener
+        EntrySummaries.backfill(context, userId);
+        // Medios que ya no usa ninguna entrada; corre como mucho una vez al día
+        MediaCollector.getInstance(context).requestRun(userId);
+    }
+
+    public static synchronized EntryRepository getInstance(Context context, String userId) {
+        if (instance == null || !instance.userId.equals(userId)) {
+            if (instance != null) {
+                instance.close();
+            }
+            instance = new EntryRepository(context, userId);
+        }
+        return instance;
+    }
+
+    /**
+     * Quita el listener y descarta el índice (por ejemplo al cerrar sesión)
+     */
+    public static synchronized void reset() {
+        if (instance != null) {
+            instance.close();
+            instance = null;
+        }
+    }
+
+    /**
+     * Registra un observador; recibe el índice actual de inmediato si ya hay datos
+     */
+    public void addObserver(Observer observer) {
+        observers.add(observer);
+        if (registration == null) {
+            attach();
+        } else if (loaded) {
+            observer.onEntriesChanged(getEntries());
+        }
+    }
+
+    public void removeObserver(Observer observer) {
+        observers.remove(observer);
+    }
+
+    public void setErrorListener(ErrorListener errorListener) {
+        this.errorListener = errorListener;
+    }
+
+    public List<EntrySummary> getEntries() {
+        return Collections.unmodifiableList(new ArrayList<>(index));
+    }
+
+    /**
+     * Resumen conocido de la entrada: la ventana paginada o, si ya se sincronizó, el índice
+     * de búsqueda (que cubre las entradas abiertas desde el mapa o la búsqueda). Null si no se sabe.
+     */
+    public EntrySummary getSummary(String entryId) {
+        EntrySummary summary = byId.get(entryId);
+        if (summary == null && searchLoaded) {
+            summary = searchIndex.get(entryId);
+        }
+        return summary;
+    }
+
+    /**
+     * Entrada completa (contenido, audio, imagen) por id; devuelve null si no existe.
+     * Lo usan las pantallas que reciben solo el id en el intent. Busca primero en memoria, luego
+     * en disco y por último en Firestore (sin red responde su caché). Una copia solo sirve si
+     * coincide con la versión (updatedAt) del resumen; sin resumen no se puede verificar y se
+     * vuelve a leer el documento. Si esa lectura falla se usa la última copia guardada.
+     */
+    public Task<Entry> loadEntry(String entryId) {
+        Entry cached = entryCache.get(entryId);
+        if (isCurrent(cached)) {
+            return Tasks.forResult(cached);
+        }
+
+        return Tasks.call(diskExecutor, () -> database.loadEntry(userId, entryId))
+                .continueWithTask(task -> {
+                    Entry stored = task.isSuccessful() ? task.getResult() : null;
+                    if (isCurrent(stored)) {
+                        entryCache.put(entryId, stored);
+                        return Tasks.forResult(stored);
+                    }
+                    Entry fallback = stored != null ? stored : cached;
+                    return fetchEntry(entryId).continueWith(fetch -> {
+                        if (fetch.isSuccessful() || fallback == null) {
+                            return fetch.getResult();
+                        }
+                        Log.w(TAG, "Sin acceso al documento " + entryId + ", se usa la copia guardada",
+                                fetch.getException());
+                        return fallback;
+                    });
+                });
+    }
+
+    private Task<Entry> fetchEntry(String entryId) {
+        return db.collection("entries").document(entryId).get()
+                .continueWith(task -> {
+                    DocumentSnapshot document = task.getResult();
+                    if (document == null || !document.exists()) {
+                        entryCache.remove(entryId);
+                        return null;
+                    }
+                    Entry entry = document.toObject(Entry.class);
+                    entry.setId(document.getId());
+                    entryCache.put(entryId, entry);
+                    diskExecutor.execute(() -> database.saveEntry(entry));
+                    return entry;
+                });
+    }
+
+    private boolean isCurrent(Entry entry) {
+        if (entry == null) {
+            return false;
+        }
+        EntrySummary summary = getSummary(entry.getId());
+        return summary != null && summary.getUpdatedAt() == entry.getUpdatedAt();
+    }
+
+    /**
+     * Índice de búsqueda sobre todas las entradas del usuario (no solo las páginas cargadas).
+     * Se llena recién con prepareSearch.
+     */
+    public SearchIndex getSearchIndex() {
+        return searchIndex;
+    }
+
+    /**
+     * Empieza a llenar el índice de búsqueda si aún no se hizo; llamarla varias veces no cuesta nada.
+     * Se llama con la primera letra de una consulta, nunca al abrir la lista.
+     */
+    public void prepareSearch() {
+        if (searchRegistration != null) {
+            return;
+        }
+        // Lo que hay en disco responde la primera búsqueda mientras llega el listener
+        diskExecutor.execute(() -> {
+            List<EntrySummary> cached = database.loadSummaries(userId, 0);
+            mainHandler.post(() -> {
+                if (searchLoaded || searchRegistration == null || cached.isEmpty()) {
+                    return;
+                }
+                searchIndex.sync(cached);
+                notifySearchIndexChanged();
+            });
+        });
+
+        searchRegistration = db.collection(EntrySummaries.COLLECTION)
+                .whereEqualTo("userId", userId)
+                .addSnapshotListener((snapshots, error) -> {
+                    if (error != null || snapshots == null) {
+                        // El índice sigue con lo que tenía; la lista ya informa los errores de carga
+                        return;
+                    }
+                    boolean fromCache = snapshots.getMetadata().isFromCache();
+                    if (!searchLoaded) {
+                        if (fromCache && snapshots.isEmpty()) {
+                            // Caché de Firestore vacía: esperar al servidor
+                            return;
+                        }
+                        searchLoaded = true;
+                        List<EntrySummary> all = new ArrayList<>();
+                        for (DocumentSnapshot document : snapshots.getDocuments()) {
+                            all.add(toSummary(document));
+                        }
+                        // Solo se reindexan las entradas nuevas o con contenido distinto
+                        searchIndex.sync(all);
+                        Collections.sort(all, ORDER);
+                        persistWindow(all, fromCache, true, Long.MAX_VALUE);
+                    } else {
+                        applySearchChanges(snapshots.getDocumentChanges());
+                    }
+                    notifySearchIndexChanged();
+                });
+    }
+
+    /**
+     * Aviso en el hilo principal cada vez que cambia el índice de búsqueda
+     */
+    public void setSearchIndexListener(Runnable searchIndexListener) {
+        this.searchIndexListener = searchIndexListener;
+    }
+
+    public boolean isLoaded() {
+        return loaded;
+    }
+
+    /**
+     * Pide la página siguiente a la entrada más antigua conocida (una sola lectura por entrada)
+     */
+    public void loadMore() {
+        if (endReached || awaitingFirstSnapshot || loadingPage || index.isEmpty()) {
+            return;
+        }
+        loadingPage = true;
+        long before = index.get(index.size() - 1).getTimestamp();
+
+        pageQuery()
+                .startAfter(before)
+                .limit(PAGE_SIZE)
+                .get()
+                .addOnCompleteListener(task -> {
+                    loadingPage = false;
+                    if (registration == null) {
+                        // Repositorio cerrado mientras llegaba la página
+                        return;
+                    }
+                    if (!task.isSuccessful()) {
+                        if (errorListener != null) {
+                            errorListener.onError(task.getException());
+                        }
+                        return;
+                    }
+                    appendPage(task.getResult(), before);
+                    notifyObservers();
+                });
+    }
+
+    private Query pageQuery() {
+        return db.collection(EntrySummaries.COLLECTION)
+                .whereEqualTo("userId", userId)
+                .orderBy("timestamp", Query.Direction.DESCENDING);
+    }
+
+    private void attach() {
+        detach();
+        awaitingFirstSnapshot = true;
+        loadFromDisk();
+
+        // La ventana en vivo queda fija en la primera página; las demás no se vuelven a leer
+        Query query = pageQuery().limit(PAGE_SIZE);
+
+        registration = query.addSnapshotListener((snapshots, error) -> {
+            if (error != null) {
+                awaitingFirstSnapshot = false;
+                if (errorListener != null) {
+                    errorListener.onError(error);
+                }
+                return;
+            }
+            if (snapshots == null) {
+                return;
+            }
+
+            boolean fromCache = snapshots.getMetadata().isFromCache();
+            if (awaitingFirstSnapshot && fromCache && snapshots.isEmpty() && !index.isEmpty()) {
+                // La caché de Firestore está vacía pero ya se pintó desde disco: esperar al servidor
+                return;
+            }
+
+            boolean complete = snapshots.size() < PAGE_SIZE;
+            if (awaitingFirstSnapshot) {
+                // Primer snapshot del listener: reconstruir el índice completo
+                awaitingFirstSnapshot = false;
+                rebuild(snapshots, fromCache, complete);
+            } else {
+                List<DocumentSnapshot> documents = snapshots.getDocuments();
+                EntrySummary oldestLive = complete ? null : toSummary(documents.get(documents.size() - 1));
+                applyChanges(snapshots.getDocumentChanges(), oldestLive);
+            }
+
+            liveIds.clear();
+            for (DocumentSnapshot document : snapshots.getDocuments()) {
+                liveIds.add(document.getId());
+            }
+            if (complete && !fromCache) {
+                // La primera página es todo el diario: lo demás que quede en memoria ya no existe
+                List<String> missing = new ArrayList<>();
+                for (EntrySummary entry : index) {
+                    if (!liveIds.contains(entry.getId())) {
+                        missing.add(entry.getId());
+                    }
+                }
+                removeEntries(missing);
+            }
+
+            loaded = true;
+            // Con páginas pedidas, el final lo sabe la última página (salvo que ya quepa todo en la primera)
+            endReached = complete || (pagesLoaded && endReached);
+            notifyObservers();
+        });
+    }
+
+    private void detach() {
+        if (registration != null) {
+            registration.remove();
+            registration = null;
+        }
+    }
+
+    /**
+     * Quita el listener de búsqueda (consulta vacía o pantalla en segundo plano). El índice
+     * conserva lo que tenía para responder al instante la próxima búsqueda, pero ya no sirve
+     * para validar copias (ver getSummary) hasta que prepareSearch lo vuelva a sincronizar.
+     */
+    public void endSearch() {
+        if (searchRegistration != null) {
+            searchRegistration.remove();
+            searchRegistration = null;
+        }
+        searchLoaded = false;
+    }
+
+    private void close() {
+        detach();
+        outbox.removeListener(outboxListener);
+        endSearch();
+    }
+
+    /**
+     * Cambios del listener sin límite: aquí REMOVED sí es un borrado
+     */
+    private void applySearchChanges(List<DocumentChange> changes) {
+        List<EntrySummary> upserts = new ArrayList<>();
+        List<String> deletedIds = new ArrayList<>();
+        for (DocumentChange change : changes) {
+            EntrySummary entry = toSummary(change.getDocument());
+            if (change.getType() == DocumentChange.Type.REMOVED) {
+                searchIndex.remove(entry.getId());
+                entryCache.remove(entry.getId());
+                deletedIds.add(entry.getId());
+            } else {
+                searchIndex.put(entry);
+                upserts.add(entry);
+            }
+        }
+        if (!upserts.isEmpty() || !deletedIds.isEmpty()) {
+            diskExecutor.execute(() -> database.apply(upserts, deletedIds));
+        }
+    }
+
+    private void notifySearchIndexChanged() {
+        if (searchIndexListener != null) {
+            searchIndexListener.run();
+        }
+    }
+
+    /**
+     * Pinta la última copia guardada mientras llega el primer snapshot
+     */
+    private void loadFromDisk() {
+        if (diskLoadStarted) {
+            return;
+        }
+        diskLoadStarted = true;
+        long startMs = SystemClock.elapsedRealtime();
+
+        diskExecutor.execute(() -> {
+            List<EntrySummary> cached = database.loadSummaries(userId, PAGE_SIZE);
+            Log.d(TAG, "Desde disco: " + cached.size() + " resúmenes en "
+                    + (SystemClock.elapsedRealtime() - startMs) + " ms");
+            mainHandler.post(() -> {
+                // Si Firestore ya respondió, sus datos mandan
+                if (!awaitingFirstSnapshot || loaded || cached.isEmpty()) {
+                    return;
+                }
+                for (EntrySummary entry : cached) {
+                    byId.put(entry.getId(), entry);
+                    index.add(entry);
+                }
+                Collections.sort(index, ORDER);
+
+                loaded = true;
+                notifyObservers();
+            });
+        });
+    }
+
+    private void rebuild(QuerySnapshot snapshots, boolean fromCache, boolean complete) {
+        index.clear();
+        byId.clear();
+        for (DocumentSnapshot document : snapshots.getDocuments()) {
+            EntrySummary entry = toSummary(document);
+            byId.put(entry.getId(), entry);
+            index.add(entry);
+        }
+        Collections.sort(index, ORDER);
+
+        persistWindow(new ArrayList<>(index), fromCache, complete, Long.MAX_VALUE);
+    }
+
+    /**
+     * Cambios de la primera página. oldestLive es su entrada más antigua si la página está llena:
+     * REMOVED de algo más antiguo significa que salió por abajo al entrar una más reciente.
+     * Esa entrada sigue existiendo y queda en el índice como parte de la segunda página.
+     */
+    private void applyChanges(List<DocumentChange> changes, EntrySummary oldestLive) {
+        List<EntrySummary> upserts = new ArrayList<>();
+        List<String> deletedIds = new ArrayList<>();
+        for (DocumentChange change : changes) {
+            EntrySummary entry = toSummary(change.getDocument());
+            switch (change.getType()) {
+                case ADDED:
+                case MODIFIED:
+                    removeFromIndex(entry.getId());
+                    insertInOrder(entry);
+                    upserts.add(entry);
+                    break;
+                case REMOVED:
+                    if (oldestLive != null && ORDER.compare(entry, oldestLive) > 0) {
+                        break;
+                    }
+                    removeFromIndex(entry.getId());
+                    entryCache.remove(entry.getId());
+                    deletedIds.add(entry.getId());
+                    break;
+            }
+        }
+        if (!upserts.isEmpty() || !deletedIds.isEmpty()) {
+            diskExecutor.execute(() -> database.apply(upserts, deletedIds));
+        }
+    }
+
+    /**
+     * Agrega una página pedida con startAfter(before). Lo que había en memoria dentro del rango
+     * que cubre la página y no vino en ella ya no existe.
+     */
+    private void appendPage(QuerySnapshot snapshots, long before) {
+        boolean fromCache = snapshots.getMetadata().isFromCache();
+        List<EntrySummary> page = new ArrayList<>();
+        Set<String> pageIds = new HashSet<>();
+        for (DocumentSnapshot document : snapshots.getDocuments()) {
+            EntrySummary entry = toSummary(document);
+            page.add(entry);
+            pageIds.add(entry.getId());
+        }
+        boolean complete = page.size() < PAGE_SIZE;
+
+        if (!fromCache) {
+            long fromTimestamp = complete ? Long.MIN_VALUE : page.get(page.size() - 1).getTimestamp() + 1;
+            List<String> missing = new ArrayList<>();
+            for (EntrySummary entry : index) {
+                long timestamp = entry.getTimestamp();
+                if (timestamp >= fromTimestamp && timestamp < before && !pageIds.contains(entry.getId())) {
+                    missing.add(entry.getId());
+                }
+            }
+            for (String entryId : missing) {
+                removeFromIndex(entryId);
+                entryCache.remove(entryId);
+            }
+        }
+        for (EntrySummary entry : page) {
+            removeFromIndex(entry.getId());
+            insertInOrder(entry);
+        }
+
+        pagesLoaded = true;
+        endReached = complete;
+        persistWindow(page, fromCache, complete, before);
+    }
+
+    /**
+     * Quita entradas borradas de memoria y disco; sirve para los borrados locales recién encolados,
+     * que así desaparecen ya de la lista aunque no estén en la primera página
+     */
+    private boolean removeEntries(Collection<String> entryIds) {
+        boolean changed = false;
+        for (String entryId : entryIds) {
+            changed |= byId.containsKey(entryId);
+            removeFromIndex(entryId);
+            entryCache.remove(entryId);
+        }
+        if (!entryIds.isEmpty()) {
+            diskExecutor.execute(() -> database.apply(Collections.emptyList(), entryIds));
+        }
+        return changed;
+    }
+
+    /**
+     * Cambios confirmados de entradas fuera de la primera página: ningún listener los trae,
+     * así que se vuelve a leer su resumen (una lectura por entrada editada)
+     */
+    private void refreshOutsideWindow(Collection<String> entryIds) {
+        for (String entryId : entryIds) {
+            if (!byId.containsKey(entryId) || liveIds.contains(entryId)) {
+                continue;
+            }
+            db.collection(EntrySummaries.COLLECTION).document(entryId).get()
+                    .addOnSuccessListener(document -> {
+                        if (registration == null || !byId.containsKey(entryId)) {
+                            return;
+                        }
+                        removeFromIndex(entryId);
+                        if (document.exists()) {
+                            EntrySummary entry = toSummary(document);
+                            insertInOrder(entry);
+                            diskExecutor.execute(() -> database.apply(
+                                    Collections.singletonList(entry), Collections.emptyList()));
+                        } else {
+                            diskExecutor.execute(() -> database.apply(
+                                    Collections.emptyList(), Collections.singletonList(entryId)));
+                        }
+                        notifyObservers();
+                    });
+        }
+    }
+
+    /**
+     * Guarda la ventana recibida y borra de disco lo que Firestore ya no tiene.
+     * Solo se reconcilian borrados con datos del servidor y dentro del rango que cubre la ventana
+     * (timestamps menores que before).
+     */
+    private void persistWindow(List<EntrySummary> window, boolean fromCache, boolean complete, long before) {
+        diskExecutor.execute(() -> {
+            List<String> deletedIds = new ArrayList<>();
+            if (!fromCache) {
+                Set<String> windowIds = new HashSet<>();
+                for (EntrySummary entry : window) {
+                    windowIds.add(entry.getId());
+                }
+                // Sin ventana completa solo se sabe qué hay por encima de la entrada más antigua recibida
+                long fromTimestamp = complete || window.isEmpty()
+                        ? Long.MIN_VALUE
+                        : window.get(window.size() - 1).getTimestamp() + 1;
+                for (String storedId : database.loadIdsBetween(userId, fromTimestamp, before)) {
+                    if (!windowIds.contains(storedId)) {
+                        deletedIds.add(storedId);
+                    }
+                }
+            }
+            database.apply(window, deletedIds);
+        });
+    }
+
+    private void insertInOrder(EntrySummary entry) {
+        int position = Collections.binarySearch(index, entry, ORDER);
+        if (position < 0) {
+            position = -position - 1;
+        }
+        index.add(position, entry);
+        byId.put(entry.getId(), entry);
+    }
+
+    private void removeFromIndex(String entryId) {
+        EntrySummary previous = byId.remove(entryId);
+        if (previous == null) {
+            return;
+        }
+        int position = Collections.binarySearch(index, previous, ORDER);
+        if (position >= 0) {
+            index.remove(position);
+        }
+    }
+
+    private EntrySummary toSummary(DocumentSnapshot document) {
+        EntrySummary entry = document.toObject(EntrySummary.class);
+        entry.setId(document.getId());
+        return entry;
+    }
+
+    private void notifyObservers() {
+        List<EntrySummary> entries = getEntries();
+        for (Observer observer : observers) {
+            observer.onEntriesChanged(entries);
+        }
+    }
+}
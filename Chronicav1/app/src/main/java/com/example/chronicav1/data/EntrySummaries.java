@@ -0,0 +1,168 @@
+package com.example.chronicav1.data;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.util.Log;
+
+import com.example.chronicav1.maps.GeoHash;
+import com.example.chronicav1.search.SearchIndex;
+import com.google.android.gms.tasks.Task;
+import com.google.android.gms.tasks.Tasks;
+import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.FieldValue;
+import com.google.firebase.firestore.FirebaseFirestore;
+import com.google.firebase.firestore.QuerySnapshot;
+import com.google.firebase.firestore.WriteBatch;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Colección "entrySummaries": proyección liviana de cada entrada para la lista y el mapa
+ * EntryOutbox la escribe en el mismo WriteBatch que la entrada, así nunca se desfasan.
+ * Las entradas anteriores a la colección se completan una vez por usuario con backfill().
+ */
+public final class EntrySummaries {
+
+    public static final String COLLECTION = "entrySummaries";
+
+    private static final String TAG = "EntrySummaries";
+    private static final String PREFS_NAME = "entry_summaries";
+    private static final String KEY_BACKFILL_DONE = "backfill_";
+
+    private static final int PREVIEW_LENGTH = 100;
+    // Palabras distintas del contenido que se guardan para la búsqueda
+    private static final int MAX_TERMS = 400;
+    // Límite de operaciones por WriteBatch en Firestore
+    private static final int MAX_BATCH = 500;
+
+    // Campos que pasan tal cual de la entrada al resumen
+    private static final String[] COPIED_FIELDS = {
+            "userId", "title", "date", "location", "imageHash", "cardHash", "thumbHash",
+            "imageWidth", "imageHeight",
+            "latitude", "longitude", "geohash", "timestamp", "updatedAt"
+    };
+
+    private static final ExecutorService executor = Executors.newSingleThreadExecutor();
+    private static final Map<String, Task<Void>> backfills = new HashMap<>();
+
+    private EntrySummaries() {
+    }
+
+    /**
+     * Campos del resumen que cambian cuando la entrada recibe estos campos.
+     * Los campos borrados de la entrada también se borran del resumen (usar con merge).
+     */
+    static Map<String, Object> project(Map<String, Object> entryFields, Collection<String> deletedFields) {
+        Map<String, Object> summary = new HashMap<>();
+        for (String field : COPIED_FIELDS) {
+            if (entryFields.containsKey(field)) {
+                summary.put(field, entryFields.get(field));
+            } else if (deletedFields.contains(field)) {
+                summary.put(field, FieldValue.delete());
+            }
+        }
+
+        if (entryFields.containsKey("content")) {
+            Object content = entryFields.get("content");
+            String text = content instanceof String ? (String) content : "";
+            summary.put("preview", text.length() > PREVIEW_LENGTH
+                    ? text.substring(0, PREVIEW_LENGTH) + "..."
+                    : text);
+            summary.put("terms", SearchIndex.distinctTerms(text, MAX_TERMS));
+        }
+
+        // Entradas anteriores al campo geohash: calcularlo para que el mapa las encuentre
+        Object latitude = entryFields.get("latitude");
+        Object longitude = entryFields.get("longitude");
+        if (!entryFields.containsKey("geohash") && latitude instanceof Number && longitude instanceof Number) {
+            summary.put("geohash", GeoHash.forEntry(((Number) latitude).doubleValue(),
+                    ((Number) longitude).doubleValue()));
+        }
+
+        // La imagen por hash manda; el Base64 heredado solo se marca, nunca se copia
+        if (isNonEmpty(entryFields.get("imageHash"))) {
+            summary.put("legacyImage", false);
+        } else if (isNonEmpty(entryFields.get("imageBase64"))) {
+            summary.put("legacyImage", true);
+        } else if (entryFields.containsKey("imageHash") || deletedFields.contains("imageBase64")) {
+            summary.put("legacyImage", false);
+        }
+        return summary;
+    }
+
+    /**
+     * Crea los resúmenes que falten, una sola vez por usuario.
+     * Es la única lectura de entradas completas para la lista; luego todo sale de los resúmenes.
+     */
+    public static synchronized Task<Void> backfill(Context context, String userId) {
+        SharedPreferences prefs = context.getApplicationContext()
+                .getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+        if (prefs.getBoolean(KEY_BACKFILL_DONE + userId, false)) {
+            return Tasks.forResult(null);
+        }
+        Task<Void> running = backfills.get(userId);
+        if (running != null && (!running.isComplete() || running.isSuccessful())) {
+            return running;
+        }
+
+        FirebaseFirestore db = FirebaseFirestore.getInstance();
+        Task<QuerySnapshot> entries = db.collection("entries")
+                .whereEqualTo("userId", userId)
+                .get();
+        Task<QuerySnapshot> summaries = db.collection(COLLECTION)
+                .whereEqualTo("userId", userId)
+                .get();
+
+        Task<Void> task = Tasks.whenAllSuccess(entries, summaries)
+                .continueWithTask(executor, ignored -> {
+                    Set<String> complete = new HashSet<>();
+                    for (DocumentSnapshot document : summaries.getResult().getDocuments()) {
+                        // Un update anterior pudo dejar un resumen parcial (sin timestamp no se lista)
+                        if (document.contains("timestamp")) {
+                            complete.add(document.getId());
+                        }
+                    }
+
+                    List<Task<Void>> commits = new ArrayList<>();
+                    WriteBatch batch = db.batch();
+                    int inBatch = 0;
+                    int created = 0;
+                    for (DocumentSnapshot document : entries.getResult().getDocuments()) {
+                        if (complete.contains(document.getId())) {
+                            continue;
+                        }
+                        batch.set(db.collection(COLLECTION).document(document.getId()),
+                                project(document.getData(), Collections.emptySet()));
+                        created++;
+                        if (++inBatch == MAX_BATCH) {
+                            commits.add(batch.commit());
+                            batch = db.batch();
+                            inBatch = 0;
+                        }
+                    }
+                    if (inBatch > 0) {
+                        commits.add(batch.commit());
+                    }
+                    Log.d(TAG, "Resúmenes creados: " + created);
+                    return Tasks.whenAll(commits);
+                })
+                .addOnSuccessListener(aVoid ->
+                        prefs.edit().putBoolean(KEY_BACKFILL_DONE + userId, true).apply())
+                .addOnFailureListener(e -> Log.w(TAG, "No se pudieron crear los resúmenes", e));
+        backfills.put(userId, task);
+        return task;
+    }
+
+    private static boolean isNonEmpty(Object value) {
+        return value instanceof String && !((String) value).isEmpty();
+    }
+}
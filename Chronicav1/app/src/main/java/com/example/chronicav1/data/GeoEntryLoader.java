@@ -0,0 +1,236 @@
+package com.example.chronicav1.data;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import com.example.chronicav1.maps.GeoHash;
+import com.example.chronicav1.models.EntrySummary;
+import com.google.android.gms.maps.model.LatLngBounds;
+import com.google.android.gms.tasks.Task;
+import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.FirebaseFirestore;
+import com.google.firebase.firestore.Query;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Carga para el mapa solo los resúmenes de las celdas geohash visibles
+ * Cada celda se pide una vez con un rango sobre el campo "geohash" y queda en caché
+ * mientras la pantalla vive; así las lecturas dependen del área vista y no del total.
+ * Las consultas van a la colección de resúmenes: el mapa no necesita el contenido ni las imágenes.
+ * Las celdas no se escuchan; los borrados y ediciones hechos en el dispositivo llegan por los
+ * avisos de EntryOutbox, así una entrada borrada desde el detalle no deja su marcador.
+ */
+public class GeoEntryLoader {
+
+    public interface Listener {
+        void onEntriesLoaded(Collection<EntrySummary> entries);
+    }
+
+    private static final String TAG = "GeoEntryLoader";
+
+    // Celdas por consulta de cámara; con más, la vista es demasiado amplia para filtrar
+    private static final int MAX_CELLS = 8;
+    // Con prefijos de un carácter (~5000 km) filtrar ya no ahorra casi nada
+    private static final int MIN_PRECISION = 2;
+
+    private final Context appContext;
+    private final String userId;
+    private final Listener listener;
+    private final FirebaseFirestore db;
+
+    private final Map<String, EntrySummary> loaded = new HashMap<>();
+    private final Set<String> fetchedPrefixes = new HashSet<>();
+    private final Set<String> pendingPrefixes = new HashSet<>();
+    private boolean everythingFetched = false;
+    private boolean waitingForBackfill = false;
+    private boolean closed = false;
+
+    private final EntryOutbox outbox;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final EntryOutbox.Listener outboxListener = new EntryOutbox.Listener() {
+        @Override
+        public void onDeleteEnqueued(Collection<String> entryIds) {
+            List<String> ids = new ArrayList<>(entryIds);
+            mainHandler.post(() -> forget(ids));
+        }
+
+        @Override
+        public void onSettled(Collection<String> entryIds) {
+            List<String> ids = new ArrayList<>(entryIds);
+            mainHandler.post(() -> refresh(ids));
+        }
+    };
+
+    public GeoEntryLoader(Context context, String userId, Listener listener) {
+        this.appContext = context.getApplicationContext();
+        this.userId = userId;
+        this.listener = listener;
+        this.db = FirebaseFirestore.getInstance();
+        this.outbox = EntryOutbox.getInstance(context);
+        outbox.addListener(outboxListener);
+    }
+
+    /**
+     * Deja de recibir avisos de la cola (al destruir la pantalla)
+     */
+    public void close() {
+        closed = true;
+        outbox.removeListener(outboxListener);
+        mainHandler.removeCallbacksAndMessages(null);
+    }
+
+    public Collection<EntrySummary> getLoadedEntries() {
+        return Collections.unmodifiableCollection(loaded.values());
+    }
+
+    /**
+     * Pide las celdas de la vista que todavía no se descargaron
+     */
+    public void loadVisible(LatLngBounds bounds) {
+        if (everythingFetched) {
+            return;
+        }
+        if (waitingForBackfill) {
+            return;
+        }
+        Task<Void> backfill = EntrySummaries.backfill(appContext, userId);
+        if (!backfill.isComplete()) {
+            // Las entradas sin resumen todavía no aparecerían en las consultas por celda
+            waitingForBackfill = true;
+            backfill.addOnCompleteListener(task -> {
+                waitingForBackfill = false;
+                if (task.isSuccessful()) {
+                    loadVisible(bounds);
+                } else {
+                    Log.w(TAG, "Sin resúmenes completos; el mapa queda con lo ya cargado",
+                            task.getException());
+                }
+            });
+            return;
+        }
+
+        List<String> prefixes = GeoHash.coveringPrefixes(
+                bounds.southwest.latitude, bounds.southwest.longitude,
+                bounds.northeast.latitude, bounds.northeast.longitude, MAX_CELLS);
+        if (prefixes.isEmpty() || prefixes.get(0).length() < MIN_PRECISION) {
+            fetchAll();
+            return;
+        }
+
+        for (String prefix : prefixes) {
+            if (isCovered(prefix) || !pendingPrefixes.add(prefix)) {
+                continue;
+            }
+            Query query = db.collection(EntrySummaries.COLLECTION)
+                    .whereEqualTo("userId", userId)
+                    .orderBy("geohash")
+                    .startAt(prefix)
+                    .endAt(prefix + "\uf8ff");
+            query.get()
+                    .addOnSuccessListener(snapshots -> {
+                        pendingPrefixes.remove(prefix);
+                        fetchedPrefixes.add(prefix);
+                        merge(snapshots.getDocuments());
+                    })
+                    .addOnFailureListener(e -> {
+                        pendingPrefixes.remove(prefix);
+                        Log.w(TAG, "No se pudo cargar la celda " + prefix, e);
+                    });
+        }
+    }
+
+    /**
+     * true si la celda o alguna celda que la contiene ya se descargó
+     */
+    private boolean isCovered(String prefix) {
+        for (int length = 1; length <= prefix.length(); length++) {
+            if (fetchedPrefixes.contains(prefix.substring(0, length))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void fetchAll() {
+        if (!pendingPrefixes.add("")) {
+            return;
+        }
+        db.collection(EntrySummaries.COLLECTION)
+                .whereEqualTo("userId", userId)
+                .get()
+                .addOnSuccessListener(snapshots -> {
+                    pendingPrefixes.remove("");
+                    everythingFetched = true;
+                    merge(snapshots.getDocuments());
+                })
+                .addOnFailureListener(e -> {
+                    pendingPrefixes.remove("");
+                    Log.w(TAG, "No se pudieron cargar las entradas", e);
+                });
+    }
+
+    private void merge(List<DocumentSnapshot> documents) {
+        if (closed) {
+            return;
+        }
+        for (DocumentSnapshot document : documents) {
+            EntrySummary entry = toSummary(document);
+            loaded.put(entry.getId(), entry);
+        }
+        listener.onEntriesLoaded(getLoadedEntries());
+    }
+
+    /**
+     * Borrado local recién encolado: el marcador desaparece sin esperar a Firestore
+     */
+    private void forget(Collection<String> entryIds) {
+        boolean changed = false;
+        for (String entryId : entryIds) {
+            changed |= loaded.remove(entryId) != null;
+        }
+        if (changed && !closed) {
+            listener.onEntriesLoaded(getLoadedEntries());
+        }
+    }
+
+    /**
+     * Cambios confirmados de entradas ya cargadas: se vuelve a leer su resumen
+     * (la ubicación pudo cambiar de celda, o el cambio pudo descartarse)
+     */
+    private void refresh(Collection<String> entryIds) {
+        for (String entryId : entryIds) {
+            if (!loaded.containsKey(entryId)) {
+                continue;
+            }
+            db.collection(EntrySummaries.COLLECTION).document(entryId).get()
+                    .addOnSuccessListener(document -> {
+                        if (closed) {
+                            return;
+                        }
+                        if (document.exists()) {
+                            loaded.put(entryId, toSummary(document));
+                        } else {
+                            loaded.remove(entryId);
+                        }
+                        listener.onEntriesLoaded(getLoadedEntries());
+                    })
+                    .addOnFailureListener(e -> Log.w(TAG, "No se pudo actualizar " + entryId, e));
+        }
+    }
+
+    private static EntrySummary toSummary(DocumentSnapshot document) {
+        EntrySummary entry = document.toObject(EntrySummary.class);
+        entry.setId(document.getId());
+        return entry;
+    }
+}
@@ -0,0 +1,269 @@
+package com.example.chronicav1.data;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.os.SystemClock;
+import android.util.Log;
+
+import com.example.chronicav1.media.AudioPeaks;
+import com.google.android.gms.tasks.Tasks;
+import com.google.firebase.auth.FirebaseAuth;
+import com.google.firebase.auth.FirebaseUser;
+import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.FirebaseFirestore;
+import com.google.firebase.firestore.QuerySnapshot;
+import com.google.firebase.firestore.Source;
+import com.google.firebase.storage.ListResult;
+import com.google.firebase.storage.StorageMetadata;
+import com.google.firebase.storage.StorageReference;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Recolector de medios huérfanos (marcar y barrer)
+ * Marca lo que usa alguna entrada viva: hashes y nombres de audio de los documentos en Firestore,
+ * de las escrituras pendientes de EntryOutbox y de las subidas pendientes de BlobUploader.
+ * Barre lo que quedó sin marcar: audio y picos en filesDir/audio, blobs locales y blobs en
+ * Storage. Solo borra lo que tiene más de GRACE_MS, así no pisa una entrada que se está
+ * guardando. Cada pasada tiene un presupuesto de tiempo; lo que no alcanza queda para la
+ * siguiente (lo ya borrado no vuelve a aparecer al listar).
+ */
+public class MediaCollector {
+
+    private static final String TAG = "MediaCollector";
+    private static final String PREFS_NAME = "media_collector";
+    private static final String KEY_LAST_RUN = "lastRun_";
+    private static final String KEY_USERS = "users";
+
+    private static final long MIN_INTERVAL_MS = 24 * 60 * 60 * 1000L;
+    // El arranque de la app tiene prioridad: la pasada espera un poco
+    private static final long START_DELAY_MS = 60_000;
+    private static final long GRACE_MS = 24 * 60 * 60 * 1000L;
+    private static final long TIME_BUDGET_MS = 10_000;
+    private static final long REQUEST_TIMEOUT_SECONDS = 30;
+    private static final int LIST_PAGE_SIZE = 500;
+
+    /**
+     * Lo que liberó una pasada
+     */
+    private static final class Result {
+        int localFiles;
+        long localBytes;
+        int remoteFiles;
+        long remoteBytes;
+        // Se acabó el presupuesto antes de recorrer todo
+        boolean partial;
+    }
+
+    private static final class Marks {
+        final Set<String> hashes = new HashSet<>();
+        final Set<String> audioFiles = new HashSet<>();
+    }
+
+    private static MediaCollector instance;
+
+    private final SharedPreferences prefs;
+    private final File audioDir;
+    private final FirebaseFirestore db;
+    private final EntryOutbox outbox;
+    private final BlobUploader uploader;
+    private final BlobStore blobStore;
+    private final ScheduledExecutorService worker = Executors.newSingleThreadScheduledExecutor();
+
+    // Solo se accede desde el hilo del worker
+    private boolean scheduled;
+
+    private MediaCollector(Context context) {
+        Context appContext = context.getApplicationContext();
+        prefs = appContext.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+        audioDir = new File(appContext.getFilesDir(), "audio");
+        db = FirebaseFirestore.getInstance();
+        outbox = EntryOutbox.getInstance(context);
+        uploader = BlobUploader.getInstance(context);
+        blobStore = BlobStore.getInstance(context);
+    }
+
+    public static synchronized MediaCollector getInstance(Context context) {
+        if (instance == null) {
+            instance = new MediaCollector(context);
+        }
+        return instance;
+    }
+
+    /**
+     * Programa una pasada si la última completa fue hace más de MIN_INTERVAL_MS
+     */
+    public void requestRun(String userId) {
+        worker.execute(() -> {
+            Set<String> users = new HashSet<>(prefs.getStringSet(KEY_USERS, Collections.emptySet()));
+            if (users.add(userId)) {
+                prefs.edit().putStringSet(KEY_USERS, users).apply();
+            }
+            if (scheduled) {
+                return;
+            }
+            long lastRun = prefs.getLong(KEY_LAST_RUN + userId, 0);
+            long delay = Math.max(START_DELAY_MS, lastRun + MIN_INTERVAL_MS - System.currentTimeMillis());
+            scheduled = true;
+            worker.schedule(() -> {
+                scheduled = false;
+                collect(userId);
+            }, delay, TimeUnit.MILLISECONDS);
+        });
+    }
+
+    private void collect(String userId) {
+        if (!userId.equals(currentUserId())) {
+            return;
+        }
+        long startedAt = SystemClock.elapsedRealtime();
+        long deadline = startedAt + TIME_BUDGET_MS;
+
+        Marks marks;
+        try {
+            marks = mark(userId);
+        } catch (Exception e) {
+            // Sin la lista completa de referencias no se puede barrer nada con seguridad
+            Log.w(TAG, "Marcado incompleto, se omite la pasada", e);
+            return;
+        }
+
+        Result result = new Result();
+        // filesDir/audio y filesDir/blobs son de todas las cuentas del dispositivo y solo se conocen
+        // las entradas de esta: con varias cuentas un archivo ajeno parecería huérfano
+        if (prefs.getStringSet(KEY_USERS, Collections.emptySet()).size() <= 1) {
+            sweepLocalAudio(marks, result, deadline);
+            sweepLocalBlobs(marks, result, deadline);
+        }
+        boolean remoteFailed = false;
+        try {
+            sweepRemote(userId, marks, result, deadline);
+        } catch (Exception e) {
+            // Se reintenta en el próximo arranque, no enseguida: el error puede repetirse
+            Log.w(TAG, "Barrido de Storage interrumpido", e);
+            remoteFailed = true;
+        }
+
+        Log.d(TAG, String.format("Pasada %s en %d ms: %d archivos locales (%d KB), %d blobs remotos (%d KB)",
+                result.partial ? "parcial" : "completa", SystemClock.elapsedRealtime() - startedAt,
+                result.localFiles, result.localBytes / 1024, result.remoteFiles, result.remoteBytes / 1024));
+        if (result.partial) {
+            // Continúa pronto con lo que quedó, sin esperar al día siguiente
+            requestRun(userId);
+        } else if (!remoteFailed) {
+            prefs.edit().putLong(KEY_LAST_RUN + userId, System.currentTimeMillis()).apply();
+        }
+    }
+
+    private Marks mark(String userId) throws Exception {
+        Marks marks = new Marks();
+        // Solo del servidor: la caché local puede no tener todas las entradas
+        QuerySnapshot entries = Tasks.await(db.collection("entries")
+                .whereEqualTo("userId", userId)
+                .get(Source.SERVER), REQUEST_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        for (DocumentSnapshot document : entries.getDocuments()) {
+            Map<String, Object> data = document.getData();
+            if (data != null) {
+                mark(marks, data);
+            }
+        }
+        for (Map<String, Object> fields : outbox.loadPendingFields(userId)) {
+            mark(marks, fields);
+        }
+        marks.hashes.addAll(uploader.loadPendingHashes());
+        return marks;
+    }
+
+    private void mark(Marks marks, Map<String, Object> fields) {
+        for (String field : BulkOperations.BLOB_FIELDS) {
+            Object hash = fields.get(field);
+            if (hash instanceof String) {
+                marks.hashes.add((String) hash);
+            }
+        }
+        Object audioFileName = fields.get("audioFileName");
+        if (audioFileName instanceof String && !((String) audioFileName).isEmpty()) {
+            File audio = new File(audioDir, (String) audioFileName);
+            marks.audioFiles.add(audio.getName());
+            marks.audioFiles.add(AudioPeaks.fileFor(audio).getName());
+        }
+    }
+
+    /**
+     * Grabaciones sin entrada: quitadas al editar, de guardados fallidos o de entradas borradas
+     */
+    private void sweepLocalAudio(Marks marks, Result result, long deadline) {
+        sweepLocal(audioDir, marks.audioFiles, result, deadline);
+    }
+
+    /**
+     * Blobs locales sin referencias y temporales de escrituras o descargas interrumpidas
+     */
+    private void sweepLocalBlobs(Marks marks, Result result, long deadline) {
+        sweepLocal(blobStore.getLocalDir(), marks.hashes, result, deadline);
+    }
+
+    private void sweepLocal(File dir, Set<String> live, Result result, long deadline) {
+        File[] files = dir.listFiles();
+        if (files == null) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        for (File file : files) {
+            if (SystemClock.elapsedRealtime() > deadline) {
+                result.partial = true;
+                return;
+            }
+            if (live.contains(file.getName()) || now - file.lastModified() < GRACE_MS) {
+                continue;
+            }
+            long length = file.length();
+            if (file.delete()) {
+                result.localFiles++;
+                result.localBytes += length;
+            }
+        }
+    }
+
+    private void sweepRemote(String userId, Marks marks, Result result, long deadline) throws Exception {
+        StorageReference dir = blobStore.remoteDir(userId);
+        String pageToken = null;
+        do {
+            ListResult page = Tasks.await(pageToken == null
+                            ? dir.list(LIST_PAGE_SIZE)
+                            : dir.list(LIST_PAGE_SIZE, pageToken),
+                    REQUEST_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            for (StorageReference item : page.getItems()) {
+                if (SystemClock.elapsedRealtime() > deadline) {
+                    result.partial = true;
+                    return;
+                }
+                if (marks.hashes.contains(item.getName())) {
+                    continue;
+                }
+                StorageMetadata metadata = Tasks.await(item.getMetadata(),
+                        REQUEST_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+                if (System.currentTimeMillis() - metadata.getUpdatedTimeMillis() < GRACE_MS) {
+                    continue;
+                }
+                Tasks.await(item.delete(), REQUEST_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+                result.remoteFiles++;
+                result.remoteBytes += metadata.getSizeBytes();
+            }
+            // Las páginas avanzan por nombre: borrar lo ya listado no las desplaza
+            pageToken = page.getPageToken();
+        } while (pageToken != null);
+    }
+
+    private static String currentUserId() {
+        FirebaseUser user = FirebaseAuth.getInstance().getCurrentUser();
+        return user != null ? user.getUid() : null;
+    }
+}
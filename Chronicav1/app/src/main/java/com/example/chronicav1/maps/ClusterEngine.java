@@ -0,0 +1,243 @@
+package com.example.chronicav1.maps;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import com.example.chronicav1.models.EntrySummary;
+import com.google.android.gms.maps.model.LatLng;
+import com.google.android.gms.maps.model.LatLngBounds;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Agrupa las entradas del mapa en clusters por celdas de una rejilla en proyección Mercator
+ * El cálculo corre en segundo plano y solo sobre las entradas de la vista, que se obtienen
+ * del SpatialIndex; así la cantidad de marcadores depende del tamaño de la pantalla
+ * y no de cuántas entradas haya.
+ */
+public class ClusterEngine {
+
+    public interface Callback {
+        void onClustersReady(List<Cluster> clusters);
+    }
+
+    // Lado de cada celda en dp de mundo (el mundo mide 256 * 2^zoom)
+    private static final double CELL_SIZE = 80;
+    private static final double TILE_SIZE = 256;
+    // Zoom a partir del cual ya no se agrupa
+    private static final int MAX_CLUSTER_ZOOM = 18;
+    // Margen alrededor de la vista para que al desplazarse no aparezcan huecos
+    private static final double VIEWPORT_MARGIN = 0.25;
+
+    private final ExecutorService clusterExecutor = Executors.newSingleThreadExecutor();
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    // Solo se accede desde clusterExecutor
+    private final SpatialIndex spatialIndex = new SpatialIndex();
+
+    // Se incrementa en el hilo principal; el executor la lee para descartar peticiones viejas
+    private volatile int generation = 0;
+
+    /**
+     * Actualiza las entradas a agrupar; el índice solo mueve las que cambiaron
+     */
+    public void setEntries(List<EntrySummary> entries) {
+        List<EntrySummary> snapshot = new ArrayList<>(entries);
+        clusterExecutor.execute(() -> spatialIndex.sync(snapshot));
+    }
+
+    /**
+     * Calcula los clusters visibles para el zoom actual.
+     * Si llega otra petición antes de terminar, esta se descarta.
+     */
+    public void requestClusters(float zoom, LatLngBounds visible, Callback callback) {
+        int requestGeneration = ++generation;
+        int level = Math.max(0, Math.min((int) Math.floor(zoom), MAX_CLUSTER_ZOOM));
+        LatLngBounds area = expand(visible, VIEWPORT_MARGIN);
+
+        clusterExecutor.execute(() -> {
+            if (requestGeneration != generation) {
+                return;
+            }
+            // Consultar celdas completas para que los clusters del borde no queden partidos
+            double worldSize = TILE_SIZE * Math.pow(2, level);
+            double north = yToLatitude(Math.floor(latitudeToY(area.northeast.latitude, worldSize) / CELL_SIZE)
+                    * CELL_SIZE, worldSize);
+            double south = yToLatitude(Math.ceil(latitudeToY(area.southwest.latitude, worldSize) / CELL_SIZE)
+                    * CELL_SIZE, worldSize);
+            double west = xToLongitude(Math.floor(longitudeToX(area.southwest.longitude, worldSize) / CELL_SIZE)
+                    * CELL_SIZE, worldSize);
+            double east = xToLongitude(Math.ceil(longitudeToX(area.northeast.longitude, worldSize) / CELL_SIZE)
+                    * CELL_SIZE, worldSize);
+            if (east - west >= 360 || area.northeast.longitude - area.southwest.longitude >= 360) {
+                west = -180;
+                east = 180;
+            }
+
+            List<EntrySummary> visibleEntries = spatialIndex.query(south, west, north, east);
+            List<Cluster> inView = new ArrayList<>();
+            for (Cluster cluster : computeClusters(visibleEntries, level)) {
+                if (contains(area, cluster.latitude, cluster.longitude)) {
+                    inView.add(cluster);
+                }
+            }
+            mainHandler.post(() -> {
+                if (requestGeneration == generation) {
+                    callback.onClustersReady(inView);
+                }
+            });
+        });
+    }
+
+    public void shutdown() {
+        generation++;
+        clusterExecutor.shutdownNow();
+    }
+
+    static List<Cluster> computeClusters(List<EntrySummary> entries, int zoom) {
+        double worldSize = TILE_SIZE * Math.pow(2, zoom);
+        Map<Long, Cluster> cells = new HashMap<>();
+
+        for (EntrySummary entry : entries) {
+            long cellX = (long) Math.floor(longitudeToX(entry.getLongitude(), worldSize) / CELL_SIZE);
+            long cellY = (long) Math.floor(latitudeToY(entry.getLatitude(), worldSize) / CELL_SIZE);
+            long cellKey = (cellX << 32) ^ (cellY & 0xffffffffL);
+
+            Cluster cluster = cells.get(cellKey);
+            if (cluster == null) {
+                cluster = new Cluster();
+                cells.put(cellKey, cluster);
+                cluster.cellKey = zoom + "/" + cellX + "/" + cellY;
+            }
+            cluster.add(entry);
+        }
+
+        List<Cluster> clusters = new ArrayList<>(cells.size());
+        for (Cluster cluster : cells.values()) {
+            cluster.finish();
+            clusters.add(cluster);
+        }
+        return clusters;
+    }
+
+    static double longitudeToX(double longitude, double worldSize) {
+        return (longitude + 180.0) / 360.0 * worldSize;
+    }
+
+    static double latitudeToY(double latitude, double worldSize) {
+        // Limitar a la latitud máxima de Mercator para evitar infinitos en los polos
+        double clamped = Math.max(-85.05112878, Math.min(85.05112878, latitude));
+        double sin = Math.sin(Math.toRadians(clamped));
+        return (0.5 - Math.log((1 + sin) / (1 - sin)) / (4 * Math.PI)) * worldSize;
+    }
+
+    static double xToLongitude(double x, double worldSize) {
+        double longitude = x / worldSize * 360.0 - 180.0;
+        // Volver al rango [-180, 180]
+        return ((longitude + 180.0) % 360.0 + 360.0) % 360.0 - 180.0;
+    }
+
+    static double yToLatitude(double y, double worldSize) {
+        double n = Math.PI * (1 - 2 * y / worldSize);
+        return Math.toDegrees(Math.atan(Math.sinh(n)));
+    }
+
+    private static LatLngBounds expand(LatLngBounds bounds, double margin) {
+        double latSpan = bounds.northeast.latitude - bounds.southwest.latitude;
+        double lngSpan = bounds.northeast.longitude - bounds.southwest.longitude;
+        if (lngSpan < 0) {
+            // La vista cruza el antimeridiano
+            lngSpan += 360;
+        }
+        return new LatLngBounds(
+                new LatLng(Math.max(-90, bounds.southwest.latitude - latSpan * margin),
+                        bounds.southwest.longitude - lngSpan * margin),
+                new LatLng(Math.min(90, bounds.northeast.latitude + latSpan * margin),
+                        bounds.northeast.longitude + lngSpan * margin));
+    }
+
+    static boolean contains(LatLngBounds bounds, double latitude, double longitude) {
+        if (latitude < bounds.southwest.latitude || latitude > bounds.northeast.latitude) {
+            return false;
+        }
+        double west = bounds.southwest.longitude;
+        double east = bounds.northeast.longitude;
+        if (east - west >= 360) {
+            return true;
+        }
+        // Normalizar la longitud al rango que empieza en el borde oeste
+        double offset = ((longitude - west) % 360 + 360) % 360;
+        double width = ((east - west) % 360 + 360) % 360;
+        return offset <= width;
+    }
+
+    /**
+     * Grupo de entradas cercanas a un nivel de zoom; si tiene una sola entrada se muestra como tal
+     */
+    public static class Cluster {
+        private String cellKey;
+        private final List<EntrySummary> entries = new ArrayList<>();
+        private double latitude;
+        private double longitude;
+        private double minLatitude = Double.MAX_VALUE;
+        private double maxLatitude = -Double.MAX_VALUE;
+        private double minLongitude = Double.MAX_VALUE;
+        private double maxLongitude = -Double.MAX_VALUE;
+
+        private void add(EntrySummary entry) {
+            entries.add(entry);
+            latitude += entry.getLatitude();
+            longitude += entry.getLongitude();
+            minLatitude = Math.min(minLatitude, entry.getLatitude());
+            maxLatitude = Math.max(maxLatitude, entry.getLatitude());
+            minLongitude = Math.min(minLongitude, entry.getLongitude());
+            maxLongitude = Math.max(maxLongitude, entry.getLongitude());
+        }
+
+        private void finish() {
+            // Centroide de las entradas del grupo
+            latitude /= entries.size();
+            longitude /= entries.size();
+        }
+
+        /**
+         * Clave estable: una entrada suelta conserva su clave aunque cambie el zoom
+         */
+        public String getKey() {
+            return isSingle() ? "entry/" + entries.get(0).getId() : cellKey;
+        }
+
+        public boolean isSingle() {
+            return entries.size() == 1;
+        }
+
+        public int getSize() {
+            return entries.size();
+        }
+
+        public EntrySummary getFirstEntry() {
+            return entries.get(0);
+        }
+
+        public LatLng getPosition() {
+            return new LatLng(latitude, longitude);
+        }
+
+        public LatLngBounds getBounds() {
+            return new LatLngBounds(new LatLng(minLatitude, minLongitude),
+                    new LatLng(maxLatitude, maxLongitude));
+        }
+
+        /**
+         * true si todas las entradas están en el mismo punto (no se separan al acercar)
+         */
+        public boolean isSinglePoint() {
+            return minLatitude == maxLatitude && minLongitude == maxLongitude;
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package com.example.chronicav1.maps;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+
+import com.google.android.gms.maps.model.BitmapDescriptor;
+import com.google.android.gms.maps.model.BitmapDescriptorFactory;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Íconos circulares con el número de entradas de cada cluster
+ * Los conteos grandes se agrupan en rangos ("10+", "50+", ...) para reutilizar los bitmaps.
+ */
+public class ClusterIcons {
+
+    private static final int[] BUCKETS = {10, 20, 50, 100, 200, 500, 1000};
+    private static final int FILL_COLOR = 0xFF5E35B1;
+    private static final int STROKE_COLOR = 0xFFFFFFFF;
+    private static final int TEXT_COLOR = 0xFFFFFFFF;
+
+    private final float density;
+    private final Map<String, BitmapDescriptor> cache = new HashMap<>();
+
+    public ClusterIcons(Context context) {
+        density = context.getResources().getDisplayMetrics().density;
+    }
+
+    public BitmapDescriptor forSize(int size) {
+        String label = labelFor(size);
+        BitmapDescriptor icon = cache.get(label);
+        if (icon == null) {
+            icon = BitmapDescriptorFactory.fromBitmap(draw(label));
+            cache.put(label, icon);
+        }
+        return icon;
+    }
+
+    private static String labelFor(int size) {
+        for (int i = BUCKETS.length - 1; i >= 0; i--) {
+            if (size >= BUCKETS[i]) {
+                return BUCKETS[i] + "+";
+            }
+        }
+        return String.valueOf(size);
+    }
+
+    private Bitmap draw(String label) {
+        // El círculo crece un poco con la longitud del texto
+        int diameter = Math.round((36 + 4 * label.length()) * density);
+        Bitmap bitmap = Bitmap.createBitmap(diameter, diameter, Bitmap.Config.ARGB_8888);
+        Canvas canvas = new Canvas(bitmap);
+        float radius = diameter / 2f;
+
+        Paint paint = new Paint(Paint.ANTI_ALIAS_FLAG);
+        paint.setColor(STROKE_COLOR);
+        canvas.drawCircle(radius, radius, radius, paint);
+        paint.setColor(FILL_COLOR);
+        canvas.drawCircle(radius, radius, radius - 3 * density, paint);
+
+        paint.setColor(TEXT_COLOR);
+        paint.setTextSize(14 * density);
+        paint.setFakeBoldText(true);
+        paint.setTextAlign(Paint.Align.CENTER);
+        float baseline = radius - (paint.descent() + paint.ascent()) / 2;
+        canvas.drawText(label, radius, baseline, paint);
+        return bitmap;
+    }
+}
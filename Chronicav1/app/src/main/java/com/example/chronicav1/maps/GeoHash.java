@@ -0,0 +1,170 @@
+package com.example.chronicav1.maps;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Geohash binario: intercala los bits de longitud y latitud (primero longitud)
+ * Puntos cercanos comparten prefijo, así un rectángulo se cubre con pocos rangos de claves.
+ * Con 26 bits por eje la celda mínima mide menos de un metro.
+ */
+public final class GeoHash {
+
+    public static final int BITS_PER_AXIS = 26;
+    public static final int TOTAL_BITS = BITS_PER_AXIS * 2;
+    // Precisión guardada en Firestore (~5 m)
+    public static final int STORED_PRECISION = 9;
+
+    private static final String BASE32 = "0123456789bcdefghjkmnpqrstuvwxyz";
+    private static final long AXIS_CELLS = 1L << BITS_PER_AXIS;
+
+    private GeoHash() {
+    }
+
+    /**
+     * Clave de 52 bits del punto; el orden numérico agrupa puntos cercanos
+     */
+    public static long encode(double latitude, double longitude) {
+        return interleave(lngCell(longitude, BITS_PER_AXIS), latCell(latitude, BITS_PER_AXIS));
+    }
+
+    /**
+     * Geohash estándar en base32 (máximo 10 caracteres)
+     */
+    public static String encode(double latitude, double longitude, int precision) {
+        return toBase32(encode(latitude, longitude), precision);
+    }
+
+    public static String toBase32(long hash, int precision) {
+        if (precision < 1 || precision * 5 > TOTAL_BITS) {
+            throw new IllegalArgumentException("Precisión fuera de rango: " + precision);
+        }
+        long bits = hash >>> (TOTAL_BITS - precision * 5);
+        char[] chars = new char[precision];
+        for (int i = precision - 1; i >= 0; i--) {
+            chars[i] = BASE32.charAt((int) (bits & 31));
+            bits >>>= 5;
+        }
+        return new String(chars);
+    }
+
+    /**
+     * Geohash que se guarda en el campo "geohash" de la entrada; vacío si no tiene ubicación
+     */
+    public static String forEntry(double latitude, double longitude) {
+        if (latitude == 0 || longitude == 0) {
+            return "";
+        }
+        return encode(latitude, longitude, STORED_PRECISION);
+    }
+
+    /**
+     * Prefijos base32 que cubren el rectángulo con como máximo maxCells celdas.
+     * Devuelve la precisión más fina posible; lista vacía si ni con 1 carácter alcanza.
+     */
+    public static List<String> coveringPrefixes(double south, double west, double north, double east,
+                                                int maxCells) {
+        List<String> prefixes = new ArrayList<>();
+        if (west > east) {
+            // Cruza el antimeridiano: dos rectángulos
+            prefixes.addAll(coveringPrefixes(south, west, north, 180, maxCells / 2));
+            prefixes.addAll(coveringPrefixes(south, -180, north, east, maxCells / 2));
+            return prefixes;
+        }
+
+        for (int precision = STORED_PRECISION; precision >= 1; precision--) {
+            // Con bits impares la longitud lleva un bit más que la latitud
+            int lngBits = (precision * 5 + 1) / 2;
+            int latBits = precision * 5 / 2;
+            int x0 = lngCell(west, lngBits);
+            int x1 = lngCell(east, lngBits);
+            int y0 = latCell(south, latBits);
+            int y1 = latCell(north, latBits);
+            if ((long) (x1 - x0 + 1) * (y1 - y0 + 1) > maxCells) {
+                continue;
+            }
+
+            for (int x = x0; x <= x1; x++) {
+                for (int y = y0; y <= y1; y++) {
+                    long bits = lngBits == latBits
+                            ? interleave(x, y)
+                            : (interleave(x >> 1, y) << 1) | (x & 1);
+                    prefixes.add(toBase32(bits << (TOTAL_BITS - precision * 5), precision));
+                }
+            }
+            return prefixes;
+        }
+        return prefixes;
+    }
+
+    /**
+     * Rangos [inicio, fin) de claves que cubren el rectángulo, usando como máximo maxCells celdas.
+     * Las celdas son cuadradas en bits (mismo nivel en ambos ejes); sobra algo de área en los bordes,
+     * así que quien consulta debe filtrar por el rectángulo exacto.
+     */
+    public static List<long[]> coveringRanges(double south, double west, double north, double east,
+                                              int maxCells) {
+        List<long[]> ranges = new ArrayList<>();
+        if (west > east) {
+            // Cruza el antimeridiano: dos rectángulos
+            ranges.addAll(coveringRanges(south, west, north, 180, maxCells / 2));
+            ranges.addAll(coveringRanges(south, -180, north, east, maxCells / 2));
+            return ranges;
+        }
+
+        int level = BITS_PER_AXIS;
+        while (level > 0 && cellCount(south, west, north, east, level) > maxCells) {
+            level--;
+        }
+
+        int x0 = lngCell(west, level);
+        int x1 = lngCell(east, level);
+        int y0 = latCell(south, level);
+        int y1 = latCell(north, level);
+        int shift = TOTAL_BITS - 2 * level;
+        for (int x = x0; x <= x1; x++) {
+            for (int y = y0; y <= y1; y++) {
+                long prefix = interleave(x, y);
+                ranges.add(new long[]{prefix << shift, (prefix + 1) << shift});
+            }
+        }
+        return ranges;
+    }
+
+    private static long cellCount(double south, double west, double north, double east, int level) {
+        long width = lngCell(east, level) - lngCell(west, level) + 1L;
+        long height = latCell(north, level) - latCell(south, level) + 1L;
+        return width * height;
+    }
+
+    static int lngCell(double longitude, int level) {
+        return cell((longitude + 180.0) / 360.0, level);
+    }
+
+    static int latCell(double latitude, int level) {
+        return cell((latitude + 90.0) / 180.0, level);
+    }
+
+    private static int cell(double normalized, int level) {
+        long cells = 1L << level;
+        long value = (long) Math.floor(normalized * cells);
+        return (int) Math.max(0, Math.min(cells - 1, value));
+    }
+
+    /**
+     * Intercala bits: x (longitud) en las posiciones más significativas de cada par
+     */
+    static long interleave(int x, int y) {
+        return (spread(x) << 1) | spread(y);
+    }
+
+    private static long spread(int value) {
+        long v = value & (AXIS_CELLS - 1);
+        v = (v | (v << 16)) & 0x0000FFFF0000FFFFL;
+        v = (v | (v << 8)) & 0x00FF00FF00FF00FFL;
+        v = (v | (v << 4)) & 0x0F0F0F0F0F0F0F0FL;
+        v = (v | (v << 2)) & 0x3333333333333333L;
+        v = (v | (v << 1)) & 0x5555555555555555L;
+        return v;
+    }
+}
@@ -0,0 +1,193 @@
+package com.example.chronicav1.maps;
+
+import com.example.chronicav1.models.EntrySummary;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Índice espacial de entradas geolocalizadas ordenado por geohash
+ * Una consulta por rectángulo se resuelve con unos pocos rangos de claves (búsqueda binaria)
+ * en lugar de recorrer todas las entradas. Se actualiza de forma incremental.
+ * No es thread-safe: se usa desde un solo hilo (el de ClusterEngine).
+ */
+public class SpatialIndex {
+
+    // Celdas con las que se cubre cada consulta
+    private static final int MAX_QUERY_CELLS = 16;
+
+    private long[] keys = new long[16];
+    private EntrySummary[] entries = new EntrySummary[16];
+    private int size = 0;
+
+    private final Map<String, EntrySummary> byId = new HashMap<>();
+
+    public int size() {
+        return size;
+    }
+
+    public static boolean hasLocation(EntrySummary entry) {
+        return entry.getLatitude() != 0 && entry.getLongitude() != 0;
+    }
+
+    /**
+     * Deja en el índice exactamente las entradas dadas, moviendo solo las que cambiaron
+     */
+    public void sync(Collection<EntrySummary> current) {
+        if (size == 0) {
+            rebuild(current);
+            return;
+        }
+
+        Set<String> currentIds = new HashSet<>();
+        for (EntrySummary entry : current) {
+            if (!hasLocation(entry)) {
+                continue;
+            }
+            currentIds.add(entry.getId());
+            put(entry);
+        }
+        for (String entryId : new ArrayList<>(byId.keySet())) {
+            if (!currentIds.contains(entryId)) {
+                remove(entryId);
+            }
+        }
+    }
+
+    public void put(EntrySummary entry) {
+        EntrySummary previous = byId.get(entry.getId());
+        if (previous != null) {
+            if (previous.getLatitude() == entry.getLatitude()
+                    && previous.getLongitude() == entry.getLongitude()) {
+                // Misma posición: solo reemplazar el objeto (título, fecha, ...)
+                entries[indexOf(previous)] = entry;
+                byId.put(entry.getId(), entry);
+                return;
+            }
+            remove(entry.getId());
+        }
+        if (!hasLocation(entry)) {
+            return;
+        }
+
+        long key = GeoHash.encode(entry.getLatitude(), entry.getLongitude());
+        int position = lowerBound(key);
+        ensureCapacity(size + 1);
+        System.arraycopy(keys, position, keys, position + 1, size - position);
+        System.arraycopy(entries, position, entries, position + 1, size - position);
+        keys[position] = key;
+        entries[position] = entry;
+        size++;
+        byId.put(entry.getId(), entry);
+    }
+
+    public void remove(String entryId) {
+        EntrySummary previous = byId.remove(entryId);
+        if (previous == null) {
+            return;
+        }
+        int position = indexOf(previous);
+        System.arraycopy(keys, position + 1, keys, position, size - position - 1);
+        System.arraycopy(entries, position + 1, entries, position, size - position - 1);
+        size--;
+        entries[size] = null;
+    }
+
+    /**
+     * Entradas dentro del rectángulo; west > east indica que cruza el antimeridiano
+     */
+    public List<EntrySummary> query(double south, double west, double north, double east) {
+        List<EntrySummary> result = new ArrayList<>();
+        boolean wraps = west > east;
+
+        for (long[] range : GeoHash.coveringRanges(south, west, north, east, MAX_QUERY_CELLS)) {
+            int end = lowerBound(range[1]);
+            for (int i = lowerBound(range[0]); i < end; i++) {
+                EntrySummary entry = entries[i];
+                double latitude = entry.getLatitude();
+                double longitude = entry.getLongitude();
+                if (latitude < south || latitude > north) {
+                    continue;
+                }
+                boolean inLongitude = wraps
+                        ? longitude >= west || longitude <= east
+                        : longitude >= west && longitude <= east;
+                if (inLongitude) {
+                    result.add(entry);
+                }
+            }
+        }
+        return result;
+    }
+
+    private void rebuild(Collection<EntrySummary> current) {
+        List<EntrySummary> located = new ArrayList<>();
+        for (EntrySummary entry : current) {
+            if (hasLocation(entry)) {
+                located.add(entry);
+            }
+        }
+
+        long[] newKeys = new long[located.size()];
+        Integer[] order = new Integer[located.size()];
+        for (int i = 0; i < located.size(); i++) {
+            newKeys[i] = GeoHash.encode(located.get(i).getLatitude(), located.get(i).getLongitude());
+            order[i] = i;
+        }
+        Arrays.sort(order, Comparator.comparingLong(i -> newKeys[i]));
+
+        size = 0;
+        byId.clear();
+        ensureCapacity(located.size());
+        for (Integer i : order) {
+            EntrySummary entry = located.get(i);
+            keys[size] = newKeys[i];
+            entries[size] = entry;
+            size++;
+            byId.put(entry.getId(), entry);
+        }
+    }
+
+    private int indexOf(EntrySummary entry) {
+        long key = GeoHash.encode(entry.getLatitude(), entry.getLongitude());
+        for (int i = lowerBound(key); i < size && keys[i] == key; i++) {
+            if (entries[i].getId().equals(entry.getId())) {
+                return i;
+            }
+        }
+        throw new IllegalStateException("Entrada no encontrada en el índice: " + entry.getId());
+    }
+
+    /**
+     * Primera posición con clave >= key
+     */
+    private int lowerBound(long key) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (keys[middle] < key) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (keys.length >= capacity) {
+            return;
+        }
+        int newCapacity = Math.max(capacity, keys.length * 2);
+        keys = Arrays.copyOf(keys, newCapacity);
+        entries = Arrays.copyOf(entries, newCapacity);
+    }
+}
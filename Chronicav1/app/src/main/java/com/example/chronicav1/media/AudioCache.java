@@ -0,0 +1,310 @@
+package com.example.chronicav1.media;
+
+import android.content.Context;
+import android.media.MediaDataSource;
+import android.media.MediaPlayer;
+import android.os.SystemClock;
+import android.util.Log;
+
+import com.example.chronicav1.data.BlobStore;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Audio de entradas grabadas en otro dispositivo: streaming desde Storage con caché en disco
+ * La descarga se escribe en un archivo parcial que MediaPlayer ya puede leer (MediaDataSource);
+ * la reproducción empieza con los primeros bytes, sin esperar el archivo completo.
+ * Los archivos completos quedan en cacheDir/audio con un límite de tamaño (LRU por uso).
+ */
+public class AudioCache {
+
+    private static final String TAG = "AudioCache";
+    private static final String CACHE_DIR = "audio";
+    private static final String PART_SUFFIX = ".part";
+
+    private static final long MAX_CACHE_BYTES = 32L * 1024 * 1024;
+    // Sin datos nuevos en este tiempo la lectura falla y MediaPlayer informa el error
+    private static final long READ_TIMEOUT_MS = 30_000;
+    private static final int BUFFER_SIZE = 16 * 1024;
+
+    private static AudioCache instance;
+
+    private final File cacheDir;
+    private final BlobStore blobStore;
+    // Descargas en curso por hash; varias pantallas comparten la misma
+    private final Map<String, Download> downloads = new HashMap<>();
+
+    private AudioCache(Context context) {
+        cacheDir = new File(context.getApplicationContext().getCacheDir(), CACHE_DIR);
+        if (!cacheDir.exists()) {
+            cacheDir.mkdirs();
+        }
+        blobStore = BlobStore.getInstance(context);
+    }
+
+    public static synchronized AudioCache getInstance(Context context) {
+        if (instance == null) {
+            instance = new AudioCache(context);
+        }
+        return instance;
+    }
+
+    /**
+     * Asigna el audio del blob al reproductor: copia local si existe, si no streaming.
+     * Llamar antes de prepareAsync().
+     */
+    public void setDataSource(MediaPlayer player, String ownerId, String hash) throws IOException {
+        // Grabado en este dispositivo: la copia del almacén de blobs
+        File blob = blobStore.getLocalFile(hash);
+        if (blob.exists()) {
+            player.setDataSource(blob.getAbsolutePath());
+            return;
+        }
+
+        File cached = new File(cacheDir, hash);
+        if (cached.exists()) {
+            // Marca de uso para el LRU
+            cached.setLastModified(System.currentTimeMillis());
+            player.setDataSource(cached.getAbsolutePath());
+            return;
+        }
+
+        player.setDataSource(new StreamingSource(startDownload(ownerId, hash)));
+    }
+
+    private synchronized Download startDownload(String ownerId, String hash) throws IOException {
+        Download running = downloads.get(hash);
+        if (running != null) {
+            return running;
+        }
+
+        Download download = new Download(hash);
+        downloads.put(hash, download);
+        blobStore.stream(ownerId, hash, download::write)
+                .addOnFailureListener(e -> download.fail(e instanceof IOException
+                        ? (IOException) e
+                        : new IOException("Descarga fallida: " + hash, e)));
+        return download;
+    }
+
+    private synchronized void finished(Download download) {
+        downloads.remove(download.hash);
+    }
+
+    /**
+     * Borra los archivos usados hace más tiempo hasta volver al límite de tamaño
+     */
+    private synchronized void trim() {
+        File[] files = cacheDir.listFiles();
+        if (files == null) {
+            return;
+        }
+
+        List<File> complete = new ArrayList<>();
+        long total = 0;
+        for (File file : files) {
+            if (!file.getName().endsWith(PART_SUFFIX)) {
+                complete.add(file);
+                total += file.length();
+            }
+        }
+        if (total <= MAX_CACHE_BYTES) {
+            return;
+        }
+
+        File[] byLastUse = complete.toArray(new File[0]);
+        Arrays.sort(byLastUse, (a, b) -> Long.compare(a.lastModified(), b.lastModified()));
+        long freed = 0;
+        for (File file : byLastUse) {
+            if (total - freed <= MAX_CACHE_BYTES) {
+                break;
+            }
+            long length = file.length();
+            // En Linux un archivo borrado sigue legible para quien ya lo tiene abierto
+            if (file.delete()) {
+                freed += length;
+            }
+        }
+        Log.d(TAG, "Caché de audio recortada: " + freed / 1024 + "KB liberados");
+    }
+
+    /**
+     * Una descarga en curso: el escritor avanza "written" y los lectores esperan hasta tener datos
+     */
+    private final class Download {
+        final String hash;
+        final File partFile;
+        final File file;
+        final long startedAt = SystemClock.elapsedRealtime();
+
+        private long total = -1;
+        private long written;
+        private boolean done;
+        private IOException error;
+
+        Download(String hash) throws IOException {
+            this.hash = hash;
+            this.partFile = new File(cacheDir, hash + PART_SUFFIX);
+            this.file = new File(cacheDir, hash);
+            // Existe desde el principio para que los lectores puedan abrirlo
+            new FileOutputStream(partFile).close();
+        }
+
+        /**
+         * Corre en el hilo de Storage: copia el stream al archivo parcial y verifica el hash
+         */
+        void write(long totalBytes, InputStream in) throws IOException {
+            setTotal(totalBytes);
+            MessageDigest digest = BlobStore.newDigest();
+            try (FileOutputStream out = new FileOutputStream(partFile)) {
+                byte[] buffer = new byte[BUFFER_SIZE];
+                int read;
+                while ((read = in.read(buffer)) != -1) {
+                    // FileOutputStream no tiene búfer: lo escrito ya es visible para el lector
+                    out.write(buffer, 0, read);
+                    digest.update(buffer, 0, read);
+                    advance(read);
+                }
+            }
+
+            if (!hash.equals(BlobStore.toHex(digest.digest()))) {
+                throw new IOException("Audio corrupto: " + hash);
+            }
+            complete();
+            trim();
+        }
+
+        synchronized RandomAccessFile openReader() throws IOException {
+            return new RandomAccessFile(done ? file : partFile, "r");
+        }
+
+        private synchronized void setTotal(long totalBytes) {
+            total = totalBytes;
+            notifyAll();
+        }
+
+        private synchronized void advance(int bytes) {
+            if (written == 0) {
+                Log.d(TAG, "Primer bloque de " + hash + " en "
+                        + (SystemClock.elapsedRealtime() - startedAt) + " ms");
+            }
+            written += bytes;
+            notifyAll();
+        }
+
+        private synchronized void complete() throws IOException {
+            // Con el lock: ningún lector abre el parcial mientras cambia de nombre
+            if (!partFile.renameTo(file)) {
+                throw new IOException("No se pudo guardar el audio " + hash);
+            }
+            done = true;
+            total = written;
+            notifyAll();
+            finished(this);
+            Log.d(TAG, String.format("Audio %s: %dKB en %d ms", hash, written / 1024,
+                    SystemClock.elapsedRealtime() - startedAt));
+        }
+
+        synchronized void fail(IOException e) {
+            if (done) {
+                return;
+            }
+            error = e;
+            notifyAll();
+            finished(this);
+            partFile.delete();
+            Log.w(TAG, "Descarga de audio fallida: " + hash, e);
+        }
+
+        /**
+         * Espera hasta que haya datos después de position; devuelve cuántos bytes hay escritos
+         */
+        synchronized long awaitAvailable(long position) throws IOException {
+            long deadline = SystemClock.elapsedRealtime() + READ_TIMEOUT_MS;
+            while (written <= position && !done && error == null) {
+                long remaining = deadline - SystemClock.elapsedRealtime();
+                if (remaining <= 0) {
+                    throw new IOException("Tiempo de espera agotado leyendo " + hash);
+                }
+                try {
+                    wait(remaining);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException(e);
+                }
+            }
+            if (error != null) {
+                throw error;
+            }
+            return written;
+        }
+
+        synchronized long awaitTotal() throws IOException {
+            long deadline = SystemClock.elapsedRealtime() + READ_TIMEOUT_MS;
+            while (total < 0 && !done && error == null) {
+                long remaining = deadline - SystemClock.elapsedRealtime();
+                if (remaining <= 0) {
+                    return -1;
+                }
+                try {
+                    wait(remaining);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return -1;
+                }
+            }
+            if (error != null) {
+                throw error;
+            }
+            return total;
+        }
+    }
+
+    /**
+     * Lectura para MediaPlayer sobre un archivo que todavía se está descargando.
+     * MediaPlayer llama a readAt desde su propio hilo, así que puede bloquear.
+     */
+    private static final class StreamingSource extends MediaDataSource {
+        private final Download download;
+        private final RandomAccessFile reader;
+
+        StreamingSource(Download download) throws IOException {
+            this.download = download;
+            this.reader = download.openReader();
+        }
+
+        @Override
+        public int readAt(long position, byte[] buffer, int offset, int size) throws IOException {
+            long available = download.awaitAvailable(position);
+            if (position >= available) {
+                // Descarga completa y la posición está más allá del final
+                return -1;
+            }
+            int length = (int) Math.min(size, available - position);
+            synchronized (reader) {
+                reader.seek(position);
+                return reader.read(buffer, offset, length);
+            }
+        }
+
+        @Override
+        public long getSize() throws IOException {
+            return download.awaitTotal();
+        }
+
+        @Override
+        public void close() throws IOException {
+            reader.close();
+        }
+    }
+}
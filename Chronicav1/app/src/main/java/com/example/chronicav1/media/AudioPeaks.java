@@ -0,0 +1,160 @@
+package com.example.chronicav1.media;
+
+import android.content.Context;
+
+import com.example.chronicav1.data.BlobStore;
+import com.example.chronicav1.models.Entry;
+import com.google.android.gms.tasks.Task;
+import com.google.android.gms.tasks.Tasks;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Forma de onda precalculada de una grabación: mínimo y máximo de cada ventana de WINDOW_MS
+ * Se calcula mientras se graba (ver AudioRecorder) y se guarda junto al audio con extensión
+ * .peaks; la pantalla de detalle la dibuja sin decodificar el audio.
+ * Formato: 1 byte de versión, 2 bytes con la ventana en ms y un par (min, max) de bytes con
+ * signo por ventana (el byte alto de la muestra de 16 bits). Dos minutos ocupan ~4,8 KB.
+ */
+public final class AudioPeaks {
+
+    public static final String EXTENSION = ".peaks";
+    public static final String CONTENT_TYPE = "application/octet-stream";
+
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 3;
+    private static final int WINDOW_MS = 50;
+
+    private static final ExecutorService readExecutor = Executors.newSingleThreadExecutor();
+
+    private final int windowMs;
+    // Pares min, max consecutivos
+    private final byte[] values;
+
+    private AudioPeaks(int windowMs, byte[] values) {
+        this.windowMs = windowMs;
+        this.values = values;
+    }
+
+    public int getWindowCount() {
+        return values.length / 2;
+    }
+
+    public int getMin(int window) {
+        return values[window * 2];
+    }
+
+    public int getMax(int window) {
+        return values[window * 2 + 1];
+    }
+
+    public long getDurationMs() {
+        return (long) getWindowCount() * windowMs;
+    }
+
+    /**
+     * Archivo de picos que corresponde a un audio: mismo nombre, otra extensión
+     */
+    public static File fileFor(File audio) {
+        String name = audio.getName();
+        int dot = name.lastIndexOf('.');
+        return new File(audio.getParentFile(), (dot > 0 ? name.substring(0, dot) : name) + EXTENSION);
+    }
+
+    /**
+     * Picos del audio de la entrada: archivo local si se grabó aquí, si no el blob remoto.
+     * Devuelve null si la entrada no tiene picos (grabaciones anteriores).
+     */
+    public static Task<AudioPeaks> load(Context context, Entry entry) {
+        String audioName = entry.getAudioFileName();
+        if (audioName != null && !audioName.isEmpty()) {
+            File local = fileFor(new File(new File(context.getFilesDir(), "audio"), audioName));
+            if (local.exists()) {
+                return Tasks.call(readExecutor, () -> parse(BlobStore.readFully(local)));
+            }
+        }
+
+        String hash = entry.getPeaksHash();
+        if (hash == null || hash.isEmpty()) {
+            return Tasks.forResult(null);
+        }
+        return BlobStore.getInstance(context).read(entry.getUserId(), hash)
+                .continueWith(readExecutor, task -> parse(task.getResult()));
+    }
+
+    static AudioPeaks parse(byte[] data) throws IOException {
+        if (data.length < HEADER_SIZE || data[0] != VERSION) {
+            throw new IOException("Archivo de picos no válido");
+        }
+        int windowMs = ((data[1] & 0xFF) << 8) | (data[2] & 0xFF);
+        int length = (data.length - HEADER_SIZE) & ~1;
+        byte[] values = new byte[length];
+        System.arraycopy(data, HEADER_SIZE, values, 0, length);
+        return new AudioPeaks(windowMs, values);
+    }
+
+    /**
+     * Acumula picos a partir de PCM de 16 bits mono; se escribe al mismo ritmo que el audio
+     */
+    static final class Writer implements AutoCloseable {
+        private final FileOutputStream out;
+        private final int windowSamples;
+        private final byte[] pending;
+        private int pendingLength;
+
+        private int samplesInWindow;
+        private int min = Short.MAX_VALUE;
+        private int max = Short.MIN_VALUE;
+
+        Writer(File file, int sampleRate) throws IOException {
+            out = new FileOutputStream(file);
+            windowSamples = sampleRate * WINDOW_MS / 1000;
+            // Un segundo de ventanas entre escrituras alcanza de sobra
+            pending = new byte[2 * (1000 / WINDOW_MS + 1)];
+            out.write(new byte[]{VERSION, (byte) (WINDOW_MS >> 8), (byte) WINDOW_MS});
+        }
+
+        /**
+         * Procesa bytes PCM little-endian desde la posición 0 del buffer (no la modifica)
+         */
+        void add(ByteBuffer pcm, int bytes) throws IOException {
+            for (int i = 0; i + 1 < bytes; i += 2) {
+                int sample = (short) ((pcm.get(i + 1) << 8) | (pcm.get(i) & 0xFF));
+                if (sample < min) {
+                    min = sample;
+                }
+                if (sample > max) {
+                    max = sample;
+                }
+                if (++samplesInWindow == windowSamples) {
+                    if (pendingLength == pending.length) {
+                        flush();
+                    }
+                    pending[pendingLength++] = (byte) (min >> 8);
+                    pending[pendingLength++] = (byte) (max >> 8);
+                    samplesInWindow = 0;
+                    min = Short.MAX_VALUE;
+                    max = Short.MIN_VALUE;
+                }
+            }
+        }
+
+        void flush() throws IOException {
+            if (pendingLength > 0) {
+                out.write(pending, 0, pendingLength);
+                pendingLength = 0;
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            flush();
+            out.close();
+        }
+    }
+}
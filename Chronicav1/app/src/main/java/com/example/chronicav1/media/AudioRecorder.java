@@ -0,0 +1,272 @@
+package com.example.chronicav1.media;
+
+import android.annotation.SuppressLint;
+import android.media.AudioFormat;
+import android.media.AudioRecord;
+import android.media.MediaCodec;
+import android.media.MediaCodecInfo;
+import android.media.MediaFormat;
+import android.media.MediaRecorder;
+import android.os.SystemClock;
+import android.util.Log;
+
+import com.google.android.gms.tasks.Task;
+import com.google.android.gms.tasks.Tasks;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Grabación de voz con AudioRecord + MediaCodec (AAC-LC) en formato ADTS
+ * Cada trama ADTS es independiente: el archivo se escribe en bloques de CHUNK_BYTES
+ * a medida que se graba, y si la app muere a mitad de la toma lo ya escrito se reproduce igual.
+ * ADTS también se puede reproducir mientras se descarga (ver AudioCache).
+ * Con el mismo PCM se calculan los picos de la forma de onda (ver AudioPeaks).
+ */
+public final class AudioRecorder {
+
+    private static final String TAG = "AudioRecorder";
+
+    public static final String EXTENSION = ".aac";
+    public static final String CONTENT_TYPE = "audio/aac";
+
+    // ~1 s de audio con VOICE: lo máximo que se pierde si el proceso muere
+    private static final int CHUNK_BYTES = 8 * 1024;
+    private static final long CODEC_TIMEOUT_US = 10_000;
+    private static final int ADTS_HEADER_SIZE = 7;
+    private static final int[] SAMPLE_RATES = {
+            96000, 88200, 64000, 48000, 44100, 32000, 24000, 22050, 16000, 12000, 11025, 8000
+    };
+
+    /**
+     * Configuración del codificador (mono, 16 bits)
+     */
+    public static final class Config {
+        public static final Config VOICE = new Config(44100, 64_000);
+
+        final int sampleRate;
+        final int bitRate;
+
+        Config(int sampleRate, int bitRate) {
+            this.sampleRate = sampleRate;
+            this.bitRate = bitRate;
+        }
+
+        @Override
+        public String toString() {
+            return "AAC " + sampleRate + "Hz " + bitRate / 1000 + "kbps";
+        }
+    }
+
+    /**
+     * Métricas de una toma, para comparar configuraciones
+     */
+    public static final class Result {
+        public final File file;
+        public final File peaksFile;
+        public final long durationMs;
+        public final long bytes;
+        // Tiempo de CPU del hilo de grabación (lectura del micrófono, codec y escritura)
+        public final long cpuMs;
+
+        Result(File file, File peaksFile, long durationMs, long bytes, long cpuMs) {
+            this.file = file;
+            this.peaksFile = peaksFile;
+            this.durationMs = durationMs;
+            this.bytes = bytes;
+            this.cpuMs = cpuMs;
+        }
+
+        public long bytesPerSecond() {
+            return durationMs > 0 ? bytes * 1000 / durationMs : 0;
+        }
+    }
+
+    private final File output;
+    private final File peaksOutput;
+    private final Config config;
+    private final AudioRecord audioRecord;
+    private final MediaCodec codec;
+    private final int readSize;
+    // Un hilo por grabación: el bucle corre en él y stop() encola el resultado detrás
+    private final ExecutorService thread = Executors.newSingleThreadExecutor();
+    private final Task<Result> recording;
+
+    private volatile boolean stopRequested;
+
+    // Las pantallas piden RECORD_AUDIO antes de grabar; sin permiso AudioRecord no se inicializa
+    @SuppressLint("MissingPermission")
+    private AudioRecorder(File output, Config config) throws IOException {
+        this.output = output;
+        this.peaksOutput = AudioPeaks.fileFor(output);
+        this.config = config;
+
+        int minBuffer = AudioRecord.getMinBufferSize(config.sampleRate,
+                AudioFormat.CHANNEL_IN_MONO, AudioFormat.ENCODING_PCM_16BIT);
+        if (minBuffer <= 0) {
+            throw new IOException("Frecuencia no soportada: " + config.sampleRate);
+        }
+        // Un bloque de lectura = 1024 muestras, lo que consume una trama AAC
+        readSize = 1024 * 2;
+        audioRecord = new AudioRecord(MediaRecorder.AudioSource.MIC, config.sampleRate,
+                AudioFormat.CHANNEL_IN_MONO, AudioFormat.ENCODING_PCM_16BIT,
+                Math.max(minBuffer, readSize * 4));
+        if (audioRecord.getState() != AudioRecord.STATE_INITIALIZED) {
+            audioRecord.release();
+            throw new IOException("No se pudo abrir el micrófono");
+        }
+
+        MediaFormat format = MediaFormat.createAudioFormat(MediaFormat.MIMETYPE_AUDIO_AAC,
+                config.sampleRate, 1);
+        format.setInteger(MediaFormat.KEY_AAC_PROFILE, MediaCodecInfo.CodecProfileLevel.AACObjectLC);
+        format.setInteger(MediaFormat.KEY_BIT_RATE, config.bitRate);
+        format.setInteger(MediaFormat.KEY_MAX_INPUT_SIZE, readSize);
+        try {
+            codec = MediaCodec.createEncoderByType(MediaFormat.MIMETYPE_AUDIO_AAC);
+            codec.configure(format, null, null, MediaCodec.CONFIGURE_FLAG_ENCODE);
+        } catch (IOException | RuntimeException e) {
+            audioRecord.release();
+            throw e instanceof IOException ? (IOException) e : new IOException(e);
+        }
+
+        recording = Tasks.call(thread, this::record);
+    }
+
+    /**
+     * Empieza a grabar en output; falla de inmediato si el micrófono o el codec no están disponibles
+     */
+    public static AudioRecorder start(File output, Config config) throws IOException {
+        return new AudioRecorder(output, config);
+    }
+
+    /**
+     * Termina la toma; la tarea se completa cuando el codec vació todo y el archivo está cerrado
+     */
+    public Task<Result> stop() {
+        stopRequested = true;
+        thread.shutdown();
+        return recording;
+    }
+
+    private Result record() throws IOException {
+        long cpuStart = SystemClock.currentThreadTimeMillis();
+        long samples = 0;
+        long written = 0;
+        int frequencyIndex = frequencyIndex(config.sampleRate);
+        MediaCodec.BufferInfo info = new MediaCodec.BufferInfo();
+        ByteArrayOutputStream chunk = new ByteArrayOutputStream(CHUNK_BYTES * 2);
+        byte[] frame = new byte[0];
+
+        try (FileOutputStream out = new FileOutputStream(output);
+             AudioPeaks.Writer peaks = new AudioPeaks.Writer(peaksOutput, config.sampleRate)) {
+            codec.start();
+            audioRecord.startRecording();
+
+            boolean inputDone = false;
+            boolean outputDone = false;
+            while (!outputDone) {
+                if (!inputDone) {
+                    int index = codec.dequeueInputBuffer(CODEC_TIMEOUT_US);
+                    if (index >= 0) {
+                        ByteBuffer buffer = codec.getInputBuffer(index);
+                        buffer.clear();
+                        int read = audioRecord.read(buffer, Math.min(readSize, buffer.remaining()));
+                        if (read < 0) {
+                            throw new IOException("Error leyendo el micrófono: " + read);
+                        }
+                        peaks.add(buffer, read);
+                        inputDone = stopRequested;
+                        long presentationUs = samples * 1_000_000L / config.sampleRate;
+                        samples += read / 2;
+                        codec.queueInputBuffer(index, 0, read, presentationUs,
+                                inputDone ? MediaCodec.BUFFER_FLAG_END_OF_STREAM : 0);
+                    }
+                }
+
+                int index = codec.dequeueOutputBuffer(info, inputDone ? CODEC_TIMEOUT_US : 0);
+                while (index >= 0) {
+                    boolean codecConfig = (info.flags & MediaCodec.BUFFER_FLAG_CODEC_CONFIG) != 0;
+                    if (!codecConfig && info.size > 0) {
+                        int length = info.size + ADTS_HEADER_SIZE;
+                        if (frame.length < length) {
+                            frame = new byte[length];
+                        }
+                        writeAdtsHeader(frame, length, frequencyIndex);
+                        ByteBuffer encoded = codec.getOutputBuffer(index);
+                        encoded.position(info.offset);
+                        encoded.get(frame, ADTS_HEADER_SIZE, info.size);
+                        chunk.write(frame, 0, length);
+                    }
+                    codec.releaseOutputBuffer(index, false);
+
+                    if ((info.flags & MediaCodec.BUFFER_FLAG_END_OF_STREAM) != 0) {
+                        outputDone = true;
+                        break;
+                    }
+                    index = codec.dequeueOutputBuffer(info, 0);
+                }
+
+                // Solo tramas completas en cada bloque: el archivo siempre termina en una trama válida
+                if (chunk.size() >= CHUNK_BYTES || (outputDone && chunk.size() > 0)) {
+                    chunk.writeTo(out);
+                    out.getFD().sync();
+                    peaks.flush();
+                    written += chunk.size();
+                    chunk.reset();
+                }
+            }
+        } finally {
+            release();
+        }
+
+        Result result = new Result(output, peaksOutput, samples * 1000 / config.sampleRate, written,
+                SystemClock.currentThreadTimeMillis() - cpuStart);
+        Log.d(TAG, String.format("%s: %.1f s, %dKB, %d B/s, CPU %d ms", config,
+                result.durationMs / 1000f, result.bytes / 1024, result.bytesPerSecond(), result.cpuMs));
+        return result;
+    }
+
+    private void release() {
+        try {
+            audioRecord.stop();
+        } catch (IllegalStateException ignored) {
+            // Nunca llegó a grabar
+        }
+        audioRecord.release();
+        try {
+            codec.stop();
+        } catch (IllegalStateException ignored) {
+            // Nunca llegó a arrancar
+        }
+        codec.release();
+    }
+
+    /**
+     * Cabecera ADTS de 7 bytes (MPEG-4, sin CRC, AAC-LC, mono)
+     */
+    private static void writeAdtsHeader(byte[] frame, int length, int frequencyIndex) {
+        int profile = MediaCodecInfo.CodecProfileLevel.AACObjectLC - 1;
+        int channels = 1;
+        frame[0] = (byte) 0xFF;
+        frame[1] = (byte) 0xF1;
+        frame[2] = (byte) ((profile << 6) | (frequencyIndex << 2) | (channels >> 2));
+        frame[3] = (byte) (((channels & 3) << 6) | (length >> 11));
+        frame[4] = (byte) ((length & 0x7FF) >> 3);
+        frame[5] = (byte) (((length & 7) << 5) | 0x1F);
+        frame[6] = (byte) 0xFC;
+    }
+
+    private static int frequencyIndex(int sampleRate) {
+        for (int i = 0; i < SAMPLE_RATES.length; i++) {
+            if (SAMPLE_RATES[i] == sampleRate) {
+                return i;
+            }
+        }
+        throw new IllegalArgumentException("Frecuencia sin índice ADTS: " + sampleRate);
+    }
+}
@@ -0,0 +1,80 @@
+package com.example.chronicav1.media;
+
+import android.content.Context;
+import android.content.Intent;
+import android.graphics.Bitmap;
+import android.net.Uri;
+import android.provider.MediaStore;
+import android.util.Log;
+
+import androidx.core.content.FileProvider;
+
+import com.google.android.gms.tasks.Task;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Captura de fotos a resolución completa
+ * La cámara escribe directo en un archivo privado de la app (caché) a través de un URI de
+ * FileProvider; no se pasa ningún Bitmap por el Intent. Después el archivo se decodifica ya
+ * reducido con ImageImporter y se borra: nunca hay una foto completa en memoria.
+ */
+public final class CameraCapture {
+
+    private static final String TAG = "CameraCapture";
+    private static final String DIRECTORY = "camera";
+
+    private CameraCapture() {
+    }
+
+    /**
+     * Archivo vacío donde la cámara va a escribir la foto.
+     * Borra capturas anteriores que hayan quedado sin importar.
+     */
+    public static File createTarget(Context context) throws IOException {
+        File directory = new File(context.getCacheDir(), DIRECTORY);
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("No se pudo crear " + directory);
+        }
+        File[] leftovers = directory.listFiles();
+        if (leftovers != null) {
+            for (File leftover : leftovers) {
+                leftover.delete();
+            }
+        }
+        return File.createTempFile("capture_", ".jpg", directory);
+    }
+
+    /**
+     * Intent de cámara con permiso de escritura sobre el archivo destino
+     */
+    public static Intent createIntent(Context context, File target) {
+        Uri uri = FileProvider.getUriForFile(context, authority(context), target);
+        Intent intent = new Intent(MediaStore.ACTION_IMAGE_CAPTURE);
+        intent.putExtra(MediaStore.EXTRA_OUTPUT, uri);
+        intent.addFlags(Intent.FLAG_GRANT_WRITE_URI_PERMISSION | Intent.FLAG_GRANT_READ_URI_PERMISSION);
+        return intent;
+    }
+
+    /**
+     * Decodifica la foto capturada con su lado mayor como máximo maxSide px y borra el archivo
+     */
+    public static Task<Bitmap> load(Context context, File target, int maxSide) {
+        return ImageImporter.load(context, Uri.fromFile(target), maxSide)
+                .addOnCompleteListener(task -> discard(target));
+    }
+
+    /**
+     * Borra el archivo de una captura cancelada o ya importada
+     */
+    public static void discard(File target) {
+        if (target != null && target.exists() && !target.delete()) {
+            Log.w(TAG, "No se pudo borrar " + target);
+        }
+    }
+
+    private static String authority(Context context) {
+        return context.getPackageName() + ".fileprovider";
+    }
+}
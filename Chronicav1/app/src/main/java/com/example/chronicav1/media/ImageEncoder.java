@@ -0,0 +1,163 @@
+package com.example.chronicav1.media;
+
+import android.graphics.Bitmap;
+import android.os.Build;
+import android.os.SystemClock;
+import android.util.Log;
+
+import java.io.ByteArrayOutputStream;
+
+/**
+ * Codifica bitmaps con la mejor calidad que entra en un presupuesto de bytes
+ * Usa WebP con pérdida (WEBP_LOSSY desde Android 11; antes WEBP, que con calidad < 100
+ * también es con pérdida). La calidad se busca por bisección y, si ni la mínima entra,
+ * se reduce la imagen en lugar de rechazar el guardado.
+ * Cada codificación queda en el log con tiempo, tamaño y calidad para ajustar los presupuestos.
+ */
+public final class ImageEncoder {
+
+    private static final String TAG = "ImageEncoder";
+
+    private static final int MIN_QUALITY = 30;
+    private static final int MAX_QUALITY = 90;
+    // Diferencias menores de calidad casi no cambian los bytes: no vale la pena otro intento
+    private static final int QUALITY_STEP = 5;
+    private static final float DOWNSCALE = 0.75f;
+    // Por debajo de este lado ya no se reduce más; se entrega lo que salga con calidad mínima
+    private static final int MIN_SIDE = 64;
+    private static final int STATS_LOG_INTERVAL = 20;
+
+    // Métricas acumuladas (todas las llamadas)
+    private static long encodeCount;
+    private static long attemptCount;
+    private static long totalBytes;
+    private static long totalTimeMs;
+
+    private ImageEncoder() {
+    }
+
+    /**
+     * Resultado de una codificación; width/height pueden ser menores que el bitmap original
+     */
+    public static final class Result {
+        public final byte[] bytes;
+        public final int width;
+        public final int height;
+        public final int quality;
+        public final int attempts;
+        public final long elapsedMs;
+
+        Result(byte[] bytes, int width, int height, int quality, int attempts, long elapsedMs) {
+            this.bytes = bytes;
+            this.width = width;
+            this.height = height;
+            this.quality = quality;
+            this.attempts = attempts;
+            this.elapsedMs = elapsedMs;
+        }
+    }
+
+    /**
+     * Codifica con la calidad más alta cuyo resultado no supera maxBytes.
+     * Llamar fuera del hilo principal: puede codificar varias veces.
+     */
+    public static Result encode(Bitmap bitmap, int maxBytes) {
+        long start = SystemClock.elapsedRealtime();
+        int attempts = 0;
+        Bitmap current = bitmap;
+
+        while (true) {
+            byte[] best = compress(current, MAX_QUALITY);
+            int bestQuality = MAX_QUALITY;
+            attempts++;
+
+            if (best.length > maxBytes) {
+                // Bisección sobre los escalones de calidad por debajo del máximo
+                best = null;
+                int low = 0;
+                int high = (MAX_QUALITY - MIN_QUALITY) / QUALITY_STEP - 1;
+                while (low <= high) {
+                    int middle = (low + high) >>> 1;
+                    int quality = MIN_QUALITY + middle * QUALITY_STEP;
+                    byte[] output = compress(current, quality);
+                    attempts++;
+                    if (output.length <= maxBytes) {
+                        best = output;
+                        bestQuality = quality;
+                        low = middle + 1;
+                    } else {
+                        high = middle - 1;
+                    }
+                }
+            }
+
+            boolean smallest = Math.max(current.getWidth(), current.getHeight()) <= MIN_SIDE;
+            if (best == null && smallest) {
+                best = compress(current, MIN_QUALITY);
+                bestQuality = MIN_QUALITY;
+                attempts++;
+            }
+            if (best != null) {
+                Result result = new Result(best, current.getWidth(), current.getHeight(), bestQuality,
+                        attempts, SystemClock.elapsedRealtime() - start);
+                recycleIntermediate(current, bitmap);
+                record(result, maxBytes);
+                return result;
+            }
+
+            // Ni con calidad mínima entra: reducir dimensiones y volver a buscar
+            Bitmap scaled = Bitmap.createScaledBitmap(current,
+                    Math.max(1, Math.round(current.getWidth() * DOWNSCALE)),
+                    Math.max(1, Math.round(current.getHeight() * DOWNSCALE)), true);
+            if (scaled != current) {
+                recycleIntermediate(current, bitmap);
+            }
+            current = scaled;
+        }
+    }
+
+    /**
+     * Libera ya los píxeles de una reducción propia; el bitmap de quien llama no se toca
+     */
+    private static void recycleIntermediate(Bitmap current, Bitmap source) {
+        if (current != source) {
+            current.recycle();
+        }
+    }
+
+    /**
+     * Resumen de métricas: codificaciones, intentos por imagen, tamaño y tiempo medios
+     */
+    public static synchronized String getStats() {
+        if (encodeCount == 0) {
+            return "sin codificaciones";
+        }
+        return String.format("encodes=%d attempts/encode=%.1f avgSize=%dKB avgTime=%dms",
+                encodeCount, (double) attemptCount / encodeCount,
+                totalBytes / encodeCount / 1024, totalTimeMs / encodeCount);
+    }
+
+    private static synchronized void record(Result result, int maxBytes) {
+        encodeCount++;
+        attemptCount += result.attempts;
+        totalBytes += result.bytes.length;
+        totalTimeMs += result.elapsedMs;
+
+        Log.d(TAG, String.format("%dx%d q=%d %dKB (presupuesto %dKB) en %d ms, %d intentos",
+                result.width, result.height, result.quality, result.bytes.length / 1024,
+                maxBytes / 1024, result.elapsedMs, result.attempts));
+        if (encodeCount % STATS_LOG_INTERVAL == 0) {
+            Log.d(TAG, getStats());
+        }
+    }
+
+    @SuppressWarnings("deprecation")
+    private static byte[] compress(Bitmap bitmap, int quality) {
+        Bitmap.CompressFormat format = Build.VERSION.SDK_INT >= Build.VERSION_CODES.R
+                ? Bitmap.CompressFormat.WEBP_LOSSY
+                : Bitmap.CompressFormat.WEBP;
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        bitmap.compress(format, quality, out);
+        return out.toByteArray();
+    }
+}
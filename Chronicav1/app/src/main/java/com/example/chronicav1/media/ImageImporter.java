@@ -0,0 +1,69 @@
+package com.example.chronicav1.media;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.ImageDecoder;
+import android.net.Uri;
+import android.os.SystemClock;
+import android.util.Log;
+import android.util.Size;
+
+import com.google.android.gms.tasks.Task;
+import com.google.android.gms.tasks.Tasks;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Importa imágenes de la galería ya reducidas al tamaño que se va a guardar
+ * ImageDecoder lee primero la cabecera (dimensiones) y decodifica directamente al tamaño
+ * pedido, muestreando al leer; una foto de 50 MP nunca se carga entera en memoria.
+ * También aplica la orientación EXIF. Todo corre fuera del hilo principal.
+ */
+public final class ImageImporter {
+
+    private static final String TAG = "ImageImporter";
+
+    private static final ExecutorService decodeExecutor = Executors.newSingleThreadExecutor();
+
+    private ImageImporter() {
+    }
+
+    /**
+     * Decodifica la imagen con su lado mayor como máximo maxSide px (nunca la agranda)
+     */
+    public static Task<Bitmap> load(Context context, Uri uri, int maxSide) {
+        ImageDecoder.Source source = ImageDecoder.createSource(
+                context.getApplicationContext().getContentResolver(), uri);
+        return Tasks.call(decodeExecutor, () -> {
+            long start = SystemClock.elapsedRealtime();
+            int[] original = new int[2];
+
+            Bitmap bitmap = ImageDecoder.decodeBitmap(source, (decoder, info, src) -> {
+                // Las dimensiones ya vienen rotadas según EXIF
+                Size size = info.getSize();
+                original[0] = size.getWidth();
+                original[1] = size.getHeight();
+
+                int[] target = fitLongSide(size.getWidth(), size.getHeight(), maxSide);
+                decoder.setTargetSize(target[0], target[1]);
+                // Software: el bitmap se vuelve a escalar y comprimir en ImageVariants
+                decoder.setAllocator(ImageDecoder.ALLOCATOR_SOFTWARE);
+            });
+
+            Log.d(TAG, String.format("%dx%d -> %dx%d (%dKB) en %d ms",
+                    original[0], original[1], bitmap.getWidth(), bitmap.getHeight(),
+                    bitmap.getByteCount() / 1024, SystemClock.elapsedRealtime() - start));
+            return bitmap;
+        });
+    }
+
+    static int[] fitLongSide(int width, int height, int maxSide) {
+        int longSide = Math.max(width, height);
+        if (longSide <= maxSide) {
+            return new int[]{width, height};
+        }
+        float scale = (float) maxSide / longSide;
+        return new int[]{Math.max(1, Math.round(width * scale)), Math.max(1, Math.round(height * scale))};
+    }
+}
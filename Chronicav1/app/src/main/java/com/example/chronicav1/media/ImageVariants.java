@@ -0,0 +1,117 @@
+package com.example.chronicav1.media;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+
+import com.example.chronicav1.data.BlobStore;
+import com.google.android.gms.tasks.Task;
+import com.google.android.gms.tasks.Tasks;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Variantes de tamaño de la imagen de una entrada, generadas una vez al guardar
+ * full: lado mayor de 800 px (detalle). card y thumb: lado menor de 320 y 160 px (lista y mapa).
+ * Se codifican con ImageEncoder (WebP) ajustando la calidad a un presupuesto de bytes por variante.
+ * Cada variante es un blob propio en BlobStore; quien muestra la imagen pide la más chica
+ * que cubra su vista, así una fila de la lista no descarga ni decodifica la imagen completa.
+ */
+public final class ImageVariants {
+
+    public static final String FIELD_FULL = "imageHash";
+    public static final String FIELD_CARD = "cardHash";
+    public static final String FIELD_THUMB = "thumbHash";
+
+    public static final int FULL_SIZE = 800;
+    public static final int CARD_SIZE = 320;
+    public static final int THUMB_SIZE = 160;
+
+    private static final String CONTENT_TYPE = "image/webp";
+
+    // Presupuestos de bytes por variante
+    private static final int FULL_MAX_BYTES = 150_000;
+    private static final int CARD_MAX_BYTES = 35_000;
+    private static final int THUMB_MAX_BYTES = 10_000;
+
+    private static final ExecutorService encodeExecutor = Executors.newSingleThreadExecutor();
+
+    private ImageVariants() {
+    }
+
+    /**
+     * Escala, comprime y guarda las tres variantes fuera del hilo principal.
+     * Devuelve los campos para el documento: hash de cada variante y dimensiones de la completa.
+     */
+    public static Task<Map<String, Object>> save(Context context, String ownerId, Bitmap source) {
+        BlobStore blobStore = BlobStore.getInstance(context);
+        return Tasks.call(encodeExecutor, () -> {
+            Bitmap full = scaleLongSide(source, FULL_SIZE);
+            // Cada variante sale de la anterior: reducir poco a poco conserva la nitidez
+            Bitmap card = scaleShortSide(full, CARD_SIZE);
+            Bitmap thumb = scaleShortSide(card, THUMB_SIZE);
+
+            // Si la completa no entra en su presupuesto el encoder la reduce: guardar sus medidas reales
+            ImageEncoder.Result fullResult = ImageEncoder.encode(full, FULL_MAX_BYTES);
+            byte[] cardBytes = ImageEncoder.encode(card, CARD_MAX_BYTES).bytes;
+            byte[] thumbBytes = ImageEncoder.encode(thumb, THUMB_MAX_BYTES).bytes;
+
+            Map<String, Object> fields = new HashMap<>();
+            fields.put("imageWidth", fullResult.width);
+            fields.put("imageHeight", fullResult.height);
+            fields.put(FIELD_FULL, Tasks.await(blobStore.put(ownerId, fullResult.bytes, CONTENT_TYPE)));
+            fields.put(FIELD_CARD, Tasks.await(blobStore.put(ownerId, cardBytes, CONTENT_TYPE)));
+            fields.put(FIELD_THUMB, Tasks.await(blobStore.put(ownerId, thumbBytes, CONTENT_TYPE)));
+            return fields;
+        });
+    }
+
+    /**
+     * Campos que dejan la entrada sin imagen
+     */
+    public static Map<String, Object> cleared() {
+        Map<String, Object> fields = new HashMap<>();
+        fields.put(FIELD_FULL, "");
+        fields.put(FIELD_CARD, "");
+        fields.put(FIELD_THUMB, "");
+        fields.put("imageWidth", 0);
+        fields.put("imageHeight", 0);
+        return fields;
+    }
+
+    /**
+     * Hash de la variante más chica cuyo lado menor cubre reqSize px.
+     * Las entradas anteriores a las variantes solo tienen la completa.
+     */
+    public static String pick(String fullHash, String cardHash, String thumbHash, int reqSize) {
+        if (reqSize <= THUMB_SIZE && isPresent(thumbHash)) {
+            return thumbHash;
+        }
+        if (reqSize <= CARD_SIZE && isPresent(cardHash)) {
+            return cardHash;
+        }
+        return fullHash;
+    }
+
+    private static boolean isPresent(String hash) {
+        return hash != null && !hash.isEmpty();
+    }
+
+    private static Bitmap scaleLongSide(Bitmap bitmap, int size) {
+        int longSide = Math.max(bitmap.getWidth(), bitmap.getHeight());
+        return longSide <= size ? bitmap : scale(bitmap, (float) size / longSide);
+    }
+
+    private static Bitmap scaleShortSide(Bitmap bitmap, int size) {
+        int shortSide = Math.min(bitmap.getWidth(), bitmap.getHeight());
+        return shortSide <= size ? bitmap : scale(bitmap, (float) size / shortSide);
+    }
+
+    private static Bitmap scale(Bitmap bitmap, float factor) {
+        int width = Math.max(1, Math.round(bitmap.getWidth() * factor));
+        int height = Math.max(1, Math.round(bitmap.getHeight() * factor));
+        return Bitmap.createScaledBitmap(bitmap, width, height, true);
+    }
+}
@@ -0,0 +1,231 @@
+package com.example.chronicav1.media;
+
+import android.media.MediaPlayer;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.util.Log;
+
+import com.google.android.gms.tasks.Task;
+import com.google.android.gms.tasks.TaskCompletionSource;
+import com.google.android.gms.tasks.Tasks;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reproductores de audio compartidos por todo el proceso
+ * Las pantallas piden un reproductor recién con el primer play (preparación perezosa) y lo
+ * devuelven al dejar de verse. Un reproductor devuelto sigue preparado un tiempo: volver a la
+ * misma entrada reanuda sin preparar otra vez. Pasados IDLE_TIMEOUT_MS sin uso se libera.
+ * Viven como mucho MAX_PLAYERS reproductores nativos; al llegar al límite se recicla con
+ * reset() el libre usado hace más tiempo. Solo se usa desde el hilo principal.
+ */
+public final class PlayerPool {
+
+    private static final String TAG = "PlayerPool";
+
+    private static final int MAX_PLAYERS = 3;
+    private static final long IDLE_TIMEOUT_MS = 30_000;
+
+    /**
+     * Asigna el audio al reproductor (setDataSource); el pool se encarga de prepararlo
+     */
+    public interface Source {
+        void apply(MediaPlayer player) throws IOException;
+    }
+
+    private static PlayerPool instance;
+
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    // Orden de uso: el primero es el que se usó hace más tiempo
+    private final List<Slot> slots = new ArrayList<>();
+
+    private static final class Slot {
+        final MediaPlayer player = new MediaPlayer();
+        String key;
+        boolean inUse;
+        boolean prepared;
+        TaskCompletionSource<MediaPlayer> preparing;
+        long idleSince;
+        // Momento en que se pidió; 0 cuando ya se midió el tiempo hasta el primer audio
+        long requestedAt;
+        boolean warm;
+    }
+
+    private PlayerPool() {
+    }
+
+    public static synchronized PlayerPool getInstance() {
+        if (instance == null) {
+            instance = new PlayerPool();
+        }
+        return instance;
+    }
+
+    /**
+     * Reproductor preparado con el audio de key. Si hay uno libre con ese audio se entrega
+     * tal cual (conserva la posición); si no, se prepara uno con source.
+     */
+    public Task<MediaPlayer> acquire(String key, Source source) {
+        long now = SystemClock.elapsedRealtime();
+        for (Slot slot : slots) {
+            if (!slot.inUse && key.equals(slot.key)) {
+                take(slot, now);
+                slot.warm = slot.prepared;
+                return slot.prepared ? Tasks.forResult(slot.player) : slot.preparing.getTask();
+            }
+        }
+
+        Slot slot = obtainSlot();
+        take(slot, now);
+        slot.key = key;
+        slot.warm = false;
+        slot.prepared = false;
+        TaskCompletionSource<MediaPlayer> preparing = new TaskCompletionSource<>();
+        slot.preparing = preparing;
+
+        MediaPlayer player = slot.player;
+        player.setOnPreparedListener(mp -> {
+            slot.prepared = true;
+            Log.d(TAG, "Preparado " + key + " en " + (SystemClock.elapsedRealtime() - now) + " ms");
+            preparing.trySetResult(mp);
+        });
+        player.setOnErrorListener((mp, what, extra) -> {
+            discard(slot);
+            preparing.trySetException(new IOException("Error de reproducción " + what + "/" + extra));
+            return true;
+        });
+        try {
+            source.apply(player);
+            player.prepareAsync();
+        } catch (IOException | RuntimeException e) {
+            discard(slot);
+            preparing.trySetException(e);
+        }
+        return preparing.getTask();
+    }
+
+    /**
+     * Empieza a sonar; la primera vez tras acquire registra el tiempo hasta el primer audio
+     */
+    public void start(MediaPlayer player) {
+        player.start();
+        Slot slot = slotOf(player);
+        if (slot != null && slot.requestedAt != 0) {
+            Log.d(TAG, String.format("Primer audio en %d ms (%s), reproductores vivos: %d",
+                    SystemClock.elapsedRealtime() - slot.requestedAt,
+                    slot.warm ? "ya preparado" : "preparado al pedirlo", slots.size()));
+            slot.requestedAt = 0;
+        }
+    }
+
+    /**
+     * Devuelve el reproductor: queda en pausa y preparado hasta que se reutilice o caduque
+     */
+    public void release(MediaPlayer player) {
+        Slot slot = slotOf(player);
+        if (slot == null || !slot.inUse) {
+            return;
+        }
+        if (slot.prepared && player.isPlaying()) {
+            player.pause();
+        }
+        player.setOnCompletionListener(null);
+        player.setOnErrorListener((mp, what, extra) -> {
+            discard(slot);
+            return true;
+        });
+        slot.inUse = false;
+        slot.requestedAt = 0;
+        slot.idleSince = SystemClock.elapsedRealtime();
+        mainHandler.removeCallbacks(trimIdle);
+        mainHandler.postDelayed(trimIdle, IDLE_TIMEOUT_MS);
+    }
+
+    /**
+     * Libera el reproductor sin reutilizarlo (por ejemplo tras un error)
+     */
+    public void discard(MediaPlayer player) {
+        Slot slot = slotOf(player);
+        if (slot != null) {
+            discard(slot);
+        }
+    }
+
+    public int getAliveCount() {
+        return slots.size();
+    }
+
+    private void take(Slot slot, long now) {
+        slot.inUse = true;
+        slot.requestedAt = now;
+        slots.remove(slot);
+        slots.add(slot);
+    }
+
+    private Slot obtainSlot() {
+        if (slots.size() >= MAX_PLAYERS) {
+            for (Slot slot : slots) {
+                if (!slot.inUse) {
+                    // reset() conserva el reproductor nativo; solo cambia el audio
+                    cancelPreparing(slot);
+                    slot.player.reset();
+                    return slot;
+                }
+            }
+            Log.w(TAG, "Todos los reproductores en uso, se crea uno más");
+        }
+        Slot slot = new Slot();
+        slots.add(slot);
+        Log.d(TAG, "Reproductores vivos: " + slots.size());
+        return slot;
+    }
+
+    private void discard(Slot slot) {
+        if (!slots.remove(slot)) {
+            return;
+        }
+        cancelPreparing(slot);
+        slot.player.release();
+        Log.d(TAG, "Reproductores vivos: " + slots.size());
+    }
+
+    private static void cancelPreparing(Slot slot) {
+        if (slot.preparing != null) {
+            slot.preparing.trySetException(new IOException("Preparación cancelada"));
+        }
+    }
+
+    private Slot slotOf(MediaPlayer player) {
+        for (Slot slot : slots) {
+            if (slot.player == player) {
+                return slot;
+            }
+        }
+        return null;
+    }
+
+    private final Runnable trimIdle = new Runnable() {
+        @Override
+        public void run() {
+            long now = SystemClock.elapsedRealtime();
+            long nextExpiry = Long.MAX_VALUE;
+            for (Slot slot : new ArrayList<>(slots)) {
+                if (slot.inUse) {
+                    continue;
+                }
+                long expiry = slot.idleSince + IDLE_TIMEOUT_MS;
+                if (expiry <= now) {
+                    discard(slot);
+                } else {
+                    nextExpiry = Math.min(nextExpiry, expiry);
+                }
+            }
+            if (nextExpiry != Long.MAX_VALUE) {
+                mainHandler.postDelayed(this, nextExpiry - now);
+            }
+        }
+    };
+}
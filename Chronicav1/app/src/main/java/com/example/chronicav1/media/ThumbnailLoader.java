@@ -0,0 +1,203 @@
+package com.example.chronicav1.media;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.util.Log;
+import android.util.LruCache;
+import android.view.ViewGroup;
+import android.widget.ImageView;
+
+import com.example.chronicav1.R;
+import com.example.chronicav1.models.EntrySummary;
+import com.example.chronicav1.utils.EntryImages;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Carga miniaturas de entradas fuera del hilo principal
+ * Pide la variante de imagen más chica que cubre la vista (ver ImageVariants), decodifica
+ * con inSampleSize a su tamaño y guarda los bitmaps en una LRU acotada por memoria,
+ * con clave id de entrada + hash de la variante.
+ * Los bytes se piden de forma asíncrona (disco o red); el pool solo recibe la decodificación.
+ */
+public class ThumbnailLoader {
+
+    private static final String TAG = "ThumbnailLoader";
+    private static final int DEFAULT_SIZE_DP = 100;
+    private static final int STATS_LOG_INTERVAL = 100;
+
+    private static ThumbnailLoader instance;
+
+    private final Context appContext;
+    private final LruCache<String, Bitmap> cache;
+    private final ExecutorService decodeExecutor = Executors.newFixedThreadPool(2);
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    // Métricas para medir el rendimiento del scroll
+    private long bindCount;
+    private long hitCount;
+    private long decodeCount;
+    private long decodeTimeMs;
+
+    private ThumbnailLoader(Context context) {
+        appContext = context.getApplicationContext();
+
+        // Usar 1/8 de la memoria disponible para miniaturas (en KB)
+        int cacheSizeKb = (int) (Runtime.getRuntime().maxMemory() / 1024 / 8);
+        cache = new LruCache<String, Bitmap>(cacheSizeKb) {
+            @Override
+            protected int sizeOf(String key, Bitmap bitmap) {
+                return bitmap.getByteCount() / 1024;
+            }
+        };
+    }
+
+    public static synchronized ThumbnailLoader getInstance(Context context) {
+        if (instance == null) {
+            instance = new ThumbnailLoader(context);
+        }
+        return instance;
+    }
+
+    /**
+     * Muestra la miniatura de la entrada en la vista; usa la caché si es posible
+     */
+    public void load(EntrySummary entry, ImageView target, int placeholderRes) {
+        cancel(target);
+        bindCount++;
+
+        if (!entry.hasImage()) {
+            target.setImageResource(placeholderRes);
+            logStatsIfNeeded();
+            return;
+        }
+
+        int[] size = targetSize(target);
+        int reqSize = Math.max(size[0], size[1]);
+        String key = cacheKey(entry, reqSize);
+        Bitmap cached = cache.get(key);
+        if (cached != null) {
+            hitCount++;
+            target.setImageBitmap(cached);
+            logStatsIfNeeded();
+            return;
+        }
+
+        target.setImageResource(placeholderRes);
+
+        Request request = new Request();
+        target.setTag(R.id.thumbnail_request, request);
+        // Una descarga lenta no ocupa un hilo de decodificación mientras espera
+        EntryImages.loadBytes(appContext, entry, reqSize)
+                .addOnSuccessListener(decodeExecutor, bytes -> {
+                    if (bytes == null || request.cancelled) {
+                        return;
+                    }
+                    long start = SystemClock.elapsedRealtime();
+                    Bitmap bitmap = decodeSampled(bytes, size[0], size[1]);
+                    long elapsed = SystemClock.elapsedRealtime() - start;
+                    if (bitmap == null) {
+                        return;
+                    }
+
+                    mainHandler.post(() -> {
+                        decodeCount++;
+                        decodeTimeMs += elapsed;
+                        cache.put(key, bitmap);
+
+                        // La vista pudo reciclarse para otra entrada mientras se decodificaba
+                        if (target.getTag(R.id.thumbnail_request) == request) {
+                            target.setTag(R.id.thumbnail_request, null);
+                            target.setImageBitmap(bitmap);
+                        }
+                    });
+                })
+                .addOnFailureListener(e ->
+                        Log.w(TAG, "No se pudo cargar la miniatura de " + entry.getId(), e));
+        logStatsIfNeeded();
+    }
+
+    /**
+     * Cancela la carga pendiente de la vista (por ejemplo al reciclar un ViewHolder)
+     */
+    public void cancel(ImageView target) {
+        Object tag = target.getTag(R.id.thumbnail_request);
+        if (tag instanceof Request) {
+            // La lectura ya pedida termina igual; solo se evita decodificar lo que nadie mostrará
+            ((Request) tag).cancelled = true;
+        }
+        target.setTag(R.id.thumbnail_request, null);
+    }
+
+    /**
+     * Resumen de métricas: tiempo medio de decodificación por bind y tasa de aciertos
+     */
+    public String getStats() {
+        double hitRate = bindCount == 0 ? 0 : (100.0 * hitCount / bindCount);
+        double avgDecode = decodeCount == 0 ? 0 : ((double) decodeTimeMs / decodeCount);
+        return String.format("binds=%d hits=%d (%.1f%%) decodes=%d avgDecode=%.1fms cache=%dKB/%dKB",
+                bindCount, hitCount, hitRate, decodeCount, avgDecode, cache.size(), cache.maxSize());
+    }
+
+    private void logStatsIfNeeded() {
+        if (bindCount % STATS_LOG_INTERVAL == 0) {
+            Log.d(TAG, getStats());
+        }
+    }
+
+    private static String cacheKey(EntrySummary entry, int reqSize) {
+        String contentHash = EntryImages.variantHash(entry, reqSize);
+        if (contentHash == null || contentHash.isEmpty()) {
+            // Entradas antiguas con Base64: el resumen no lo trae, la versión identifica la imagen
+            contentHash = "legacy-" + entry.getUpdatedAt();
+        }
+        return entry.getId() + ":" + contentHash;
+    }
+
+    private int[] targetSize(ImageView target) {
+        int width = target.getWidth();
+        int height = target.getHeight();
+
+        if (width <= 0 || height <= 0) {
+            ViewGroup.LayoutParams params = target.getLayoutParams();
+            int fallback = Math.round(DEFAULT_SIZE_DP * appContext.getResources().getDisplayMetrics().density);
+            width = params != null && params.width > 0 ? params.width : fallback;
+            height = params != null && params.height > 0 ? params.height : fallback;
+        }
+        return new int[]{width, height};
+    }
+
+    /**
+     * Decodifica con la mayor potencia de 2 que mantenga el bitmap >= tamaño pedido
+     */
+    public static Bitmap decodeSampled(byte[] bytes, int reqWidth, int reqHeight) {
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        BitmapFactory.decodeByteArray(bytes, 0, bytes.length, options);
+
+        options.inSampleSize = calculateInSampleSize(options.outWidth, options.outHeight, reqWidth, reqHeight);
+        options.inJustDecodeBounds = false;
+        return BitmapFactory.decodeByteArray(bytes, 0, bytes.length, options);
+    }
+
+    public static int calculateInSampleSize(int width, int height, int reqWidth, int reqHeight) {
+        int inSampleSize = 1;
+        if (height > reqHeight || width > reqWidth) {
+            int halfHeight = height / 2;
+            int halfWidth = width / 2;
+            while ((halfHeight / inSampleSize) >= reqHeight && (halfWidth / inSampleSize) >= reqWidth) {
+                inSampleSize *= 2;
+            }
+        }
+        return inSampleSize;
+    }
+
+    private static class Request {
+        volatile boolean cancelled;
+    }
+}
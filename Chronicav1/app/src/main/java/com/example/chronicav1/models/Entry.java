@@ -1,12 +1,12 @@
 package com.example.chronicav1.models;
 
-import java.io.Serializable;
+import java.util.Objects;
 
 /**
  * Modelo de datos para una entrada del diario
- * Implementa Serializable para poder pasar objetos entre Activities
+ * Entre Activities se pasa solo el id; la entrada se resuelve con EntryRepository
  */
-public class Entry implements Serializable {
+public class Entry {
     private String id;
     private String userId;
     private String title;
@@ -14,10 +14,22 @@ public class Entry implements Serializable {
     private String date;
     private String location;
     private String imageBase64;
+    private String imageHash;
+    // Variantes reducidas de la imagen (ver ImageVariants)
+    private String cardHash;
+    private String thumbHash;
+    private int imageWidth;
+    private int imageHeight;
     private String audioFileName;
+    // Copia del audio en BlobStore; es la que se sube a Storage
+    private String audioHash;
+    // Forma de onda del audio (ver AudioPeaks)
+    private String peaksHash;
     private double latitude;
     private double longitude;
+    private String geohash;
     private long timestamp;
+    private long updatedAt;
 
     // Constructor vacío requerido para Firebase
     public Entry() {
@@ -94,6 +106,46 @@ public class Entry implements Serializable {
         this.imageBase64 = imageUrl;
     }
 
+    public String getImageHash() {
+        return imageHash;
+    }
+
+    public void setImageHash(String imageHash) {
+        this.imageHash = imageHash;
+    }
+
+    public String getCardHash() {
+        return cardHash;
+    }
+
+    public void setCardHash(String cardHash) {
+        this.cardHash = cardHash;
+    }
+
+    public String getThumbHash() {
+        return thumbHash;
+    }
+
+    public void setThumbHash(String thumbHash) {
+        this.thumbHash = thumbHash;
+    }
+
+    public int getImageWidth() {
+        return imageWidth;
+    }
+
+    public void setImageWidth(int imageWidth) {
+        this.imageWidth = imageWidth;
+    }
+
+    public int getImageHeight() {
+        return imageHeight;
+    }
+
+    public void setImageHeight(int imageHeight) {
+        this.imageHeight = imageHeight;
+    }
+
     public String getAudioFileName() {
         return audioFileName;
     }
@@ -102,6 +154,22 @@ public class Entry implements Serializable {
         this.audioFileName = audioUrl;
     }
 
+    public String getAudioHash() {
+        return audioHash;
+    }
+
+    public void setAudioHash(String audioHash) {
+        this.audioHash = audioHash;
+    }
+
+    public String getPeaksHash() {
+        return peaksHash;
+    }
+
+    public void setPeaksHash(String peaksHash) {
+        this.peaksHash = peaksHash;
+    }
+
     public double getLatitude() {
         return latitude;
     }
@@ -118,6 +186,14 @@ public class Entry implements Serializable {
         this.longitude = longitude;
     }
 
+    public String getGeohash() {
+        return geohash;
+    }
+
+    public void setGeohash(String geohash) {
+        this.geohash = geohash;
+    }
+
     public long getTimestamp() {
         return timestamp;
     }
@@ -126,6 +202,36 @@ public class Entry implements Serializable {
         this.timestamp = timestamp;
     }
 
+    public long getUpdatedAt() {
+        return updatedAt;
+    }
+
+    public void setUpdatedAt(long updatedAt) {
+        this.updatedAt = updatedAt;
+    }
+
+    // Compara la versión del contenido; las entradas antiguas sin updatedAt se comparan campo a campo
+    public boolean hasSameContent(Entry other) {
+        if (updatedAt != other.updatedAt) {
+            return false;
+        }
+        if (updatedAt != 0) {
+            return true;
+        }
+        return Objects.equals(title, other.title)
+                && Objects.equals(content, other.content)
+                && Objects.equals(date, other.date)
+                && Objects.equals(location, other.location)
+                && Objects.equals(imageHash, other.imageHash)
+                && Objects.equals(imageBase64, other.imageBase64);
+    }
+
+    // Indica si la entrada tiene imagen (blob por hash o Base64 heredado)
+    public boolean hasImage() {
+        return (imageHash != null && !imageHash.isEmpty())
+                || (imageBase64 != null && !imageBase64.isEmpty());
+    }
+
     // Método para obtener vista previa del contenido
     public String getPreview() {
         if (content != null && content.length() > 100) {
@@ -0,0 +1,202 @@
+package com.example.chronicav1.models;
+
+import java.util.Objects;
+
+/**
+ * Resumen de una entrada: solo lo que muestran la lista y el mapa
+ * Vive en la colección "entrySummaries" con el mismo id que la entrada;
+ * el contenido completo, el audio y la imagen Base64 se leen aparte (ver Entry).
+ */
+public class EntrySummary {
+    private String id;
+    private String userId;
+    private String title;
+    private String preview;
+    private String terms;
+    private String date;
+    private String location;
+    private String imageHash;
+    // Variantes reducidas de la imagen (ver ImageVariants)
+    private String cardHash;
+    private String thumbHash;
+    private int imageWidth;
+    private int imageHeight;
+    private boolean legacyImage;
+    private double latitude;
+    private double longitude;
+    private String geohash;
+    private long timestamp;
+    private long updatedAt;
+
+    // Constructor vacío requerido para Firebase
+    public EntrySummary() {
+    }
+
+    // Getters y Setters
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public String getUserId() {
+        return userId;
+    }
+
+    public void setUserId(String userId) {
+        this.userId = userId;
+    }
+
+    public String getTitle() {
+        return title;
+    }
+
+    public void setTitle(String title) {
+        this.title = title;
+    }
+
+    public String getPreview() {
+        return preview;
+    }
+
+    public void setPreview(String preview) {
+        this.preview = preview;
+    }
+
+    // Palabras distintas del contenido, para buscar sin descargar el texto completo
+    public String getTerms() {
+        return terms;
+    }
+
+    public void setTerms(String terms) {
+        this.terms = terms;
+    }
+
+    public String getDate() {
+        return date;
+    }
+
+    public void setDate(String date) {
+        this.date = date;
+    }
+
+    public String getLocation() {
+        return location;
+    }
+
+    public void setLocation(String location) {
+        this.location = location;
+    }
+
+    public String getImageHash() {
+        return imageHash;
+    }
+
+    public void setImageHash(String imageHash) {
+        this.imageHash = imageHash;
+    }
+
+    public String getCardHash() {
+        return cardHash;
+    }
+
+    public void setCardHash(String cardHash) {
+        this.cardHash = cardHash;
+    }
+
+    public String getThumbHash() {
+        return thumbHash;
+    }
+
+    public void setThumbHash(String thumbHash) {
+        this.thumbHash = thumbHash;
+    }
+
+    public int getImageWidth() {
+        return imageWidth;
+    }
+
+    public void setImageWidth(int imageWidth) {
+        this.imageWidth = imageWidth;
+    }
+
+    public int getImageHeight() {
+        return imageHeight;
+    }
+
+    public void setImageHeight(int imageHeight) {
+        this.imageHeight = imageHeight;
+    }
+
+    // true si la imagen solo existe como Base64 en el documento completo
+    public boolean isLegacyImage() {
+        return legacyImage;
+    }
+
+    public void setLegacyImage(boolean legacyImage) {
+        this.legacyImage = legacyImage;
+    }
+
+    public double getLatitude() {
+        return latitude;
+    }
+
+    public void setLatitude(double latitude) {
+        this.latitude = latitude;
+    }
+
+    public double getLongitude() {
+        return longitude;
+    }
+
+    public void setLongitude(double longitude) {
+        this.longitude = longitude;
+    }
+
+    public String getGeohash() {
+        return geohash;
+    }
+
+    public void setGeohash(String geohash) {
+        this.geohash = geohash;
+    }
+
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    public void setTimestamp(long timestamp) {
+        this.timestamp = timestamp;
+    }
+
+    public long getUpdatedAt() {
+        return updatedAt;
+    }
+
+    public void setUpdatedAt(long updatedAt) {
+        this.updatedAt = updatedAt;
+    }
+
+    // Compara la versión del contenido; las entradas antiguas sin updatedAt se comparan campo a campo
+    public boolean hasSameContent(EntrySummary other) {
+        if (updatedAt != other.updatedAt) {
+            return false;
+        }
+        if (updatedAt != 0) {
+            return true;
+        }
+        return Objects.equals(title, other.title)
+                && Objects.equals(preview, other.preview)
+                && Objects.equals(date, other.date)
+                && Objects.equals(location, other.location)
+                && Objects.equals(imageHash, other.imageHash)
+                && legacyImage == other.legacyImage;
+    }
+
+    // Indica si la entrada tiene imagen (blob por hash o Base64 heredado)
+    public boolean hasImage() {
+        return (imageHash != null && !imageHash.isEmpty()) || legacyImage;
+    }
+}
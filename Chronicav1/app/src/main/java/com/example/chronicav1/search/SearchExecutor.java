@@ -0,0 +1,154 @@
+package com.example.chronicav1.search;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import com.example.chronicav1.models.EntrySummary;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Ejecuta búsquedas sobre el SearchIndex fuera del hilo principal
+ * Espera a que el usuario deje de escribir (debounce), cancela la consulta anterior
+ * si llega una nueva y solo publica el resultado de la consulta más reciente.
+ * Registra la latencia de cada consulta y escribe percentiles en el log.
+ */
+public class SearchExecutor {
+
+    public interface Callback {
+        void onResults(String query, List<EntrySummary> results);
+    }
+
+    private static final String TAG = "SearchExecutor";
+    private static final long DEBOUNCE_MS = 150;
+    private static final int LATENCY_WINDOW = 128;
+    private static final int STATS_LOG_INTERVAL = 50;
+
+    private final SearchIndex index;
+    private final Callback callback;
+    private final ExecutorService searchExecutor = Executors.newSingleThreadExecutor();
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    // Solo se accede desde el hilo principal
+    private int generation = 0;
+    private Runnable pendingDispatch;
+    private Future<?> inFlight;
+
+    // Métricas: ventana circular de latencias (ms) de consulta a publicación
+    private final long[] latencies = new long[LATENCY_WINDOW];
+    private int latencyCount;
+    private long completedCount;
+    private long staleCount;
+
+    public SearchExecutor(SearchIndex index, Callback callback) {
+        this.index = index;
+        this.callback = callback;
+    }
+
+    /**
+     * Programa la consulta tras el debounce; cualquier consulta anterior queda descartada
+     */
+    public void submit(String query) {
+        schedule(query, DEBOUNCE_MS);
+    }
+
+    /**
+     * Ejecuta la consulta sin esperar (por ejemplo cuando cambian los datos)
+     */
+    public void submitNow(String query) {
+        schedule(query, 0);
+    }
+
+    /**
+     * Descarta la consulta pendiente y la que esté en curso
+     */
+    public void cancel() {
+        generation++;
+        if (pendingDispatch != null) {
+            mainHandler.removeCallbacks(pendingDispatch);
+            pendingDispatch = null;
+        }
+        if (inFlight != null) {
+            if (!inFlight.isDone()) {
+                staleCount++;
+            }
+            inFlight.cancel(true);
+            inFlight = null;
+        }
+    }
+
+    public void shutdown() {
+        cancel();
+        searchExecutor.shutdownNow();
+    }
+
+    private void schedule(String query, long delayMs) {
+        cancel();
+        int queryGeneration = generation;
+
+        pendingDispatch = () -> {
+            pendingDispatch = null;
+            dispatch(query, queryGeneration);
+        };
+        if (delayMs > 0) {
+            mainHandler.postDelayed(pendingDispatch, delayMs);
+        } else {
+            pendingDispatch.run();
+        }
+    }
+
+    private void dispatch(String query, int queryGeneration) {
+        long startNs = System.nanoTime();
+        inFlight = searchExecutor.submit(() -> {
+            if (Thread.currentThread().isInterrupted()) {
+                return;
+            }
+            List<EntrySummary> results = index.search(query);
+
+            mainHandler.post(() -> {
+                // Una consulta más nueva ya reemplazó a esta
+                if (queryGeneration != generation) {
+                    staleCount++;
+                    return;
+                }
+                inFlight = null;
+                recordLatency((System.nanoTime() - startNs) / 1_000_000);
+                callback.onResults(query, results);
+            });
+        });
+    }
+
+    private void recordLatency(long latencyMs) {
+        latencies[latencyCount % LATENCY_WINDOW] = latencyMs;
+        latencyCount++;
+        completedCount++;
+
+        if (completedCount % STATS_LOG_INTERVAL == 0) {
+            Log.d(TAG, getStats());
+        }
+    }
+
+    public String getStats() {
+        int size = Math.min(latencyCount, LATENCY_WINDOW);
+        if (size == 0) {
+            return "búsquedas=0";
+        }
+        long[] sorted = Arrays.copyOf(latencies, size);
+        Arrays.sort(sorted);
+        return "búsquedas=" + completedCount
+                + " descartadas=" + staleCount
+                + " p50=" + percentile(sorted, 50) + "ms"
+                + " p90=" + percentile(sorted, 90) + "ms"
+                + " p99=" + percentile(sorted, 99) + "ms";
+    }
+
+    private static long percentile(long[] sorted, int percent) {
+        int position = (int) Math.ceil(percent / 100.0 * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(position, sorted.length - 1))];
+    }
+}
@@ -0,0 +1,368 @@
+package com.example.chronicav1.search;
+
+import com.example.chronicav1.models.EntrySummary;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.regex.Pattern;
+
+/**
+ * Índice invertido incremental sobre título, contenido y ubicación de las entradas
+ * El contenido llega como las palabras distintas del resumen (EntrySummary.getTerms()).
+ * Tokeniza sin acentos ("canción" = "cancion"), busca por prefijo y ordena por relevancia.
+ * Se actualiza con put/remove en cada alta, edición o borrado en lugar de reconstruirse.
+ * Internamente cada entrada tiene un número de documento y las listas de postings
+ * son arreglos de enteros para que una búsqueda sobre 10k entradas no genere basura.
+ */
+public class SearchIndex {
+
+    private static final int TITLE_WEIGHT = 3;
+    private static final int LOCATION_WEIGHT = 2;
+    private static final int CONTENT_WEIGHT = 1;
+    private static final int EXACT_MATCH_BONUS = 2;
+
+    private static final Pattern DIACRITICS = Pattern.compile("\\p{M}+");
+    private static final Pattern SEPARATORS = Pattern.compile("[^\\p{L}\\p{N}]+");
+
+    // término -> postings; ordenado para búsquedas por prefijo
+    private final TreeMap<String, Postings> postings = new TreeMap<>();
+
+    // Documentos: id de entrada <-> número interno
+    private final Map<String, Integer> docNumbers = new HashMap<>();
+    private final List<EntrySummary> docs = new ArrayList<>();
+    private final List<Set<String>> docTerms = new ArrayList<>();
+    private final List<Integer> freeDocs = new ArrayList<>();
+
+    // Buffers reutilizados entre búsquedas (marcas de generación en lugar de limpiar)
+    private int[] tokenBest = new int[0];
+    private int[] tokenStamp = new int[0];
+    private int[] totalScore = new int[0];
+    private int[] matchedTokens = new int[0];
+    private int[] queryStamp = new int[0];
+    private int[] touched = new int[0];
+    private int[] sortBuffer = new int[0];
+    private long[] docTime = new long[0];
+    private int stamp = 0;
+
+    /**
+     * Agrega o actualiza una entrada; si el contenido no cambió no hace nada
+     */
+    public synchronized void put(EntrySummary entry) {
+        Integer existing = docNumbers.get(entry.getId());
+        if (existing != null && docs.get(existing).hasSameContent(entry)) {
+            docs.set(existing, entry);
+            return;
+        }
+        if (existing != null) {
+            remove(entry.getId());
+        }
+
+        int doc = allocateDoc(entry);
+
+        Map<String, Integer> weights = new HashMap<>();
+        addTokens(weights, entry.getTitle(), TITLE_WEIGHT);
+        addTokens(weights, entry.getLocation(), LOCATION_WEIGHT);
+        addTokens(weights, entry.getTerms(), CONTENT_WEIGHT);
+
+        for (Map.Entry<String, Integer> weight : weights.entrySet()) {
+            Postings list = postings.get(weight.getKey());
+            if (list == null) {
+                list = new Postings();
+                postings.put(weight.getKey(), list);
+            }
+            list.add(doc, weight.getValue());
+        }
+        docTerms.set(doc, weights.keySet());
+    }
+
+    public synchronized void remove(String entryId) {
+        Integer doc = docNumbers.remove(entryId);
+        if (doc == null) {
+            return;
+        }
+        for (String term : docTerms.get(doc)) {
+            Postings list = postings.get(term);
+            if (list != null && list.remove(doc) && list.size == 0) {
+                postings.remove(term);
+            }
+        }
+        docs.set(doc, null);
+        docTerms.set(doc, null);
+        freeDocs.add(doc);
+    }
+
+    /**
+     * Deja en el índice exactamente las entradas dadas, tocando solo las que cambiaron
+     */
+    public synchronized void sync(Collection<EntrySummary> current) {
+        Set<String> currentIds = new HashSet<>();
+        for (EntrySummary entry : current) {
+            currentIds.add(entry.getId());
+            put(entry);
+        }
+        for (String entryId : new ArrayList<>(docNumbers.keySet())) {
+            if (!currentIds.contains(entryId)) {
+                remove(entryId);
+            }
+        }
+    }
+
+    public synchronized void clear() {
+        postings.clear();
+        docNumbers.clear();
+        docs.clear();
+        docTerms.clear();
+        freeDocs.clear();
+    }
+
+    public synchronized int size() {
+        return docNumbers.size();
+    }
+
+    /**
+     * Resumen indexado de la entrada (null si no está en el índice)
+     */
+    public synchronized EntrySummary get(String entryId) {
+        Integer doc = docNumbers.get(entryId);
+        return doc != null ? docs.get(doc) : null;
+    }
+
+    /**
+     * Busca entradas que contengan todos los términos de la consulta (cada uno como prefijo).
+     * Los resultados van ordenados por relevancia y, a igualdad, por fecha.
+     */
+    public synchronized List<EntrySummary> search(String query) {
+        List<String> tokens = tokenize(query);
+        if (tokens.isEmpty() || docNumbers.isEmpty()) {
+            return Collections.emptyList();
+        }
+        ensureCapacity(docs.size());
+
+        int queryGeneration = nextStamp();
+        int touchedCount = 0;
+
+        for (int t = 0; t < tokens.size(); t++) {
+            String prefix = tokens.get(t);
+            int tokenGeneration = nextStamp();
+            touchedCount = 0;
+
+            // Mejor puntaje de este término por documento (el máximo entre sus expansiones)
+            for (Map.Entry<String, Postings> term
+                    : postings.subMap(prefix, prefix + Character.MAX_VALUE).entrySet()) {
+                int bonus = term.getKey().length() == prefix.length() ? EXACT_MATCH_BONUS : 1;
+                Postings list = term.getValue();
+                for (int i = 0; i < list.size; i++) {
+                    int doc = list.docs[i];
+                    int score = list.weights[i] * bonus;
+                    if (tokenStamp[doc] != tokenGeneration) {
+                        tokenStamp[doc] = tokenGeneration;
+                        tokenBest[doc] = score;
+                        touched[touchedCount++] = doc;
+                    } else if (score > tokenBest[doc]) {
+                        tokenBest[doc] = score;
+                    }
+                }
+            }
+
+            // Intersección: solo siguen los documentos que coincidieron con todos los términos previos
+            int kept = 0;
+            for (int i = 0; i < touchedCount; i++) {
+                int doc = touched[i];
+                if (queryStamp[doc] != queryGeneration) {
+                    if (t != 0) {
+                        continue;
+                    }
+                    queryStamp[doc] = queryGeneration;
+                    matchedTokens[doc] = 0;
+                    totalScore[doc] = 0;
+                }
+                if (matchedTokens[doc] == t) {
+                    matchedTokens[doc] = t + 1;
+                    totalScore[doc] += tokenBest[doc];
+                    touched[kept++] = doc;
+                }
+            }
+            touchedCount = kept;
+            if (touchedCount == 0) {
+                return Collections.emptyList();
+            }
+        }
+
+        for (int i = 0; i < touchedCount; i++) {
+            int doc = touched[i];
+            docTime[doc] = docs.get(doc).getTimestamp();
+        }
+        sortByRelevance(touched, touchedCount);
+
+        List<EntrySummary> results = new ArrayList<>(touchedCount);
+        for (int i = 0; i < touchedCount; i++) {
+            results.add(docs.get(touched[i]));
+        }
+        return results;
+    }
+
+    /**
+     * Merge sort sobre enteros (sin autoboxing): mayor puntaje primero y luego más reciente
+     */
+    private void sortByRelevance(int[] values, int count) {
+        if (sortBuffer.length < count) {
+            sortBuffer = new int[values.length];
+        }
+        int[] from = values;
+        int[] to = sortBuffer;
+        for (int width = 1; width < count; width *= 2) {
+            for (int left = 0; left < count; left += 2 * width) {
+                int middle = Math.min(left + width, count);
+                int right = Math.min(left + 2 * width, count);
+                int i = left;
+                int j = middle;
+                int k = left;
+                while (i < middle && j < right) {
+                    to[k++] = comesBefore(from[j], from[i]) ? from[j++] : from[i++];
+                }
+                while (i < middle) {
+                    to[k++] = from[i++];
+                }
+                while (j < right) {
+                    to[k++] = from[j++];
+                }
+            }
+            int[] swap = from;
+            from = to;
+            to = swap;
+        }
+        if (from != values) {
+            System.arraycopy(from, 0, values, 0, count);
+        }
+    }
+
+    private boolean comesBefore(int a, int b) {
+        if (totalScore[a] != totalScore[b]) {
+            return totalScore[a] > totalScore[b];
+        }
+        return docTime[a] > docTime[b];
+    }
+
+    private int allocateDoc(EntrySummary entry) {
+        int doc;
+        if (!freeDocs.isEmpty()) {
+            doc = freeDocs.remove(freeDocs.size() - 1);
+            docs.set(doc, entry);
+        } else {
+            doc = docs.size();
+            docs.add(entry);
+            docTerms.add(null);
+        }
+        docNumbers.put(entry.getId(), doc);
+        return doc;
+    }
+
+    private void ensureCapacity(int size) {
+        if (tokenBest.length >= size) {
+            return;
+        }
+        int capacity = Math.max(size, tokenBest.length * 2);
+        tokenBest = Arrays.copyOf(tokenBest, capacity);
+        tokenStamp = Arrays.copyOf(tokenStamp, capacity);
+        totalScore = Arrays.copyOf(totalScore, capacity);
+        matchedTokens = Arrays.copyOf(matchedTokens, capacity);
+        queryStamp = Arrays.copyOf(queryStamp, capacity);
+        touched = Arrays.copyOf(touched, capacity);
+        docTime = Arrays.copyOf(docTime, capacity);
+    }
+
+    private int nextStamp() {
+        stamp++;
+        if (stamp == Integer.MAX_VALUE) {
+            // Reiniciar las marcas cuando se agota el contador
+            Arrays.fill(tokenStamp, 0);
+            Arrays.fill(queryStamp, 0);
+            stamp = 1;
+        }
+        return stamp;
+    }
+
+    private static void addTokens(Map<String, Integer> weights, String text, int weight) {
+        for (String token : tokenize(text)) {
+            Integer previous = weights.get(token);
+            weights.put(token, previous == null ? weight : previous + weight);
+        }
+    }
+
+    /**
+     * Normaliza a minúsculas sin acentos y separa en palabras
+     */
+    public static List<String> tokenize(String text) {
+        List<String> tokens = new ArrayList<>();
+        if (text == null || text.isEmpty()) {
+            return tokens;
+        }
+        String normalized = DIACRITICS
+                .matcher(Normalizer.normalize(text, Normalizer.Form.NFD))
+                .replaceAll("")
+                .toLowerCase(Locale.ROOT);
+        for (String token : SEPARATORS.split(normalized)) {
+            if (!token.isEmpty()) {
+                tokens.add(token);
+            }
+        }
+        return tokens;
+    }
+
+    /**
+     * Palabras distintas del texto, normalizadas y separadas por espacio (como máximo maxTerms)
+     */
+    public static String distinctTerms(String text, int maxTerms) {
+        Set<String> terms = new LinkedHashSet<>();
+        for (String token : tokenize(text)) {
+            if (terms.size() == maxTerms) {
+                break;
+            }
+            terms.add(token);
+        }
+        return String.join(" ", terms);
+    }
+
+    /**
+     * Lista de documentos y pesos de un término, en arreglos que crecen al doble
+     */
+    private static class Postings {
+        int[] docs = new int[4];
+        int[] weights = new int[4];
+        int size = 0;
+
+        void add(int doc, int weight) {
+            if (size == docs.length) {
+                docs = Arrays.copyOf(docs, size * 2);
+                weights = Arrays.copyOf(weights, size * 2);
+            }
+            docs[size] = doc;
+            weights[size] = weight;
+            size++;
+        }
+
+        boolean remove(int doc) {
+            for (int i = 0; i < size; i++) {
+                if (docs[i] == doc) {
+                    // El orden no importa: mover el último al hueco
+                    size--;
+                    docs[i] = docs[size];
+                    weights[i] = weights[size];
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
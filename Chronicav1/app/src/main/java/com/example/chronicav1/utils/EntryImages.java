@@ -0,0 +1,83 @@
+package com.example.chronicav1.utils;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.util.Base64;
+
+import com.example.chronicav1.data.BlobStore;
+import com.example.chronicav1.media.ImageVariants;
+import com.example.chronicav1.models.Entry;
+import com.example.chronicav1.models.EntrySummary;
+import com.google.android.gms.tasks.Task;
+import com.google.android.gms.tasks.Tasks;
+import com.google.firebase.firestore.FirebaseFirestore;
+
+/**
+ * Helper para obtener los bytes de la imagen de una entrada
+ * Usa el BlobStore por hash y cae al campo Base64 para entradas antiguas
+ */
+public class EntryImages {
+
+    /**
+     * Carga los bytes codificados (JPEG o WebP) de la imagen de la entrada (null si no tiene imagen)
+     */
+    public static Task<byte[]> loadBytes(Context context, Entry entry) {
+        if (entry.getImageHash() != null && !entry.getImageHash().isEmpty()) {
+            return BlobStore.getInstance(context).read(entry.getUserId(), entry.getImageHash());
+        }
+
+        if (entry.getImageBase64() != null && !entry.getImageBase64().isEmpty()) {
+            try {
+                return Tasks.forResult(Base64.decode(entry.getImageBase64(), Base64.DEFAULT));
+            } catch (IllegalArgumentException e) {
+                return Tasks.forException(e);
+            }
+        }
+
+        return Tasks.forResult(null);
+    }
+
+    /**
+     * Carga y decodifica la imagen completa en los hilos de BlobStore; el resultado se entrega
+     * listo para mostrar (null si la entrada no tiene imagen)
+     */
+    public static Task<Bitmap> loadBitmap(Context context, Entry entry) {
+        return loadBytes(context, entry)
+                .continueWith(BlobStore.getInstance(context).getExecutor(), task -> {
+                    byte[] bytes = task.getResult();
+                    return bytes != null ? BitmapFactory.decodeByteArray(bytes, 0, bytes.length) : null;
+                });
+    }
+
+    /**
+     * Carga la variante más chica que cubre reqSize px (ver ImageVariants).
+     * El resumen no trae el Base64 heredado, así que esas imágenes se leen del documento completo
+     * (una vez, luego las cachea quien llama).
+     */
+    public static Task<byte[]> loadBytes(Context context, EntrySummary summary, int reqSize) {
+        String hash = variantHash(summary, reqSize);
+        if (hash != null && !hash.isEmpty()) {
+            return BlobStore.getInstance(context).read(summary.getUserId(), hash);
+        }
+        if (!summary.isLegacyImage()) {
+            return Tasks.forResult(null);
+        }
+
+        // toObject y el Base64 de una imagen completa son caros: fuera del hilo principal
+        BlobStore blobStore = BlobStore.getInstance(context);
+        return FirebaseFirestore.getInstance().collection("entries").document(summary.getId()).get()
+                .onSuccessTask(blobStore.getExecutor(), document -> {
+                    Entry entry = document.toObject(Entry.class);
+                    return entry != null ? loadBytes(context, entry) : Tasks.forResult(null);
+                });
+    }
+
+    /**
+     * Hash del blob que se cargaría para ese tamaño (null si la imagen es Base64 heredado)
+     */
+    public static String variantHash(EntrySummary summary, int reqSize) {
+        return ImageVariants.pick(summary.getImageHash(), summary.getCardHash(),
+                summary.getThumbHash(), reqSize);
+    }
+}
@@ -0,0 +1,75 @@
+package com.example.chronicav1.utils;
+
+import android.app.Activity;
+import android.content.Intent;
+import android.os.SystemClock;
+import android.util.Log;
+import android.view.View;
+import android.view.ViewTreeObserver;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Mide cuánto tarda en abrirse una pantalla: desde el click hasta su primer frame
+ * Las muestras se agrupan por etiqueta (p. ej. "detalle con imagen") y se escriben en el log.
+ */
+public class LaunchTimer {
+
+    private static final String TAG = "LaunchTimer";
+    private static final String EXTRA_STARTED_AT = "LAUNCH_STARTED_AT";
+    private static final int MAX_SAMPLES = 100;
+
+    private static final Map<String, List<Long>> samples = new HashMap<>();
+
+    /**
+     * Marca el inicio en el intent justo antes de startActivity
+     */
+    public static void start(Intent intent) {
+        intent.putExtra(EXTRA_STARTED_AT, SystemClock.elapsedRealtime());
+    }
+
+    /**
+     * Registra la latencia cuando la pantalla dibuje su siguiente frame
+     */
+    public static void reportFirstFrame(Activity activity, String label) {
+        long startedAt = activity.getIntent().getLongExtra(EXTRA_STARTED_AT, 0);
+        if (startedAt == 0) {
+            return;
+        }
+        // Solo se mide la primera vez, no al volver a enlazar datos
+        activity.getIntent().removeExtra(EXTRA_STARTED_AT);
+
+        View decorView = activity.getWindow().getDecorView();
+        decorView.getViewTreeObserver().addOnPreDrawListener(new ViewTreeObserver.OnPreDrawListener() {
+            @Override
+            public boolean onPreDraw() {
+                decorView.getViewTreeObserver().removeOnPreDrawListener(this);
+                record(label, SystemClock.elapsedRealtime() - startedAt);
+                return true;
+            }
+        });
+    }
+
+    private static void record(String label, long latencyMs) {
+        List<Long> list = samples.get(label);
+        if (list == null) {
+            list = new ArrayList<>();
+            samples.put(label, list);
+        }
+        if (list.size() == MAX_SAMPLES) {
+            list.remove(0);
+        }
+        list.add(latencyMs);
+
+        List<Long> sorted = new ArrayList<>(list);
+        Collections.sort(sorted);
+        Log.d(TAG, label + ": " + latencyMs + " ms"
+                + " (n=" + sorted.size()
+                + " p50=" + sorted.get((sorted.size() - 1) / 2)
+                + " p90=" + sorted.get((int) Math.ceil(sorted.size() * 0.9) - 1) + " ms)");
+    }
+}
@@ -0,0 +1,155 @@
+package com.example.chronicav1.views;
+
+import android.content.Context;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.util.AttributeSet;
+import android.view.MotionEvent;
+import android.view.View;
+
+import androidx.annotation.Nullable;
+
+import com.example.chronicav1.media.AudioPeaks;
+
+/**
+ * Forma de onda de una grabación a partir de sus picos precalculados
+ * Agrupa las ventanas en barras según el ancho de la vista; la parte reproducida se pinta
+ * con el color de acento. Tocar o arrastrar avisa la posición al listener.
+ */
+public class WaveformView extends View {
+
+    private static final int PLAYED_COLOR = 0xFF5E35B1;
+    private static final int PENDING_COLOR = 0xFFD1C4E9;
+
+    public interface OnSeekListener {
+        void onSeek(float fraction);
+    }
+
+    private final Paint playedPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final Paint pendingPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final float barWidth;
+    private final float barGap;
+
+    private AudioPeaks peaks;
+    // Alto relativo (0..1) de cada barra, recalculado al cambiar tamaño o picos
+    private float[] barTops = new float[0];
+    private float[] barBottoms = new float[0];
+    private float progress;
+    private int playedBars;
+    private OnSeekListener seekListener;
+
+    public WaveformView(Context context) {
+        this(context, null);
+    }
+
+    public WaveformView(Context context, @Nullable AttributeSet attrs) {
+        super(context, attrs);
+        float density = getResources().getDisplayMetrics().density;
+        barWidth = 2 * density;
+        barGap = density;
+        playedPaint.setColor(PLAYED_COLOR);
+        pendingPaint.setColor(PENDING_COLOR);
+    }
+
+    public void setPeaks(@Nullable AudioPeaks peaks) {
+        this.peaks = peaks;
+        computeBars();
+        invalidate();
+    }
+
+    public void setOnSeekListener(OnSeekListener listener) {
+        this.seekListener = listener;
+    }
+
+    /**
+     * Avance de la reproducción (0..1); solo redibuja si cambia la cantidad de barras pintadas
+     */
+    public void setProgress(float fraction) {
+        progress = Math.max(0f, Math.min(1f, fraction));
+        int played = Math.round(progress * barTops.length);
+        if (played != playedBars) {
+            playedBars = played;
+            invalidate();
+        }
+    }
+
+    @Override
+    protected void onSizeChanged(int w, int h, int oldw, int oldh) {
+        super.onSizeChanged(w, h, oldw, oldh);
+        computeBars();
+    }
+
+    private void computeBars() {
+        int width = getWidth() - getPaddingLeft() - getPaddingRight();
+        if (peaks == null || width <= 0 || peaks.getWindowCount() == 0) {
+            barTops = new float[0];
+            barBottoms = new float[0];
+            playedBars = 0;
+            return;
+        }
+
+        int windows = peaks.getWindowCount();
+        int bars = Math.max(1, Math.min(windows, (int) (width / (barWidth + barGap))));
+        barTops = new float[bars];
+        barBottoms = new float[bars];
+        for (int bar = 0; bar < bars; bar++) {
+            int from = (int) ((long) bar * windows / bars);
+            int to = Math.max(from + 1, (int) ((long) (bar + 1) * windows / bars));
+            int min = 0;
+            int max = 0;
+            for (int window = from; window < to; window++) {
+                min = Math.min(min, peaks.getMin(window));
+                max = Math.max(max, peaks.getMax(window));
+            }
+            barTops[bar] = max / 128f;
+            barBottoms[bar] = min / 128f;
+        }
+        playedBars = Math.round(progress * bars);
+    }
+
+    @Override
+    protected void onDraw(Canvas canvas) {
+        super.onDraw(canvas);
+        float centerY = getPaddingTop() + (getHeight() - getPaddingTop() - getPaddingBottom()) / 2f;
+        float halfHeight = (getHeight() - getPaddingTop() - getPaddingBottom()) / 2f;
+        // Las partes en silencio siguen viéndose como una línea
+        float minHalf = barWidth / 2;
+
+        float x = getPaddingLeft();
+        for (int bar = 0; bar < barTops.length; bar++) {
+            float top = centerY - Math.max(minHalf, barTops[bar] * halfHeight);
+            float bottom = centerY - Math.min(-minHalf, barBottoms[bar] * halfHeight);
+            canvas.drawRect(x, top, x + barWidth, bottom, bar < playedBars ? playedPaint : pendingPaint);
+            x += barWidth + barGap;
+        }
+    }
+
+    @Override
+    public boolean onTouchEvent(MotionEvent event) {
+        if (seekListener == null || barTops.length == 0) {
+            return super.onTouchEvent(event);
+        }
+        switch (event.getActionMasked()) {
+            case MotionEvent.ACTION_DOWN:
+            case MotionEvent.ACTION_MOVE:
+                seekListener.onSeek(fractionAt(event.getX()));
+                return true;
+            case MotionEvent.ACTION_UP:
+                seekListener.onSeek(fractionAt(event.getX()));
+                performClick();
+                return true;
+            default:
+                return super.onTouchEvent(event);
+        }
+    }
+
+    @Override
+    public boolean performClick() {
+        return super.performClick();
+    }
+
+    private float fractionAt(float x) {
+        float width = barTops.length * (barWidth + barGap);
+        return Math.max(0f, Math.min(1f, (x - getPaddingLeft()) / width));
+    }
+}
@@ -0,0 +1,220 @@
+package com.example.chronicav1.adapters;
+
+import androidx.recyclerview.widget.DiffUtil;
+import androidx.recyclerview.widget.ListUpdateCallback;
+
+import com.example.chronicav1.models.EntrySummary;
+import com.example.chronicav1.search.SearchIndex;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Medición de filas enlazadas por tecla al filtrar 2,000 entradas: diff del adaptador
+ * contra notifyDataSetChanged, que vuelve a enlazar todas las filas visibles
+ */
+public class EntryAdapterDiffTest {
+
+    private static final int ENTRIES = 2_000;
+    private static final int VISIBLE_ROWS = 8;
+    private static final int TYPED_QUERIES = 60;
+
+    @Test
+    public void unchangedListBindsNothing() {
+        List<EntrySummary> list = Arrays.asList(entry("1", "Uno", 1), entry("2", "Dos", 2));
+        VisibleRows rows = new VisibleRows(list.size());
+
+        assertEquals(0, rows.apply(list, copy(list)));
+    }
+
+    @Test
+    public void onlyEditedRowIsRebound() {
+        List<EntrySummary> list = Arrays.asList(entry("1", "Uno", 1), entry("2", "Dos", 2),
+                entry("3", "Tres", 3));
+        List<EntrySummary> edited = copy(list);
+        EntrySummary changed = entry("2", "Dos editado", 2);
+        changed.setUpdatedAt(2);
+        edited.set(1, changed);
+        VisibleRows rows = new VisibleRows(list.size());
+
+        assertEquals(1, rows.apply(list, edited));
+    }
+
+    @Test
+    public void bindsPerKeystrokeOn2000Entries() {
+        Random random = new Random(17);
+        String[] vocabulary = vocabulary(random, 400);
+        SearchIndex index = new SearchIndex();
+        List<EntrySummary> all = new ArrayList<>(ENTRIES);
+        // Lista completa en el orden de la pantalla principal: más recientes primero
+        for (int i = ENTRIES - 1; i >= 0; i--) {
+            EntrySummary entry = entry("e" + i, words(random, vocabulary, 3), i);
+            entry.setTerms(words(random, vocabulary, 25));
+            all.add(entry);
+            index.put(entry);
+        }
+
+        List<EntrySummary> shown = all;
+        VisibleRows rows = new VisibleRows(shown.size());
+        int keystrokes = 0;
+        long diffBinds = 0;
+        long fullBinds = 0;
+        int maxDiffBinds = 0;
+        long diffNanos = 0;
+        for (int q = 0; q < TYPED_QUERIES; q++) {
+            String typed = words(random, vocabulary, 1 + random.nextInt(2));
+            // Se escribe letra por letra y se borra hasta volver a la lista completa
+            List<String> steps = new ArrayList<>();
+            for (int length = 1; length <= typed.length(); length++) {
+                steps.add(typed.substring(0, length));
+            }
+            for (int length = typed.length() - 1; length >= 0; length--) {
+                steps.add(typed.substring(0, length));
+            }
+            for (String query : steps) {
+                List<EntrySummary> results = query.trim().isEmpty() ? all : index.search(query);
+                long start = System.nanoTime();
+                int binds = rows.apply(shown, results);
+                diffNanos += System.nanoTime() - start;
+
+                keystrokes++;
+                diffBinds += binds;
+                fullBinds += Math.min(VISIBLE_ROWS, results.size());
+                maxDiffBinds = Math.max(maxDiffBinds, binds);
+                shown = results;
+            }
+        }
+
+        System.out.printf("EntryAdapter %d entradas, %d teclas: diff %.2f filas enlazadas por tecla "
+                        + "(máx %d, %.2f ms de diff), notifyDataSetChanged %.2f%n",
+                ENTRIES, keystrokes, (double) diffBinds / keystrokes, maxDiffBinds,
+                diffNanos / 1e6 / keystrokes, (double) fullBinds / keystrokes);
+
+        assertTrue(maxDiffBinds <= VISIBLE_ROWS);
+        assertTrue("diff " + diffBinds + " vs " + fullBinds, diffBinds * 2 < fullBinds);
+    }
+
+    /**
+     * Simula las filas de RecyclerView: aplica el diff del adaptador y cuenta las filas
+     * visibles que quedan sin enlazar. Fuera de pantalla no se conserva ninguna vista.
+     */
+    private static class VisibleRows implements ListUpdateCallback {
+
+        private final List<Boolean> bound = new ArrayList<>();
+
+        VisibleRows(int size) {
+            for (int i = 0; i < size; i++) {
+                bound.add(i < VISIBLE_ROWS);
+            }
+        }
+
+        int apply(List<EntrySummary> oldList, List<EntrySummary> newList) {
+            DiffUtil.calculateDiff(new DiffUtil.Callback() {
+                @Override
+                public int getOldListSize() {
+                    return oldList.size();
+                }
+
+                @Override
+                public int getNewListSize() {
+                    return newList.size();
+                }
+
+                @Override
+                public boolean areItemsTheSame(int oldPosition, int newPosition) {
+                    return EntryAdapter.DIFF_CALLBACK.areItemsTheSame(oldList.get(oldPosition),
+                            newList.get(newPosition));
+                }
+
+                @Override
+                public boolean areContentsTheSame(int oldPosition, int newPosition) {
+                    return EntryAdapter.DIFF_CALLBACK.areContentsTheSame(oldList.get(oldPosition),
+                            newList.get(newPosition));
+                }
+            }).dispatchUpdatesTo(this);
+
+            assertEquals(newList.size(), bound.size());
+            int binds = 0;
+            for (int i = 0; i < bound.size(); i++) {
+                boolean visible = i < VISIBLE_ROWS;
+                if (visible && !bound.get(i)) {
+                    binds++;
+                }
+                bound.set(i, visible);
+            }
+            return binds;
+        }
+
+        @Override
+        public void onInserted(int position, int count) {
+            for (int i = 0; i < count; i++) {
+                bound.add(position, false);
+            }
+        }
+
+        @Override
+        public void onRemoved(int position, int count) {
+            bound.subList(position, position + count).clear();
+        }
+
+        @Override
+        public void onMoved(int fromPosition, int toPosition) {
+            bound.add(toPosition, bound.remove(fromPosition));
+        }
+
+        @Override
+        public void onChanged(int position, int count, Object payload) {
+            for (int i = position; i < position + count; i++) {
+                bound.set(i, false);
+            }
+        }
+    }
+
+    private static EntrySummary entry(String id, String title, long timestamp) {
+        EntrySummary entry = new EntrySummary();
+        entry.setId(id);
+        entry.setTitle(title);
+        entry.setTimestamp(timestamp);
+        entry.setUpdatedAt(1);
+        return entry;
+    }
+
+    private static List<EntrySummary> copy(List<EntrySummary> list) {
+        List<EntrySummary> copy = new ArrayList<>();
+        for (EntrySummary original : list) {
+            EntrySummary entry = entry(original.getId(), original.getTitle(), original.getTimestamp());
+            entry.setUpdatedAt(original.getUpdatedAt());
+            copy.add(entry);
+        }
+        return copy;
+    }
+
+    private static String[] vocabulary(Random random, int size) {
+        String[] syllables = {"ca", "sa", "ma", "lo", "ri", "te", "ne", "pi", "ro", "du", "ña", "ción",
+                "mon", "tar", "ble", "gue", "que", "vi", "lla", "es"};
+        String[] words = new String[size];
+        for (int i = 0; i < size; i++) {
+            StringBuilder word = new StringBuilder();
+            int count = 2 + random.nextInt(3);
+            for (int s = 0; s < count; s++) {
+                word.append(syllables[random.nextInt(syllables.length)]);
+            }
+            words[i] = word.toString();
+        }
+        return words;
+    }
+
+    private static String words(Random random, String[] vocabulary, int count) {
+        List<String> words = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            words.add(vocabulary[random.nextInt(vocabulary.length)]);
+        }
+        return String.join(" ", words);
+    }
+}
@@ -0,0 +1,95 @@
+package com.example.chronicav1.data;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+/**
+ * Pruebas de la fusión de cambios pendientes de la cola (una fila por entrada)
+ */
+public class EntryOutboxMutationTest {
+
+    @Test
+    public void setThenUpdateStaysASet() {
+        EntryOutbox.Mutation set = set(fields("title", "A", "content", "texto", "audioHash", "h1"));
+        EntryOutbox.Mutation update = update(fields("title", "B"), "audioHash");
+
+        EntryOutbox.Mutation merged = set.mergeWith(update);
+
+        assertEquals(EntryOutbox.OP_SET, merged.op);
+        assertEquals(fields("title", "B", "content", "texto"), merged.fields);
+        // Un set ya escribe el documento completo: no hay campos que borrar
+        assertTrue(merged.deletes.isEmpty());
+    }
+
+    @Test
+    public void updatesAccumulateFieldsAndDeletes() {
+        EntryOutbox.Mutation first = update(fields("title", "A", "imageHash", "h1"), "audioHash");
+        EntryOutbox.Mutation second = update(fields("audioHash", "h2", "content", "nuevo"), "imageHash");
+
+        EntryOutbox.Mutation merged = first.mergeWith(second);
+
+        assertEquals(EntryOutbox.OP_UPDATE, merged.op);
+        assertEquals(fields("title", "A", "audioHash", "h2", "content", "nuevo"), merged.fields);
+        // audioHash se volvió a escribir; imageHash se borró después de escribirse
+        assertEquals(new HashSet<>(Collections.singletonList("imageHash")), merged.deletes);
+    }
+
+    @Test
+    public void setAndDeleteReplaceEverythingBefore() {
+        EntryOutbox.Mutation update = update(fields("title", "A"), "audioHash");
+        EntryOutbox.Mutation set = set(fields("title", "B"));
+        EntryOutbox.Mutation delete = delete();
+
+        assertSame(set, update.mergeWith(set));
+        assertSame(delete, update.mergeWith(delete));
+        assertSame(delete, set.mergeWith(delete));
+        assertSame(set, delete.mergeWith(set));
+    }
+
+    @Test
+    public void updateAfterDeleteHasNoEffect() {
+        EntryOutbox.Mutation delete = delete();
+
+        assertSame(delete, delete.mergeWith(update(fields("title", "A"))));
+    }
+
+    @Test
+    public void mergingDoesNotModifyTheOriginals() {
+        EntryOutbox.Mutation first = update(fields("title", "A"), "audioHash");
+        EntryOutbox.Mutation second = update(fields("audioHash", "h2"), "title");
+
+        first.mergeWith(second);
+
+        assertEquals(fields("title", "A"), first.fields);
+        assertEquals(new HashSet<>(Collections.singletonList("audioHash")), first.deletes);
+        assertEquals(fields("audioHash", "h2"), second.fields);
+        assertEquals(new HashSet<>(Collections.singletonList("title")), second.deletes);
+    }
+
+    private static EntryOutbox.Mutation set(Map<String, Object> fields) {
+        return new EntryOutbox.Mutation(EntryOutbox.OP_SET, fields, Collections.emptySet());
+    }
+
+    private static EntryOutbox.Mutation update(Map<String, Object> fields, String... deletes) {
+        return new EntryOutbox.Mutation(EntryOutbox.OP_UPDATE, fields, Arrays.asList(deletes));
+    }
+
+    private static EntryOutbox.Mutation delete() {
+        return new EntryOutbox.Mutation(EntryOutbox.OP_DELETE, Collections.emptyMap(), Collections.emptySet());
+    }
+
+    private static Map<String, Object> fields(Object... keysAndValues) {
+        Map<String, Object> fields = new HashMap<>();
+        for (int i = 0; i < keysAndValues.length; i += 2) {
+            fields.put((String) keysAndValues[i], keysAndValues[i + 1]);
+        }
+        return fields;
+    }
+}
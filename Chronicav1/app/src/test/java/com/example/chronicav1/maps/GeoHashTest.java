@@ -0,0 +1,123 @@
+package com.example.chronicav1.maps;
+
+import org.junit.Test;
+
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Pruebas del geohash: codificación estándar y cobertura de rectángulos por prefijos y rangos
+ */
+public class GeoHashTest {
+
+    private static final int MAX_CELLS = 16;
+
+    @Test
+    public void encodesStandardBase32() {
+        // Ejemplo clásico de geohash.org
+        assertEquals("u4pruydqqv", GeoHash.encode(57.64911, 10.40744, 10));
+        assertEquals("9g3w81", GeoHash.encode(19.4326, -99.1332, 6));
+    }
+
+    @Test
+    public void entriesWithoutLocationHaveNoGeohash() {
+        assertEquals("", GeoHash.forEntry(0, 0));
+        assertEquals("", GeoHash.forEntry(19.43, 0));
+        assertEquals(GeoHash.STORED_PRECISION, GeoHash.forEntry(19.43, -99.13).length());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsPrecisionBeyondStoredBits() {
+        GeoHash.toBase32(0, 11);
+    }
+
+    @Test
+    public void coveringPrefixesContainEveryPointInside() {
+        Random random = new Random(3);
+        for (int i = 0; i < 500; i++) {
+            double[] box = randomBox(random);
+            List<String> prefixes = GeoHash.coveringPrefixes(box[0], box[1], box[2], box[3], MAX_CELLS);
+            assertFalse(prefixes.isEmpty());
+            assertTrue(prefixes.size() <= MAX_CELLS);
+
+            for (int p = 0; p < 20; p++) {
+                double[] point = pointInside(random, box);
+                String hash = GeoHash.forEntry(point[0], point[1]);
+                assertTrue("Sin prefijo para " + hash, startsWithAny(hash, prefixes));
+            }
+        }
+    }
+
+    @Test
+    public void coveringRangesContainEveryPointInside() {
+        Random random = new Random(5);
+        for (int i = 0; i < 500; i++) {
+            double[] box = randomBox(random);
+            List<long[]> ranges = GeoHash.coveringRanges(box[0], box[1], box[2], box[3], MAX_CELLS);
+            assertFalse(ranges.isEmpty());
+            assertTrue(ranges.size() <= MAX_CELLS);
+
+            for (int p = 0; p < 20; p++) {
+                double[] point = pointInside(random, box);
+                long key = GeoHash.encode(point[0], point[1]);
+                assertTrue("Sin rango para " + key, inAnyRange(key, ranges));
+            }
+        }
+    }
+
+    @Test
+    public void antimeridianIsSplitInTwo() {
+        List<long[]> ranges = GeoHash.coveringRanges(-10, 170, 10, -170, MAX_CELLS);
+        assertTrue(inAnyRange(GeoHash.encode(0, 179.5), ranges));
+        assertTrue(inAnyRange(GeoHash.encode(0, -179.5), ranges));
+        assertFalse(inAnyRange(GeoHash.encode(0, 0.5), ranges));
+
+        List<String> prefixes = GeoHash.coveringPrefixes(-10, 170, 10, -170, MAX_CELLS);
+        assertTrue(startsWithAny(GeoHash.forEntry(1, 179.5), prefixes));
+        assertTrue(startsWithAny(GeoHash.forEntry(1, -179.5), prefixes));
+    }
+
+    /**
+     * Rectángulo {sur, oeste, norte, este}; a veces cruza el antimeridiano (oeste > este)
+     */
+    static double[] randomBox(Random random) {
+        double span = Math.pow(10, -3 + random.nextDouble() * 4.5);
+        double south = -80 + random.nextDouble() * (160 - span);
+        double west = -180 + random.nextDouble() * 360;
+        double east = west + span * 2;
+        if (east > 180) {
+            east -= 360;
+        }
+        return new double[]{south, west, south + span, east};
+    }
+
+    static double[] pointInside(Random random, double[] box) {
+        double latitude = box[0] + random.nextDouble() * (box[2] - box[0]);
+        double width = box[1] <= box[3] ? box[3] - box[1] : box[3] + 360 - box[1];
+        double longitude = box[1] + random.nextDouble() * width;
+        if (longitude > 180) {
+            longitude -= 360;
+        }
+        return new double[]{latitude, longitude};
+    }
+
+    private static boolean startsWithAny(String hash, List<String> prefixes) {
+        for (String prefix : prefixes) {
+            if (hash.startsWith(prefix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean inAnyRange(long key, List<long[]> ranges) {
+        for (long[] range : ranges) {
+            if (key >= range[0] && key < range[1]) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,207 @@
+package com.example.chronicav1.maps;
+
+import com.example.chronicav1.models.EntrySummary;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+/**
+ * Pruebas del índice espacial contra un recorrido lineal, más la medición de viewports
+ * aleatorios sobre 50k puntos
+ */
+public class SpatialIndexTest {
+
+    private static final int BENCHMARK_POINTS = 50_000;
+    private static final int BENCHMARK_QUERIES = 2_000;
+    // Centros de ciudades: la mitad de los puntos sintéticos se agrupa alrededor
+    private static final double[][] CITIES = {
+            {19.43, -99.13}, {20.67, -103.35}, {25.68, -100.31}, {40.71, -74.0},
+            {48.85, 2.35}, {-33.86, 151.2}, {35.68, 139.69}
+    };
+
+    @Test
+    public void ignoresEntriesWithoutLocation() {
+        SpatialIndex index = new SpatialIndex();
+        index.put(entry("sin", 0, 0));
+        index.put(entry("con", 19.43, -99.13));
+
+        assertEquals(1, index.size());
+        assertIds(index.query(-90, -180, 90, 180), "con");
+    }
+
+    @Test
+    public void putMovesAndReplacesEntries() {
+        SpatialIndex index = new SpatialIndex();
+        index.put(entry("1", 19.43, -99.13));
+
+        EntrySummary renamed = entry("1", 19.43, -99.13);
+        index.put(renamed);
+        assertSame(renamed, index.query(19, -100, 20, -99).get(0));
+
+        index.put(entry("1", 48.85, 2.35));
+        assertTrue(index.query(19, -100, 20, -99).isEmpty());
+        assertIds(index.query(48, 2, 49, 3), "1");
+        assertEquals(1, index.size());
+
+        index.remove("1");
+        index.remove("desconocido");
+        assertEquals(0, index.size());
+    }
+
+    @Test
+    public void syncKeepsExactlyTheGivenEntries() {
+        SpatialIndex index = new SpatialIndex();
+        index.sync(Arrays.asList(entry("1", 10, 10), entry("2", 11, 11)));
+        index.sync(Arrays.asList(entry("2", 11, 11), entry("3", 12, 12)));
+
+        assertIds(index.query(0, 0, 20, 20), "2", "3");
+    }
+
+    @Test
+    public void queryMatchesLinearScan() {
+        Random random = new Random(11);
+        SpatialIndex index = new SpatialIndex();
+        Map<String, EntrySummary> all = new HashMap<>();
+        for (int i = 0; i < 5_000; i++) {
+            EntrySummary entry = randomEntry(random, "e" + i);
+            all.put(entry.getId(), entry);
+        }
+        index.sync(all.values());
+
+        // Cambios incrementales: mover, borrar y agregar
+        for (int i = 0; i < 1_000; i++) {
+            String id = "e" + random.nextInt(6_000);
+            if (random.nextInt(4) == 0) {
+                index.remove(id);
+                all.remove(id);
+            } else {
+                EntrySummary entry = randomEntry(random, id);
+                index.put(entry);
+                all.put(id, entry);
+            }
+        }
+
+        for (int i = 0; i < 500; i++) {
+            double[] box = GeoHashTest.randomBox(random);
+            assertEquals(scan(all.values(), box), ids(index.query(box[0], box[1], box[2], box[3])));
+        }
+    }
+
+    @Test
+    public void randomViewportsOver50kPoints() {
+        Random random = new Random(7);
+        List<EntrySummary> points = new ArrayList<>(BENCHMARK_POINTS);
+        for (int i = 0; i < BENCHMARK_POINTS; i++) {
+            points.add(randomEntry(random, "e" + i));
+        }
+        SpatialIndex index = new SpatialIndex();
+        long buildStart = System.nanoTime();
+        index.sync(points);
+        long buildMs = (System.nanoTime() - buildStart) / 1_000_000;
+
+        // Desde una calle (0,01°) hasta medio continente (40°)
+        for (double span : new double[]{0.01, 0.5, 5, 40}) {
+            double[][] boxes = new double[BENCHMARK_QUERIES][];
+            for (int i = 0; i < boxes.length; i++) {
+                boxes[i] = viewport(random, span);
+            }
+            for (double[] box : boxes) {
+                index.query(box[0], box[1], box[2], box[3]);
+            }
+
+            long indexNanos = 0;
+            long scanNanos = 0;
+            long results = 0;
+            for (double[] box : boxes) {
+                long start = System.nanoTime();
+                List<EntrySummary> found = index.query(box[0], box[1], box[2], box[3]);
+                long middle = System.nanoTime();
+                Set<String> expected = scan(points, box);
+                indexNanos += middle - start;
+                scanNanos += System.nanoTime() - middle;
+                results += found.size();
+                assertEquals(expected.size(), found.size());
+            }
+            System.out.printf("SpatialIndex %d puntos (armado en %d ms), viewport %.2f°: "
+                            + "índice %.1f µs, recorrido lineal %.1f µs, %d resultados de media%n",
+                    BENCHMARK_POINTS, buildMs, span, indexNanos / 1e3 / boxes.length,
+                    scanNanos / 1e3 / boxes.length, results / boxes.length);
+        }
+    }
+
+    private static double[] viewport(Random random, double span) {
+        double latitude;
+        double longitude;
+        if (random.nextBoolean()) {
+            double[] city = CITIES[random.nextInt(CITIES.length)];
+            latitude = city[0];
+            longitude = city[1];
+        } else {
+            latitude = random.nextDouble() * 160 - 80;
+            longitude = random.nextDouble() * 360 - 180;
+        }
+        double west = longitude - span;
+        double east = longitude + span;
+        if (west < -180) {
+            west += 360;
+        }
+        if (east > 180) {
+            east -= 360;
+        }
+        return new double[]{Math.max(-90, latitude - span / 2), west, Math.min(90, latitude + span / 2), east};
+    }
+
+    private static EntrySummary randomEntry(Random random, String id) {
+        if (random.nextBoolean()) {
+            double[] city = CITIES[random.nextInt(CITIES.length)];
+            return entry(id, city[0] + random.nextGaussian() * 0.3, city[1] + random.nextGaussian() * 0.3);
+        }
+        return entry(id, random.nextDouble() * 170 - 85, random.nextDouble() * 360 - 180);
+    }
+
+    private static Set<String> scan(Iterable<EntrySummary> entries, double[] box) {
+        Set<String> ids = new HashSet<>();
+        boolean wraps = box[1] > box[3];
+        for (EntrySummary entry : entries) {
+            double latitude = entry.getLatitude();
+            double longitude = entry.getLongitude();
+            if (!SpatialIndex.hasLocation(entry) || latitude < box[0] || latitude > box[2]) {
+                continue;
+            }
+            if (wraps ? longitude >= box[1] || longitude <= box[3] : longitude >= box[1] && longitude <= box[3]) {
+                ids.add(entry.getId());
+            }
+        }
+        return ids;
+    }
+
+    private static EntrySummary entry(String id, double latitude, double longitude) {
+        EntrySummary entry = new EntrySummary();
+        entry.setId(id);
+        entry.setLatitude(latitude);
+        entry.setLongitude(longitude);
+        return entry;
+    }
+
+    private static Set<String> ids(List<EntrySummary> entries) {
+        Set<String> ids = new HashSet<>();
+        for (EntrySummary entry : entries) {
+            assertTrue("Repetida: " + entry.getId(), ids.add(entry.getId()));
+        }
+        return ids;
+    }
+
+    private static void assertIds(List<EntrySummary> results, String... expectedIds) {
+        assertEquals(new HashSet<>(Arrays.asList(expectedIds)), ids(results));
+    }
+}
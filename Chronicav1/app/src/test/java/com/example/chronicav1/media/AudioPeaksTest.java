@@ -0,0 +1,112 @@
+package com.example.chronicav1.media;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+
+import static org.junit.Assert.*;
+
+/**
+ * Pruebas del archivo de picos: lo que escribe Writer durante la grabación lo lee parse
+ */
+public class AudioPeaksTest {
+
+    private static final int SAMPLE_RATE = 8000;
+    // WINDOW_MS = 50
+    private static final int WINDOW_SAMPLES = SAMPLE_RATE / 20;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void roundTripKeepsMinAndMaxPerWindow() throws IOException {
+        short[] pcm = new short[WINDOW_SAMPLES * 3 + WINDOW_SAMPLES / 2];
+        for (int i = 0; i < WINDOW_SAMPLES; i++) {
+            pcm[i] = (short) (-1000 + i * 3000 / WINDOW_SAMPLES);
+        }
+        pcm[WINDOW_SAMPLES - 1] = 2000;
+        // Segunda ventana en silencio; la tercera llega a los extremos de 16 bits
+        pcm[WINDOW_SAMPLES * 2] = Short.MIN_VALUE;
+        pcm[WINDOW_SAMPLES * 2 + 1] = Short.MAX_VALUE;
+        // La media ventana final no alcanza a cerrarse
+        pcm[WINDOW_SAMPLES * 3] = Short.MAX_VALUE;
+
+        AudioPeaks peaks = writeAndParse(pcm, 250);
+
+        assertEquals(3, peaks.getWindowCount());
+        assertEquals(150, peaks.getDurationMs());
+        assertEquals(-1000 >> 8, peaks.getMin(0));
+        assertEquals(2000 >> 8, peaks.getMax(0));
+        assertEquals(0, peaks.getMin(1));
+        assertEquals(0, peaks.getMax(1));
+        assertEquals(-128, peaks.getMin(2));
+        assertEquals(127, peaks.getMax(2));
+    }
+
+    @Test
+    public void longRecordingSurvivesIntermediateFlushes() throws IOException {
+        // 10 s: muchas más ventanas de las que caben en el búfer del Writer
+        int windows = 200;
+        short[] pcm = new short[WINDOW_SAMPLES * windows];
+        for (int w = 0; w < windows; w++) {
+            pcm[w * WINDOW_SAMPLES] = (short) (-w * 100);
+            pcm[w * WINDOW_SAMPLES + 1] = (short) (w * 100);
+        }
+
+        AudioPeaks peaks = writeAndParse(pcm, 2048);
+
+        assertEquals(windows, peaks.getWindowCount());
+        for (int w = 0; w < windows; w++) {
+            assertEquals((-w * 100) >> 8, peaks.getMin(w));
+            assertEquals((w * 100) >> 8, peaks.getMax(w));
+        }
+    }
+
+    @Test
+    public void truncatedFileKeepsCompleteWindows() throws IOException {
+        AudioPeaks peaks = AudioPeaks.parse(new byte[]{1, 0, 50, -3, 4, -7});
+
+        assertEquals(1, peaks.getWindowCount());
+        assertEquals(-3, peaks.getMin(0));
+        assertEquals(4, peaks.getMax(0));
+    }
+
+    @Test(expected = IOException.class)
+    public void rejectsUnknownVersion() throws IOException {
+        AudioPeaks.parse(new byte[]{2, 0, 50, 0, 0});
+    }
+
+    @Test
+    public void peaksFileSitsNextToTheAudio() {
+        File audio = new File("/audio/AUDIO_20240101_120000.aac");
+
+        assertEquals(new File("/audio/AUDIO_20240101_120000.peaks"), AudioPeaks.fileFor(audio));
+    }
+
+    /**
+     * Escribe el PCM en bloques de chunkBytes, como lo entrega AudioRecord, y lee el resultado
+     */
+    private AudioPeaks writeAndParse(short[] pcm, int chunkBytes) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(pcm.length * 2).order(ByteOrder.LITTLE_ENDIAN);
+        for (short sample : pcm) {
+            buffer.putShort(sample);
+        }
+        byte[] bytes = buffer.array();
+
+        File file = folder.newFile("take.peaks");
+        try (AudioPeaks.Writer writer = new AudioPeaks.Writer(file, SAMPLE_RATE)) {
+            for (int offset = 0; offset < bytes.length; offset += chunkBytes) {
+                int length = Math.min(chunkBytes, bytes.length - offset);
+                ByteBuffer chunk = ByteBuffer.wrap(bytes, offset, length).slice();
+                writer.add(chunk, length);
+            }
+        }
+        return AudioPeaks.parse(Files.readAllBytes(file.toPath()));
+    }
+}
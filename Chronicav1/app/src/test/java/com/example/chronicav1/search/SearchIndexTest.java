@@ -0,0 +1,230 @@
+package com.example.chronicav1.search;
+
+import com.example.chronicav1.models.EntrySummary;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Pruebas del índice invertido: prefijos sin acentos, intersección de términos, orden y
+ * actualización incremental. Incluye la medición de búsquedas sobre 10k entradas.
+ */
+public class SearchIndexTest {
+
+    private static final int BENCHMARK_ENTRIES = 10_000;
+    private static final long MAX_MEDIAN_NANOS = 5_000_000;
+
+    @Test
+    public void prefixMatchesWithoutAccents() {
+        SearchIndex index = new SearchIndex();
+        index.put(entry("1", "Canción del mar", "", "", 1));
+
+        assertIds(index.search("cancion"), "1");
+        assertIds(index.search("CANC"), "1");
+        assertIds(index.search("canción"), "1");
+        assertTrue(index.search("mare").isEmpty());
+    }
+
+    @Test
+    public void everyQueryTermMustMatch() {
+        SearchIndex index = new SearchIndex();
+        index.put(entry("1", "Playa", "sol y arena", "", 1));
+        index.put(entry("2", "Playa", "lluvia todo el día", "", 2));
+
+        assertIds(index.search("pla sol"), "1");
+        assertIds(index.search("pla"), "2", "1");
+        assertTrue(index.search("pla nieve").isEmpty());
+    }
+
+    @Test
+    public void titleAndExactMatchesRankFirst() {
+        SearchIndex index = new SearchIndex();
+        index.put(entry("content", "Viaje", "montaña", "", 3));
+        index.put(entry("location", "Viaje", "", "Montaña Negra", 2));
+        index.put(entry("title", "Montaña", "", "", 1));
+        assertIds(index.search("montaña"), "title", "location", "content");
+
+        index.put(entry("prefix", "Soledad", "", "", 5));
+        index.put(entry("exact", "Sol", "", "", 4));
+        assertIds(index.search("sol"), "exact", "prefix");
+    }
+
+    @Test
+    public void tiesAreOrderedByMostRecent() {
+        SearchIndex index = new SearchIndex();
+        index.put(entry("old", "Diario", "", "", 10));
+        index.put(entry("new", "Diario", "", "", 30));
+        index.put(entry("mid", "Diario", "", "", 20));
+
+        assertIds(index.search("diario"), "new", "mid", "old");
+    }
+
+    @Test
+    public void removeDropsEntryFromResults() {
+        SearchIndex index = new SearchIndex();
+        index.put(entry("1", "Río", "", "", 1));
+        index.put(entry("2", "Río", "", "", 2));
+
+        index.remove("2");
+        index.remove("desconocido");
+
+        assertIds(index.search("rio"), "1");
+        assertEquals(1, index.size());
+    }
+
+    @Test
+    public void putReindexesChangedContent() {
+        SearchIndex index = new SearchIndex();
+        index.put(entry("1", "Bosque", "", "", 1));
+
+        EntrySummary edited = entry("1", "Desierto", "", "", 1);
+        edited.setUpdatedAt(2);
+        index.put(edited);
+
+        assertTrue(index.search("bosque").isEmpty());
+        assertIds(index.search("desierto"), "1");
+        assertEquals(1, index.size());
+    }
+
+    @Test
+    public void freedDocumentsAreReused() {
+        SearchIndex index = new SearchIndex();
+        index.put(entry("1", "Uno", "", "", 1));
+        index.put(entry("2", "Dos", "", "", 2));
+        index.remove("1");
+        index.put(entry("3", "Tres", "", "", 3));
+
+        assertTrue(index.search("uno").isEmpty());
+        assertIds(index.search("tres"), "3");
+        assertIds(index.search("dos"), "2");
+    }
+
+    @Test
+    public void syncKeepsExactlyTheGivenEntries() {
+        SearchIndex index = new SearchIndex();
+        index.put(entry("1", "Lago", "", "", 1));
+        index.put(entry("2", "Lago", "", "", 2));
+
+        EntrySummary kept = entry("2", "Lago", "", "", 2);
+        EntrySummary added = entry("3", "Lago", "", "", 3);
+        index.sync(Arrays.asList(kept, added));
+
+        assertIds(index.search("lago"), "3", "2");
+        assertEquals(2, index.size());
+        // Sin cambios de contenido se reemplaza el objeto, no se reindexa
+        assertSame(kept, index.search("lago").get(1));
+    }
+
+    @Test
+    public void getReturnsTheIndexedSummary() {
+        SearchIndex index = new SearchIndex();
+        EntrySummary entry = entry("1", "Cerro", "", "", 1);
+        index.put(entry);
+
+        assertSame(entry, index.get("1"));
+        index.remove("1");
+        assertNull(index.get("1"));
+    }
+
+    @Test
+    public void emptyQueryReturnsNothing() {
+        SearchIndex index = new SearchIndex();
+        index.put(entry("1", "Algo", "", "", 1));
+
+        assertTrue(index.search("").isEmpty());
+        assertTrue(index.search("  ¡! ").isEmpty());
+    }
+
+    /**
+     * Cada letra escrita es una búsqueda: se mide la mediana sobre prefijos de 1 a 3 palabras
+     */
+    @Test
+    public void searchOver10kEntriesUnder5ms() {
+        Random random = new Random(42);
+        String[] vocabulary = vocabulary(random, 3_000);
+        SearchIndex index = new SearchIndex();
+        long buildStart = System.nanoTime();
+        for (int i = 0; i < BENCHMARK_ENTRIES; i++) {
+            index.put(entry("e" + i, words(random, vocabulary, 4), words(random, vocabulary, 40),
+                    words(random, vocabulary, 2), i));
+        }
+        long buildMs = (System.nanoTime() - buildStart) / 1_000_000;
+
+        List<String> queries = new ArrayList<>();
+        for (int i = 0; i < 300; i++) {
+            String typed = words(random, vocabulary, 1 + random.nextInt(3));
+            for (int length = 1; length <= typed.length(); length++) {
+                queries.add(typed.substring(0, length));
+            }
+        }
+        for (String query : queries) {
+            index.search(query);
+        }
+
+        long[] nanos = new long[queries.size()];
+        int totalResults = 0;
+        for (int i = 0; i < queries.size(); i++) {
+            long start = System.nanoTime();
+            totalResults += index.search(queries.get(i)).size();
+            nanos[i] = System.nanoTime() - start;
+        }
+        Arrays.sort(nanos);
+        long median = nanos[nanos.length / 2];
+        System.out.printf("SearchIndex: %d entradas indexadas en %d ms; %d búsquedas, p50=%.2f ms "
+                        + "p95=%.2f ms max=%.2f ms, %.0f resultados de media%n",
+                BENCHMARK_ENTRIES, buildMs, nanos.length, median / 1e6,
+                nanos[nanos.length * 95 / 100] / 1e6, nanos[nanos.length - 1] / 1e6,
+                (double) totalResults / nanos.length);
+
+        assertTrue("Mediana de " + median / 1e6 + " ms", median < MAX_MEDIAN_NANOS);
+    }
+
+    private static EntrySummary entry(String id, String title, String terms, String location,
+                                      long timestamp) {
+        EntrySummary entry = new EntrySummary();
+        entry.setId(id);
+        entry.setTitle(title);
+        entry.setTerms(terms);
+        entry.setLocation(location);
+        entry.setTimestamp(timestamp);
+        entry.setUpdatedAt(1);
+        return entry;
+    }
+
+    private static void assertIds(List<EntrySummary> results, String... expectedIds) {
+        List<String> ids = new ArrayList<>();
+        for (EntrySummary entry : results) {
+            ids.add(entry.getId());
+        }
+        assertEquals(Arrays.asList(expectedIds), ids);
+    }
+
+    private static String[] vocabulary(Random random, int size) {
+        String[] syllables = {"ca", "sa", "ma", "lo", "ri", "te", "ne", "pi", "ro", "du", "ña", "ción",
+                "mon", "tar", "ble", "gue", "que", "vi", "lla", "es"};
+        String[] words = new String[size];
+        for (int i = 0; i < size; i++) {
+            StringBuilder word = new StringBuilder();
+            int count = 2 + random.nextInt(3);
+            for (int s = 0; s < count; s++) {
+                word.append(syllables[random.nextInt(syllables.length)]);
+            }
+            words[i] = word.toString();
+        }
+        return words;
+    }
+
+    private static String words(Random random, String[] vocabulary, int count) {
+        List<String> words = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            words.add(vocabulary[random.nextInt(vocabulary.length)]);
+        }
+        return String.join(" ", words);
+    }
+}